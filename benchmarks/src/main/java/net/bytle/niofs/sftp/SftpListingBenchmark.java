@@ -0,0 +1,52 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The listing of a directory of 10, 10 000 and 1 000 000 entries
+ * <p/>
+ * The creation of the 1 000 000 local files takes minutes, restrict the entries to skip it.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpListingBenchmark -p entries=10,10000
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SftpListingBenchmark extends SftpServerBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int entries;
+
+    private Path directory;
+
+    @Override
+    protected void setupFiles() throws IOException {
+        Path localListing = Files.createDirectory(localDirectory.resolve("listing"));
+        for (int i = 0; i < entries; i++) {
+            Files.createFile(localListing.resolve("file" + i + ".csv"));
+        }
+        directory = sftpFileSystem.getPath("listing");
+    }
+
+    @Benchmark
+    public int list() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
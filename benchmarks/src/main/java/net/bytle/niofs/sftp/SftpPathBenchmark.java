@@ -0,0 +1,104 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The path operations are in memory, they don't need any connection.
+ * <p/>
+ * Run it with the gc profiler to get the allocations by operation (gc.alloc.rate.norm)
+ * <pre>
+ * java -jar target/benchmarks.jar SftpPathBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SftpPathBenchmark {
+
+    private FileSystem sftpFileSystem;
+    private SftpPath directory;
+    private Path absolutePath;
+    private Path relativePath;
+    private int child = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, "/home/benchmark");
+        sftpFileSystem = new SftpFileSystemProvider().newFileSystem(URI.create("sftp://benchmark@localhost"), env);
+        directory = (SftpPath) sftpFileSystem.getPath("/archive/2016/05/partner");
+        absolutePath = sftpFileSystem.getPath("/archive/2016/05/partner/file.csv");
+        relativePath = sftpFileSystem.getPath("archive/2016/05/partner/file.csv");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sftpFileSystem.close();
+    }
+
+    @Benchmark
+    public Path parse() {
+        return sftpFileSystem.getPath("/archive/2016/05/partner/file.csv");
+    }
+
+    /**
+     * A walk or a listing creates the children of a directory
+     */
+    @Benchmark
+    public String listingChild() {
+        return directory.resolveChild("file" + (child++ & 1023) + ".csv").toString();
+    }
+
+    @Benchmark
+    public Path getParent() {
+        return absolutePath.getParent();
+    }
+
+    @Benchmark
+    public Path getFileName() {
+        return absolutePath.getFileName();
+    }
+
+    @Benchmark
+    public Path getName() {
+        return absolutePath.getName(2);
+    }
+
+    @Benchmark
+    public String toStringOf() {
+        return absolutePath.toString();
+    }
+
+    @Benchmark
+    public String relativeToAbsoluteString() {
+        return relativePath.toAbsolutePath().toString();
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return absolutePath.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsParsed() {
+        return absolutePath.equals(sftpFileSystem.getPath("/archive/2016/05/partner/file.csv"));
+    }
+
+    @Benchmark
+    public Path resolve() {
+        return directory.resolve("file.csv");
+    }
+
+}
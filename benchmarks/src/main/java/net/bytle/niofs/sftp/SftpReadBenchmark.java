@@ -0,0 +1,84 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The sequential read of a file and the random reads of blocks in the same file
+ * <p/>
+ * A random read opens the file again at its position.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpReadBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SftpReadBenchmark extends SftpServerBenchmark {
+
+    @Param({"1", "16"})
+    public int fileSizeMb;
+
+    // The number of blocks read by a random read
+    @Param({"16"})
+    public int randomReads;
+
+    @Param({"4096"})
+    public int blockSize;
+
+    private Path file;
+    private long fileSize;
+    private final Random random = new Random(0);
+
+    @Override
+    protected void setupFiles() throws IOException {
+        byte[] bytes = new byte[fileSizeMb * 1024 * 1024];
+        new Random(0).nextBytes(bytes);
+        Files.write(localDirectory.resolve("read.bin"), bytes);
+        file = sftpFileSystem.getPath("read.bin");
+        fileSize = bytes.length;
+    }
+
+    @Benchmark
+    public long sequential() throws IOException {
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(SftpContentPublisher.DEFAULT_CHUNK_SIZE);
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long random() throws IOException {
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < randomReads; i++) {
+                channel.position((long) (random.nextDouble() * (fileSize - blockSize)));
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    // a block can come in several reads
+                }
+                total += buffer.position();
+            }
+        }
+        return total;
+    }
+
+}
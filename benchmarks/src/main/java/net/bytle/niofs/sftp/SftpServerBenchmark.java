@@ -0,0 +1,98 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The base of the benchmarks against the in-process sftp server of the tests ({@link MockSshSftpServer})
+ * <p/>
+ * Each trial starts a server on a free port, a {@link LatencyProxy} in front of it when a latency is set,
+ * a local temporary directory and a file system on it.
+ * The subclasses create their files in {@link #localDirectory} (with the local file system) in {@link #setupFiles()}.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpStatBenchmark -p latency=0,10
+ * </pre>
+ */
+@State(Scope.Benchmark)
+public abstract class SftpServerBenchmark {
+
+    // The latency in ms added in each direction (0: no proxy)
+    @Param({"0"})
+    public int latency;
+
+    private MockSshSftpServer mockSftpServer;
+    private LatencyProxy latencyProxy;
+    protected Path localDirectory;
+    protected FileSystem sftpFileSystem;
+
+    @Setup(Level.Trial)
+    public void setupServer() throws IOException {
+
+        mockSftpServer = new MockSshSftpServer(0);
+        mockSftpServer.start();
+        int port = mockSftpServer.getPort();
+        if (latency > 0) {
+            latencyProxy = new LatencyProxy.LatencyProxyBuilder(port)
+                    .latency(latency)
+                    .build()
+                    .start();
+            port = latencyProxy.getPort();
+        }
+
+        localDirectory = Files.createTempDirectory("sftp-benchmark").toAbsolutePath();
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, localDirectory.toString());
+        // One session by trial
+        String user = "benchmark-" + getClass().getSimpleName() + "-" + System.nanoTime();
+        sftpFileSystem = new SftpFileSystemProvider().newFileSystem(URI.create("sftp://" + user + ":pwd@localhost:" + port), env);
+        setupFiles();
+
+    }
+
+    /**
+     * Create the files of a benchmark
+     * (JMH doesn't order the setup methods of a class and of its superclass)
+     */
+    protected abstract void setupFiles() throws IOException;
+
+    @TearDown(Level.Trial)
+    public void tearDownServer() throws IOException {
+        sftpFileSystem.close();
+        if (latencyProxy != null) {
+            latencyProxy.close();
+        }
+        mockSftpServer.stop();
+        deleteLocal(localDirectory);
+    }
+
+    /**
+     * Delete a local directory and its content
+     */
+    static void deleteLocal(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
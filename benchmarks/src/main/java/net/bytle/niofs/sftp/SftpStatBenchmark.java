@@ -0,0 +1,51 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The stat of a file, of a missing file (an error response) and the lstat of a file
+ * <pre>
+ * java -jar target/benchmarks.jar SftpStatBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SftpStatBenchmark extends SftpServerBenchmark {
+
+    private Path file;
+    private Path missing;
+
+    @Override
+    protected void setupFiles() throws IOException {
+        Files.write(localDirectory.resolve("file.txt"), new byte[1024]);
+        file = sftpFileSystem.getPath("file.txt");
+        missing = sftpFileSystem.getPath("missing.txt");
+    }
+
+    @Benchmark
+    public BasicFileAttributes stat() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    @Benchmark
+    public BasicFileAttributes lstat() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    @Benchmark
+    public boolean existsMissing() {
+        return Files.exists(missing);
+    }
+
+}
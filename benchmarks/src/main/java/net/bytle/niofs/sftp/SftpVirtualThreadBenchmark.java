@@ -0,0 +1,117 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * Many callers (one virtual thread each) doing a stat and a small read against the mock sftp server.
+ * <p/>
+ * The time of a batch must go down when the channel pool grows.
+ * Virtual threads need a Java 21 runtime, they are created by reflection (the benchmarks are compiled for Java 11).
+ * On an older runtime, the callers are platform threads of a fixed pool.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpVirtualThreadBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SftpVirtualThreadBenchmark {
+
+    @Param({SftpFileSystem.EXECUTION_MODE_DIRECT, SftpFileSystem.EXECUTION_MODE_DISPATCH})
+    public String executionMode;
+
+    @Param({"1", "4", "16"})
+    public int channelPoolMax;
+
+    @Param({"10000"})
+    public int callers;
+
+    private MockSshSftpServer mockSftpServer;
+    private FileSystem sftpFileSystem;
+    private ExecutorService callerExecutor;
+    private Path localDirectory;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+
+        // A small file
+        localDirectory = Files.createTempDirectory("sftp-benchmark").toAbsolutePath();
+        Files.write(localDirectory.resolve("small.txt"), new byte[1024]);
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, localDirectory.toString());
+        env.put(SftpFileSystem.KEY_EXECUTION_MODE, executionMode);
+        env.put(SftpFileSystem.KEY_CHANNEL_POOL_MAX, String.valueOf(channelPoolMax));
+        env.put(SftpFileSystem.KEY_CHANNEL_POOL_WAIT_TIMEOUT, "600000");
+        // One session by trial
+        String user = "benchmark-" + executionMode + "-" + channelPoolMax;
+        sftpFileSystem = new SftpFileSystemProvider().newFileSystem(URI.create("sftp://" + user + ":pwd@localhost:" + MockSshSftpServer.PORT), env);
+        file = sftpFileSystem.getPath("small.txt");
+
+        callerExecutor = newVirtualThreadPerTaskExecutor();
+
+    }
+
+    /**
+     * @return an executor of virtual threads (Java 21) or a pool of platform threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("No virtual threads on this runtime (" + System.getProperty("java.version") + "), the callers are platform threads");
+            return Executors.newFixedThreadPool(256);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        callerExecutor.shutdown();
+        sftpFileSystem.close();
+        mockSftpServer.stop();
+        Files.delete(localDirectory.resolve("small.txt"));
+        Files.delete(localDirectory);
+    }
+
+    @Benchmark
+    public long statAndRead() throws Exception {
+
+        List<Future<Integer>> futures = new ArrayList<>(callers);
+        for (int i = 0; i < callers; i++) {
+            futures.add(callerExecutor.submit(() -> {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return (int) attributes.size() + Files.readAllBytes(file).length;
+            }));
+        }
+        long bytes = 0;
+        for (Future<Integer> future : futures) {
+            bytes += future.get();
+        }
+        return bytes;
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The walk of a tree of directories (a listing and a stat by directory)
+ * <p/>
+ * The tree has a depth of 3 and a fan out of 10 directories with 10 files each (1 110 directories, 11 100 files by default).
+ * <pre>
+ * java -jar target/benchmarks.jar SftpWalkBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SftpWalkBenchmark extends SftpServerBenchmark {
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanOut;
+
+    private Path root;
+
+    @Override
+    protected void setupFiles() throws IOException {
+        createTree(Files.createDirectory(localDirectory.resolve("tree")), depth);
+        root = sftpFileSystem.getPath("tree");
+    }
+
+    private void createTree(Path directory, int level) throws IOException {
+        for (int i = 0; i < fanOut; i++) {
+            Files.createFile(directory.resolve("file" + i + ".csv"));
+            if (level > 0) {
+                createTree(Files.createDirectory(directory.resolve("dir" + i)), level - 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public long walk() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.count();
+        }
+    }
+
+}
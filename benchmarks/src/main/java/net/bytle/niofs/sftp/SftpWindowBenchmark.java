@@ -0,0 +1,88 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The read of a big file through a local proxy that adds latency, with the JSch window or a window sized to the bandwidth-delay product
+ * <p/>
+ * With the JSch defaults, the throughput is bounded by the requests in flight divided by the round trip time.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpWindowBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SftpWindowBenchmark {
+
+    // In each direction (a round trip of 150 ms)
+    @Param({"0", "75"})
+    public int latency;
+
+    @Param({"false", "true"})
+    public boolean windowAuto;
+
+    @Param({"16"})
+    public int fileSizeMb;
+
+    private MockSshSftpServer mockSftpServer;
+    private LatencyProxy latencyProxy;
+    private FileSystem sftpFileSystem;
+    private Path localDirectory;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+        latencyProxy = new LatencyProxy.LatencyProxyBuilder(MockSshSftpServer.PORT)
+                .latency(latency)
+                .build()
+                .start();
+
+        localDirectory = Files.createTempDirectory("sftp-benchmark").toAbsolutePath();
+        byte[] bytes = new byte[fileSizeMb * 1024 * 1024];
+        new Random(0).nextBytes(bytes);
+        Files.write(localDirectory.resolve("big.bin"), bytes);
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, localDirectory.toString());
+        env.put(SftpFileSystem.KEY_WINDOW_AUTO, String.valueOf(windowAuto));
+        // One session by trial
+        String user = "benchmark-" + latency + "-" + windowAuto;
+        sftpFileSystem = new SftpFileSystemProvider().newFileSystem(URI.create("sftp://" + user + ":pwd@localhost:" + latencyProxy.getPort()), env);
+        file = sftpFileSystem.getPath("big.bin");
+        System.out.println("Channel sizing: " + ((SftpFileSystem) sftpFileSystem).getChannelSizing());
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sftpFileSystem.close();
+        latencyProxy.close();
+        mockSftpServer.stop();
+        Files.delete(localDirectory.resolve("big.bin"));
+        Files.delete(localDirectory);
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        return Files.readAllBytes(file).length;
+    }
+
+}
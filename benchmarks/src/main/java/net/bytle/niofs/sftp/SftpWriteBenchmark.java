@@ -0,0 +1,64 @@
+package net.bytle.niofs.sftp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The write of new small (1 Kb) and large (16 Mb) files
+ * <p/>
+ * Each write creates a new file, the files are deleted (locally) after each iteration.
+ * <pre>
+ * java -jar target/benchmarks.jar SftpWriteBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SftpWriteBenchmark extends SftpServerBenchmark {
+
+    private byte[] small;
+    private byte[] large;
+    private Path directory;
+    private Path localWriteDirectory;
+    private long file = 0;
+
+    @Override
+    protected void setupFiles() throws IOException {
+        small = new byte[1024];
+        large = new byte[16 * 1024 * 1024];
+        new Random(0).nextBytes(small);
+        new Random(0).nextBytes(large);
+        localWriteDirectory = Files.createDirectory(localDirectory.resolve("write"));
+        directory = sftpFileSystem.getPath("write");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(localWriteDirectory)) {
+            for (Path path : stream) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path writeSmall() throws IOException {
+        return Files.write(directory.resolve("small" + (file++) + ".bin"), small, StandardOpenOption.CREATE_NEW);
+    }
+
+    @Benchmark
+    public Path writeLarge() throws IOException {
+        return Files.write(directory.resolve("large" + (file++) + ".bin"), large, StandardOpenOption.CREATE_NEW);
+    }
+
+}
@@ -0,0 +1,351 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * An asynchronous channel to read and write a file at a position
+ * <p/>
+ * Each operation is executed on the executor with its own sftp channel borrowed from the pool
+ * (See {@link SftpFileSystem#KEY_CHANNEL_POOL_MAX}). The reads of the same file are then executed in parallel.
+ * A read opens the file at the position (an idempotent {@link SftpCommand#READ read at an offset}) and closes it.
+ * <p/>
+ * A write opens the file without truncating it at the position (an idempotent {@link SftpCommand#WRITE write at an offset}).
+ * A write after the end of the file leaves a hole of zeros. The writes are executed one after the other.
+ * <p/>
+ * On a read only file system, the reads go through the block cache (See {@link SftpBlockCache}).
+ */
+public class SftpAsynchronousFileChannel extends AsynchronousFileChannel {
+
+    private final SftpPath path;
+    private final String stringPath;
+    private final ExecutorService executor;
+    private final boolean readable;
+    private final boolean writable;
+
+    // The size of the file known by the writes
+    private long size;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile boolean isOpen = true;
+
+    // The transfer in a Java Flight Recorder recording (null if not recorded)
+    private final SftpTransferEvent transferEvent;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * @param path     the file (it must exist, See {@link SftpFileSystemProvider#newAsynchronousFileChannel})
+     * @param readable true if the file is opened to read
+     * @param writable true if the file is opened to write
+     * @param executor the executor of the operations
+     */
+    protected SftpAsynchronousFileChannel(SftpPath path, boolean readable, boolean writable, ExecutorService executor) throws IOException {
+        this.path = path;
+        this.stringPath = path.getStringPath();
+        this.readable = readable;
+        this.writable = writable;
+        this.executor = executor;
+        this.size = path.getFileAttributes().size();
+        this.transferEvent = SftpTransferEvent.start(stringPath, readable && writable ? SftpTransferEvent.READ_WRITE : (readable ? SftpTransferEvent.READ : SftpTransferEvent.WRITE));
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return path.getFileAttributes().size();
+    }
+
+    /**
+     * The size is set with a SETSTAT request
+     */
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        checkOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("The size (" + size + ") must be positive");
+        }
+        writeLock.lock();
+        try {
+            if (size < this.size()) {
+                new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                        .size(size)
+                        .build()
+                        .apply(path);
+            }
+            this.size = Math.min(this.size, size);
+        } finally {
+            writeLock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * The writes are send when the remote file is closed, there is nothing to force
+     */
+    @Override
+    public void force(boolean metaData) throws IOException {
+        checkOpen();
+    }
+
+    /**
+     * The SFTP protocol (version 3) has no lock
+     */
+    @Override
+    public <A> void lock(long position, long size, boolean shared, A attachment, CompletionHandler<FileLock, ? super A> handler) {
+        throw new UnsupportedOperationException("The SFTP protocol has no lock");
+    }
+
+    @Override
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("The SFTP protocol has no lock");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        throw new UnsupportedOperationException("The SFTP protocol has no lock");
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        complete(readAsync(dst, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        return readAsync(dst, position);
+    }
+
+    private CompletableFuture<Integer> readAsync(ByteBuffer dst, long position) {
+        if (!readable) {
+            throw new NonReadableChannelException();
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("The position (" + position + ") must be positive");
+        }
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("The buffer is read only");
+        }
+        return submit(() -> readAt(dst, position));
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        complete(writeAsync(src, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src, long position) {
+        return writeAsync(src, position);
+    }
+
+    private CompletableFuture<Integer> writeAsync(ByteBuffer src, long position) {
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("The position (" + position + ") must be positive");
+        }
+        return submit(() -> writeAt(src, position));
+    }
+
+    /**
+     * Open the file at the position, read until the buffer is full (or the end of the file) and close it
+     *
+     * @return the number of bytes read or -1 at the end of the file
+     */
+    private int readAt(ByteBuffer dst, long position) throws IOException {
+
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        SftpBlockCache blockCache = path.getFileSystem().getBlockCache();
+        if (blockCache != null) {
+            int count = blockCache.read(stringPath, position, dst, this::readBlock);
+            if (count > 0) {
+                bytesRead.add(count);
+            }
+            return count;
+        }
+        int start = dst.position();
+        int count = execute(SftpCommand.READ, channelSftp -> {
+            // A retry reads again from the start
+            dst.position(start);
+            byte[] buffer = new byte[Math.min(dst.remaining(), 32 * 1024)];
+            int total = 0;
+            try (InputStream inputStream = channelSftp.get(stringPath, null, position)) {
+                while (dst.hasRemaining()) {
+                    int read = inputStream.read(buffer, 0, Math.min(buffer.length, dst.remaining()));
+                    if (read == -1) {
+                        break;
+                    }
+                    dst.put(buffer, 0, read);
+                    total += read;
+                }
+            } catch (IOException e) {
+                throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The read of (" + stringPath + ") at the position (" + position + ") has failed", e);
+            }
+            return total == 0 ? -1 : total;
+        });
+        if (count > 0) {
+            bytesRead.add(count);
+            path.getFileSystem().getMetrics().recordBytesRead(count);
+        }
+        return count;
+
+    }
+
+    /**
+     * Read a block for the block cache
+     *
+     * @param offset the offset of the block
+     * @return the bytes of the block (less than a block at the end of the file)
+     */
+    private byte[] readBlock(long offset) throws IOException {
+
+        ByteBuffer block = ByteBuffer.allocate(SftpBlockCache.BLOCK_SIZE);
+        int count = execute(SftpCommand.READ, channelSftp -> {
+            block.clear();
+            try (InputStream inputStream = channelSftp.get(stringPath, null, offset)) {
+                int read;
+                while (block.hasRemaining() && (read = inputStream.read(block.array(), block.position(), block.remaining())) != -1) {
+                    block.position(block.position() + read);
+                }
+            } catch (IOException e) {
+                throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The read of (" + stringPath + ") at the position (" + offset + ") has failed", e);
+            }
+            return block.position();
+        });
+        if (count > 0) {
+            path.getFileSystem().getMetrics().recordBytesRead(count);
+        }
+        return count == SftpBlockCache.BLOCK_SIZE ? block.array() : Arrays.copyOf(block.array(), count);
+
+    }
+
+    /**
+     * Write the buffer at the position.
+     * With the RESUME mode, JSch opens the file without truncating it and writes at its size plus the offset:
+     * the offset is then the position minus the current size.
+     *
+     * @return the number of bytes written
+     */
+    private int writeAt(ByteBuffer src, long position) throws IOException {
+
+        writeLock.lock();
+        try {
+            int length = src.remaining();
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            execute(SftpCommand.WRITE, channelSftp -> {
+                long currentSize = channelSftp.stat(stringPath).getSize();
+                try (OutputStream outputStream = channelSftp.put(stringPath, null, ChannelSftp.RESUME, position - currentSize)) {
+                    outputStream.write(bytes);
+                } catch (IOException e) {
+                    throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The write of (" + stringPath + ") at the position (" + position + ") has failed", e);
+                }
+                return length;
+            });
+            size = Math.max(size, position + length);
+            bytesWritten.add(length);
+            path.getFileSystem().getMetrics().recordBytesWritten(length);
+            return length;
+        } finally {
+            writeLock.unlock();
+        }
+
+    }
+
+    private <T> T execute(SftpCommand command, SftpOperation<T> operation) throws IOException {
+        checkOpen();
+        try {
+            return path.getFileSystem().execute(command, stringPath, operation);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to " + (command == SftpCommand.READ ? "read" : "write") + " the file (" + stringPath + ")", e);
+        }
+    }
+
+    /**
+     * An operation on the executor
+     */
+    private interface IOOperation<T> {
+        T execute() throws IOException;
+    }
+
+    private <T> CompletableFuture<T> submit(IOOperation<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!isOpen) {
+            future.completeExceptionally(new ClosedChannelException());
+            return future;
+        }
+        executor.execute(() -> {
+            try {
+                future.complete(operation.execute());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static <V, A> void complete(CompletableFuture<V> future, A attachment, CompletionHandler<V, ? super A> handler) {
+        future.whenComplete((result, exception) -> {
+            if (exception == null) {
+                handler.completed(result, attachment);
+            } else {
+                handler.failed(exception instanceof CompletionException ? exception.getCause() : exception, attachment);
+            }
+        });
+    }
+
+    private void checkOpen() throws IOException {
+        if (!isOpen) {
+            throw new AsynchronousCloseException();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    /**
+     * The operations in progress run until their end, the next ones fail
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        SftpTransferEvent.end(transferEvent, bytesRead.sum(), bytesWritten.sum(), path.getFileSystem().getSessionId());
+    }
+
+}
@@ -25,17 +25,53 @@ public class SftpBasicFileAttributes implements BasicFileAttributes {
 
 
     protected SftpBasicFileAttributes(SftpPath path) throws IOException {
+        this(path, true);
+    }
+
+    /**
+     * @param followLinks false to read the attributes of a link and not of its target (lstat)
+     */
+    protected SftpBasicFileAttributes(SftpPath path, boolean followLinks) throws IOException {
+        String stringPath = path.getStringPath();
+        SftpIndex index = path.getFileSystem().getIndex();
+        if (index != null) {
+            SftpATTRS indexed = index.stat(stringPath, followLinks);
+            if (indexed != null) {
+                this.attrs = indexed;
+                return;
+            }
+        }
         try {
-            this.attrs = path.getChannelSftp().stat(path.getStringPath());
+            if (followLinks) {
+                this.attrs = path.getFileSystem().execute(SftpCommand.STAT, stringPath, channelSftp -> channelSftp.stat(stringPath));
+            } else {
+                this.attrs = path.getFileSystem().execute(SftpCommand.LSTAT, stringPath, channelSftp -> channelSftp.lstat(stringPath));
+            }
         } catch (SftpException e) {
-            if (!(e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE)){
-                throw new NoSuchFileException("The file doesn't exist");
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
             } else {
-                throw new IOException("Unable to get the file attributes of (" + path.getStringPath() + ")", e);
+                throw new IOException("Unable to get the file attributes of (" + stringPath + ")", e);
             }
         }
     }
 
+    /**
+     * @param attrs the attributes already read (ie with a listing)
+     */
+    protected SftpBasicFileAttributes(SftpATTRS attrs) {
+        this.attrs = attrs;
+    }
+
+    /**
+     * The inverse of the time conversion of {@link #lastModifiedTime()}
+     * @param fileTime
+     * @return the time in seconds as expected by the SFTP protocol
+     */
+    static int toSftpTime(FileTime fileTime) {
+        return (int) (fileTime.toMillis() / 1000 - 2*timeOffset);
+    }
+
     public FileTime lastModifiedTime() {
         // 2 hour
         return FileTime.fromMillis( (long) (this.attrs.getMTime() + 2*timeOffset)*1000);
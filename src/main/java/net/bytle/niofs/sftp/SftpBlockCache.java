@@ -0,0 +1,113 @@
+package net.bytle.niofs.sftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The blocks of the files read on a read only file system (See {@link SftpFileSystem#KEY_READ_ONLY})
+ * <p/>
+ * A file is cut in blocks of {@link #BLOCK_SIZE} bytes aligned on their offset.
+ * The least recently used blocks are evicted when the cache is above its capacity ({@link SftpFileSystem#KEY_BLOCK_CACHE_SIZE}).
+ * The files are immutable: a block is never read again from the server while it's in the cache.
+ */
+class SftpBlockCache {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    // The name of the cache in the metrics
+    static final String CACHE_BLOCKS = "blocks";
+
+    private final long capacity;
+    private final SftpMetrics metrics;
+    // The blocks by path and index in access order
+    private final LinkedHashMap<String, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param capacity the maximum number of bytes of the blocks
+     */
+    SftpBlockCache(long capacity, SftpMetrics metrics) {
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Read a block from the server
+     */
+    interface BlockReader {
+
+        /**
+         * @param offset the offset of the block in the file
+         * @return the bytes of the block (less than {@link #BLOCK_SIZE} bytes at the end of the file)
+         */
+        byte[] read(long offset) throws IOException;
+
+    }
+
+    /**
+     * Copy the bytes of a file from a position into a buffer, the missing blocks are read with the reader
+     *
+     * @return the number of bytes copied or -1 at the end of the file
+     */
+    int read(String path, long position, ByteBuffer dst, BlockReader reader) throws IOException {
+
+        int total = 0;
+        while (dst.hasRemaining()) {
+            long index = position / BLOCK_SIZE;
+            String key = path + "#" + index;
+            byte[] block = get(key);
+            if (block == null) {
+                block = reader.read(index * BLOCK_SIZE);
+                put(key, block);
+            }
+            int offset = (int) (position - index * BLOCK_SIZE);
+            if (offset >= block.length) {
+                break;
+            }
+            int length = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, length);
+            position += length;
+            total += length;
+            if (block.length < BLOCK_SIZE && offset + length == block.length) {
+                // The last block
+                break;
+            }
+        }
+        return total == 0 ? -1 : total;
+
+    }
+
+    private byte[] get(String key) {
+        byte[] block;
+        synchronized (blocks) {
+            block = blocks.get(key);
+        }
+        metrics.recordCacheAccess(CACHE_BLOCKS, block != null);
+        return block;
+    }
+
+    private void put(String key, byte[] block) {
+        synchronized (blocks) {
+            byte[] previous = blocks.put(key, block);
+            size += block.length - (previous == null ? 0 : previous.length);
+            Iterator<Map.Entry<String, byte[]>> eldest = blocks.entrySet().iterator();
+            while (size > capacity && eldest.hasNext()) {
+                size -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes in the cache
+     */
+    long size() {
+        synchronized (blocks) {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package net.bytle.niofs.sftp;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A token to cancel transfers from another thread (See {@link SftpTransferOption#cancellation(SftpCancellationToken)})
+ * <p/>
+ * The next read or write of a cancelled transfer throws an {@link java.io.InterruptedIOException}.
+ * A cancelled write leaves the file with the bytes written before.
+ * A token can be shared by several transfers (ie all the transfers of a job).
+ */
+public class SftpCancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+
+import java.io.Closeable;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A channel borrowed for the life of a stream (See {@link SftpReadByteChannel}, {@link SftpOverWriteByteChannel})
+ * <p/>
+ * A file handle belongs to a channel: the operations of a stream are then executed
+ * on the same channel (See {@link SftpFileSystem#execute(SftpCommand, String, SftpChannelLease, SftpOperation)}).
+ * After a lost connection, the next operation borrows a new channel.
+ */
+class SftpChannelLease implements Closeable {
+
+    private final SftpTransport transport;
+    private ChannelSftp channelSftp;
+
+    SftpChannelLease(SftpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * @return the channel of the lease (borrowed with the first call)
+     */
+    ChannelSftp get() {
+        if (channelSftp == null) {
+            channelSftp = transport.borrowChannel();
+        }
+        return channelSftp;
+    }
+
+    /**
+     * Give the channel back (after a lost connection for instance)
+     * The next call to {@link #get()} borrows a new one
+     */
+    void reset() {
+        if (channelSftp != null) {
+            transport.returnChannel(channelSftp);
+            channelSftp = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+}
@@ -0,0 +1,148 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The window and the packet size of the sftp channels of a session, sized to the bandwidth-delay product
+ * <p/>
+ * The round trip time is measured once by session with the first channel (the fastest of a few realpath requests).
+ * The window is then the expected bandwidth multiplied by the round trip time, between the bounds of the environment
+ * (See {@link SftpFileSystem#KEY_WINDOW_BANDWIDTH}).
+ * <p/>
+ * JSch sizes a read request to the local packet and sends {@link SftpFileSystem#KEY_BULK_REQUESTS} requests ahead:
+ * the number of requests in flight is raised to fill the window.
+ * The first channel is already open when the round trip is known: only its window grows (with the next window adjust).
+ */
+public class SftpChannelSizing {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    // The defaults of ChannelSftp
+    static final int JSCH_WINDOW_SIZE = 2 * 1024 * 1024;
+    static final int JSCH_PACKET_SIZE = 32 * 1024;
+
+    // The number of round trips measured
+    private static final int ROUND_TRIPS = 3;
+
+    private final Duration roundTripTime;
+    private final int windowSize;
+    private final int packetSize;
+    private final int bulkRequests;
+
+    private SftpChannelSizing(Duration roundTripTime, int windowSize, int packetSize, int bulkRequests) {
+        this.roundTripTime = roundTripTime;
+        this.windowSize = windowSize;
+        this.packetSize = packetSize;
+        this.bulkRequests = bulkRequests;
+    }
+
+    /**
+     * The sizing of JSch (without measure)
+     *
+     * @param bulkRequests the read requests in flight
+     */
+    static SftpChannelSizing ofDefault(int bulkRequests) {
+        return new SftpChannelSizing(null, JSCH_WINDOW_SIZE, JSCH_PACKET_SIZE, bulkRequests);
+    }
+
+    /**
+     * @param channelSftp  a connected channel
+     * @param bandwidth    the expected bandwidth in bytes by second
+     * @param windowMin    the minimum window in bytes
+     * @param windowMax    the maximum window in bytes
+     * @param packetMax    the maximum packet in bytes
+     * @param bulkRequests the minimum number of read requests in flight
+     * @return the sizing for the round trip time of the channel
+     */
+    static SftpChannelSizing measure(ChannelSftp channelSftp, long bandwidth, int windowMin, int windowMax, int packetMax, int bulkRequests) throws SftpException {
+
+        long roundTripNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            long start = System.nanoTime();
+            channelSftp.realpath(".");
+            roundTripNanos = Math.min(roundTripNanos, System.nanoTime() - start);
+        }
+
+        long bandwidthDelayProduct = bandwidth * roundTripNanos / TimeUnit.SECONDS.toNanos(1);
+        int windowSize = (int) Math.max(windowMin, Math.min(windowMax, bandwidthDelayProduct));
+        // A packet is a small part of the window
+        int packetSize = Math.max(JSCH_PACKET_SIZE, Math.min(packetMax, Integer.highestOneBit(windowSize / 64)));
+        int requests = Math.max(bulkRequests, (windowSize + packetSize - 1) / packetSize);
+        return new SftpChannelSizing(Duration.ofNanos(roundTripNanos), windowSize, packetSize, requests);
+
+    }
+
+    /**
+     * Size a channel before its connection
+     */
+    void applyBeforeConnect(ChannelSftp channelSftp) {
+        invoke(channelSftp, "setLocalWindowSizeMax", windowSize);
+        invoke(channelSftp, "setLocalWindowSize", windowSize);
+        invoke(channelSftp, "setLocalPacketSize", packetSize);
+    }
+
+    /**
+     * Size a connected channel: the packet size was already sent, the window grows with the next adjust
+     */
+    void applyAfterConnect(ChannelSftp channelSftp) throws JSchException {
+        invoke(channelSftp, "setLocalWindowSizeMax", windowSize);
+        channelSftp.setBulkRequests(bulkRequests);
+    }
+
+    /**
+     * JSch has no public setter of the window and the packet size
+     */
+    private static void invoke(ChannelSftp channelSftp, String name, int value) {
+        try {
+            Method method = Channel.class.getDeclaredMethod(name, int.class);
+            method.setAccessible(true);
+            method.invoke(channelSftp, value);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warning("The channel can't be sized (" + name + "): " + e);
+        }
+    }
+
+    /**
+     * @return the measured round trip time or null if the sizing was not measured
+     */
+    public Duration getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    /**
+     * @return the local window of a channel in bytes
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return the local maximum packet of a channel in bytes
+     */
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    /**
+     * @return the number of read requests in flight by channel
+     */
+    public int getBulkRequests() {
+        return bulkRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "round trip " + (roundTripTime == null ? "not measured" : roundTripTime.toMillis() + " ms")
+                + ", window " + windowSize + " bytes, packet " + packetSize + " bytes, " + bulkRequests + " bulk requests";
+    }
+
+}
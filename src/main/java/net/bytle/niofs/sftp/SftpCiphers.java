@@ -0,0 +1,106 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.Cipher;
+import com.jcraft.jsch.JSch;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The ciphers of JSch ordered by their local throughput (See {@link SftpFileSystem#KEY_CIPHER_AUTO})
+ * <p/>
+ * The ciphers are measured once by JVM: each one encrypts a few megabytes by packet.
+ * JSch negotiates the first cipher of the client list that the server supports:
+ * the session gets then the fastest cipher of the server.
+ * A cipher that can't be created (ie not available in the JVM) is not in the list.
+ */
+class SftpCiphers {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    // The size of a SSH packet
+    private static final int PACKET_SIZE = 32 * 1024;
+    // The bytes encrypted by round
+    private static final int ROUND_SIZE = 4 * 1024 * 1024;
+    private static final int ROUNDS = 3;
+
+    /**
+     * The measure of the first session of the JVM
+     */
+    private static class Holder {
+        private static final Map<String, Double> THROUGHPUTS = measure(candidates());
+    }
+
+    /**
+     * @return the default ciphers of JSch and the ones that JSch knows but doesn't propose
+     */
+    private static String[] candidates() {
+        Set<String> candidates = new LinkedHashSet<>(Arrays.asList(JSch.getConfig("cipher.s2c").split(",")));
+        candidates.addAll(Arrays.asList("aes192-ctr", "aes256-ctr"));
+        return candidates.toArray(new String[0]);
+    }
+
+    /**
+     * @return the ciphers separated by a comma, the fastest first (the format of the JSch config cipher.s2c and cipher.c2s)
+     */
+    static String fastestFirst() {
+        return String.join(",", Holder.THROUGHPUTS.keySet());
+    }
+
+    /**
+     * @return the throughput in Mb by second by cipher, the fastest first
+     */
+    static Map<String, Double> getThroughputs() {
+        return Holder.THROUGHPUTS;
+    }
+
+    /**
+     * @param ciphers the names of the JSch ciphers
+     * @return the throughput in Mb by second of the available ciphers, the fastest first
+     */
+    static Map<String, Double> measure(String[] ciphers) {
+
+        byte[] packet = new byte[PACKET_SIZE];
+        byte[] encrypted = new byte[PACKET_SIZE];
+        List<Map.Entry<String, Double>> throughputs = new ArrayList<>();
+        for (String name : ciphers) {
+            try {
+                Cipher cipher = (Cipher) Class.forName(JSch.getConfig(name)).getDeclaredConstructor().newInstance();
+                // The cipher takes the first bytes that it needs
+                cipher.init(Cipher.ENCRYPT_MODE, new byte[64], new byte[64]);
+                long fastestRound = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ROUND_SIZE / PACKET_SIZE; i++) {
+                        cipher.update(packet, 0, PACKET_SIZE, encrypted, 0);
+                    }
+                    fastestRound = Math.min(fastestRound, System.nanoTime() - start);
+                }
+                double megaBytesBySecond = (ROUND_SIZE / (1024.0 * 1024.0)) / (fastestRound / 1e9);
+                throughputs.add(new AbstractMap.SimpleEntry<>(name, megaBytesBySecond));
+            } catch (Exception | LinkageError e) {
+                LOGGER.fine("The cipher (" + name + ") is not available: " + e);
+            }
+        }
+        throughputs.sort(Collections.reverseOrder(Comparator.comparingDouble(Map.Entry::getValue)));
+
+        Map<String, Double> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> throughput : throughputs) {
+            ordered.put(throughput.getKey(), throughput.getValue());
+        }
+        LOGGER.info("The throughputs of the ciphers in Mb/s are " + ordered);
+        return Collections.unmodifiableMap(ordered);
+
+    }
+
+}
@@ -0,0 +1,86 @@
+package net.bytle.niofs.sftp;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The SFTP commands executed by the file system (See {@link SftpFileSystem#execute(SftpCommand, SftpOperation)})
+ * <p/>
+ * An idempotent command gives the same result when executed twice.
+ * It's then executed again when the connection was lost.
+ * <p/>
+ * The concurrent requests of a metadata command on the same path share one request (See {@link #isCoalesced()}).
+ */
+public enum SftpCommand {
+
+    STAT(true),
+    // A stat that doesn't follow the links
+    LSTAT(true),
+    LS(true),
+    // The canonical absolute path, See {@link SftpPath#toRealPath(java.nio.file.LinkOption...)}
+    REALPATH(true),
+    // A listing streamed to a subscriber, See {@link SftpDirectoryPublisher}
+    READDIR(false),
+    PWD(true),
+    // A read at an offset
+    READ(true),
+    // Only used as mkdir if absent, See {@link SftpPath#createDirectory()}
+    MKDIR(true),
+    SETSTAT(true),
+    // Open a file to write
+    OPEN(false),
+    // Write a chunk at the end of a file opened by OPEN (not a mutation: OPEN and CLOSE invalidate the caches once by stream)
+    APPEND(false),
+    // Close a file opened by OPEN
+    CLOSE(false),
+    // Write at an offset (the same bytes are written again by a retry)
+    WRITE(true),
+    RM(false),
+    // posix-rename@openssh.com when the server has it
+    RENAME(false),
+    RMDIR(false),
+    // The space of a file store (statvfs@openssh.com or df), See {@link SftpFileStore}
+    STATVFS(true);
+
+    private final boolean idempotent;
+
+    SftpCommand(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * @return true if the operation of the command returns the number of bytes read or written
+     */
+    boolean isTransfer() {
+        return this == READ || this == APPEND || this == WRITE;
+    }
+
+    /**
+     * @return true if the concurrent requests of the command on the same path share one request and its result
+     */
+    boolean isCoalesced() {
+        return this == STAT || this == LSTAT || this == LS || this == REALPATH;
+    }
+
+    /**
+     * @return true if the command changes the remote file system (a coalesced request started before is not shared anymore)
+     */
+    boolean isMutation() {
+        switch (this) {
+            case MKDIR:
+            case SETSTAT:
+            case OPEN:
+            case CLOSE:
+            case WRITE:
+            case RM:
+            case RENAME:
+            case RMDIR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package net.bytle.niofs.sftp;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The adaptive compression of a session (See {@link SftpFileSystem#COMPRESSION_ADAPTIVE})
+ * <p/>
+ * The first bytes of each read and written stream are compressed locally (at the fastest level)
+ * and the ratio (compressed size / size) is averaged over the streams.
+ * When the payload compresses well, the compression of the session is switched on, when it doesn't anymore
+ * (ie archives, images), it's switched off. The switch is a new key exchange of the session
+ * (See {@link SftpTransport#switchCompression(boolean)}).
+ * <p/>
+ * The two thresholds and the minimum time between two switches avoid a key exchange at each stream.
+ */
+class SftpCompressionSampler {
+
+    // The bytes compressed by sample
+    static final int SAMPLE_SIZE = 64 * 1024;
+    // A smaller sample says nothing
+    static final int SAMPLE_SIZE_MIN = 512;
+    // The compression is switched on under this ratio and off above the second one
+    static final double RATIO_ON = 0.6;
+    static final double RATIO_OFF = 0.9;
+    // The weight of the last sample in the average
+    private static final double WEIGHT = 0.5;
+
+    private final Consumer<Boolean> switcher;
+    private final long switchInterval;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private double ratio = 1.0;
+    private volatile boolean compressed = false;
+    private long lastSwitchTime = 0;
+
+    /**
+     * @param switcher       called with true to switch the compression on and false to switch it off
+     * @param switchInterval the minimum time in ms between two switches
+     */
+    SftpCompressionSampler(Consumer<Boolean> switcher, long switchInterval) {
+        this.switcher = switcher;
+        this.switchInterval = switchInterval;
+    }
+
+    /**
+     * @param bytes  the payload of a stream
+     * @param offset the start
+     * @param length the number of bytes
+     */
+    void sample(byte[] bytes, int offset, int length) {
+
+        int sampleLength = Math.min(length, SAMPLE_SIZE);
+        if (sampleLength < SAMPLE_SIZE_MIN) {
+            return;
+        }
+        double sampleRatio = compressedSize(bytes, offset, sampleLength) / (double) sampleLength;
+
+        boolean switchOn;
+        lock.lock();
+        try {
+            ratio = WEIGHT * sampleRatio + (1 - WEIGHT) * ratio;
+            boolean wanted = compressed ? ratio < RATIO_OFF : ratio < RATIO_ON;
+            long now = System.currentTimeMillis();
+            if (wanted == compressed || now - lastSwitchTime < switchInterval) {
+                return;
+            }
+            compressed = wanted;
+            lastSwitchTime = now;
+            switchOn = wanted;
+        } finally {
+            lock.unlock();
+        }
+        switcher.accept(switchOn);
+
+    }
+
+    private static int compressedSize(byte[] bytes, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            byte[] output = new byte[length];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(output);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return true if the payload compresses well (the compression of the session is on)
+     */
+    boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return the average compression ratio of the samples (1.0 without sample)
+     */
+    double getRatio() {
+        lock.lock();
+        try {
+            return ratio;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package net.bytle.niofs.sftp;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The SSH session or the sftp channel could not be opened
+ * <p/>
+ * An idempotent operation is executed again (See {@link SftpFileSystem#execute(SftpCommand, SftpOperation)})
+ */
+class SftpConnectionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    SftpConnectionException(Throwable cause) {
+        super(cause);
+    }
+
+}
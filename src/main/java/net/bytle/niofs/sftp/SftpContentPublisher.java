@@ -0,0 +1,62 @@
+package net.bytle.niofs.sftp;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A publisher of the content of a file by chunk, built on {@link SftpReadByteChannel}
+ * <p/>
+ * A chunk is read only when the subscriber requests it. The reads in flight are then bounded
+ * by the demand and by the read ahead of JSch (the bulk requests of a channel).
+ * A read is executed again at its offset after a lost connection.
+ */
+public class SftpContentPublisher extends SftpPublisher<ByteBuffer> {
+
+    static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+    private final SftpPath file;
+    private final int chunkSize;
+
+    /**
+     * @param file      the file
+     * @param chunkSize the size of a chunk (the last one may be smaller)
+     * @param executor  the executor of the reads or null for the threads of the provider
+     */
+    public SftpContentPublisher(Path file, int chunkSize, Executor executor) {
+        super(executor);
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size (" + chunkSize + ") must be positive");
+        }
+        this.file = SftpFileSystemProvider.toSftpPath(file);
+        this.chunkSize = chunkSize;
+    }
+
+    public SftpContentPublisher(Path file) {
+        this(file, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    @Override
+    protected void publish(SftpSubscription subscription) throws Exception {
+
+        try (SftpReadByteChannel channel = new SftpReadByteChannel(file)) {
+            while (subscription.awaitDemand()) {
+                ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk) == -1) {
+                        break;
+                    }
+                }
+                if (chunk.position() == 0) {
+                    // End of file
+                    return;
+                }
+                chunk.flip();
+                subscription.next(chunk);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A publisher of the entries of a directory, See {@link SftpDirectoryStream} for the blocking version
+ * <p/>
+ * The entries come with their attributes (See {@link SftpPath#getListingAttributes()}).
+ * The server sends the entries by batch (one READDIR request) and JSch sends the next READDIR
+ * only when the entries of the previous one were consumed: the listing waits for the demand of the subscriber
+ * and there is only one READDIR request in flight.
+ * <p/>
+ * The listing holds a channel of the pool until its end (or its cancellation).
+ * It's not executed again after a lost connection as the entries were already published.
+ */
+public class SftpDirectoryPublisher extends SftpPublisher<SftpPath> {
+
+    private final SftpPath directory;
+
+    /**
+     * @param directory the directory
+     * @param executor  the executor of the listing or null for the threads of the provider
+     */
+    public SftpDirectoryPublisher(Path directory, Executor executor) {
+        super(executor);
+        this.directory = SftpFileSystemProvider.toSftpPath(directory).toAbsolutePath();
+    }
+
+    public SftpDirectoryPublisher(Path directory) {
+        this(directory, null);
+    }
+
+    @Override
+    protected void publish(SftpSubscription subscription) throws Exception {
+
+        String stringPath = directory.toString();
+        InterruptedException[] interrupted = new InterruptedException[1];
+        try {
+            directory.getFileSystem().execute(SftpCommand.READDIR, stringPath, channelSftp -> {
+                channelSftp.ls(stringPath, entry -> {
+                    String name = entry.getFilename();
+                    if (name.equals(".") || name.equals("..")) {
+                        return ChannelSftp.LsEntrySelector.CONTINUE;
+                    }
+                    try {
+                        if (!subscription.awaitDemand()) {
+                            return ChannelSftp.LsEntrySelector.BREAK;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted[0] = e;
+                        return ChannelSftp.LsEntrySelector.BREAK;
+                    }
+                    subscription.next(directory.resolveChild(name, entry.getAttrs()));
+                    return ChannelSftp.LsEntrySelector.CONTINUE;
+                });
+                return null;
+            });
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to list the directory (" + stringPath + ")", e);
+        }
+        if (interrupted[0] != null) {
+            throw interrupted[0];
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A compact snapshot of the entries of a directory, See {@link SftpWatchService}
+ * <p/>
+ * The entries are ordered by the hash of their name and each one has a fingerprint of its size and modification time.
+ * Two snapshots are compared with one merge of their arrays, without any map or entry object.
+ */
+class SftpDirectorySnapshot {
+
+    // The change of an entry between two snapshots
+    enum Change {
+        CREATE, MODIFY, DELETE
+    }
+
+    private final String[] names;
+    private final long[] nameHashes;
+    private final long[] fingerprints;
+
+    private SftpDirectorySnapshot(String[] names, long[] nameHashes, long[] fingerprints) {
+        this.names = names;
+        this.nameHashes = nameHashes;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @param entries the entries of a listing (the . and .. entries are skipped)
+     */
+    static SftpDirectorySnapshot of(List<ChannelSftp.LsEntry> entries) {
+
+        List<ChannelSftp.LsEntry> children = new ArrayList<>(entries.size());
+        for (ChannelSftp.LsEntry entry : entries) {
+            if (!(entry.getFilename().equals(".") || entry.getFilename().equals(".."))) {
+                children.add(entry);
+            }
+        }
+        int size = children.size();
+        String[] childNames = new String[size];
+        long[] childHashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            childNames[i] = children.get(i).getFilename();
+            childHashes[i] = hash(childNames[i]);
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> childHashes[i]).thenComparing(i -> childNames[i]));
+
+        String[] names = new String[size];
+        long[] nameHashes = new long[size];
+        long[] fingerprints = new long[size];
+        for (int i = 0; i < size; i++) {
+            int child = order[i];
+            names[i] = childNames[child];
+            nameHashes[i] = childHashes[child];
+            fingerprints[i] = fingerprint(children.get(child).getAttrs());
+        }
+        return new SftpDirectorySnapshot(names, nameHashes, fingerprints);
+
+    }
+
+    /**
+     * @return a 64 bit FNV-1a hash of a name
+     */
+    static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return a mix of the size and of the modification time (a change of one of them changes the fingerprint)
+     */
+    static long fingerprint(SftpATTRS attrs) {
+        long mix = attrs.getSize() * 0x9E3779B97F4A7C15L;
+        mix ^= (mix >>> 32);
+        return mix * 31 + attrs.getMTime();
+    }
+
+    /**
+     * Compare with a previous snapshot
+     *
+     * @param previous the previous snapshot
+     * @param consumer the consumer of the changes with the name of the entry
+     * @return the number of changes
+     */
+    int diff(SftpDirectorySnapshot previous, BiConsumer<Change, String> consumer) {
+
+        int changes = 0;
+        int i = 0;
+        int j = 0;
+        while (i < names.length || j < previous.names.length) {
+            int compare;
+            if (i == names.length) {
+                compare = 1;
+            } else if (j == previous.names.length) {
+                compare = -1;
+            } else {
+                compare = Long.compare(nameHashes[i], previous.nameHashes[j]);
+                if (compare == 0) {
+                    compare = names[i].compareTo(previous.names[j]);
+                }
+            }
+            if (compare < 0) {
+                consumer.accept(Change.CREATE, names[i++]);
+                changes++;
+            } else if (compare > 0) {
+                consumer.accept(Change.DELETE, previous.names[j++]);
+                changes++;
+            } else {
+                if (fingerprints[i] != previous.fingerprints[j]) {
+                    consumer.accept(Change.MODIFY, names[i]);
+                    changes++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return changes;
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package net.bytle.niofs.sftp;
 
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 import java.io.IOException;
@@ -11,6 +12,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -45,12 +47,22 @@ public class SftpDirectoryStream implements DirectoryStream<Path> {
 
         List<Path> pathList = new ArrayList<>();
         try {
-            Vector<ChannelSftp.LsEntry> childFiles = this.path.getChannelSftp().ls(this.path.getStringPath());
+            // The children share the absolute directory path as parent
+            SftpPath directory = this.path.toAbsolutePath();
+            String stringPath = directory.toString();
+            SftpIndex index = this.path.getFileSystem().getIndex();
+            Map<String, SftpATTRS> indexed = index == null ? null : index.list(stringPath);
+            if (indexed != null) {
+                for (Map.Entry<String, SftpATTRS> child : indexed.entrySet()) {
+                    pathList.add(directory.resolveChild(child.getKey(), child.getValue()));
+                }
+                return pathList.iterator();
+            }
+            Vector<ChannelSftp.LsEntry> childFiles = this.path.getFileSystem().execute(SftpCommand.LS, stringPath, channelSftp -> channelSftp.ls(stringPath));
 
             for (ChannelSftp.LsEntry file: childFiles) {
                 if ( !(file.getFilename().equals(".") || file.getFilename().equals(".."))) {
-                    String childPathString = this.path.getStringPath() + this.path.getFileSystem().getSeparator() + file.getFilename();
-                    Path childPath = SftpPath.get(this.path.getFileSystem(), childPathString);
+                    Path childPath = directory.resolveChild(file.getFilename(), file.getAttrs());
                     pathList.add(childPath);
                 }
 
@@ -0,0 +1,217 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The polls of the watched directories of a file system, See {@link SftpWatchService}
+ * <p/>
+ * Each directory is listed once by poll, whatever the number of its keys.
+ * The interval of a directory starts at the minimum, doubles after each poll without change until the maximum
+ * and goes back to the minimum with a change: a quiet directory costs one listing by maximum interval.
+ */
+class SftpDirectoryWatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    private final SftpFileSystem fileSystem;
+    private final long intervalMin;
+    private final long intervalMax;
+    // The watched directories by absolute path
+    private final Map<String, WatchedDirectory> directories = new HashMap<>();
+    private boolean isClosed = false;
+
+    SftpDirectoryWatcher(SftpFileSystem fileSystem, long intervalMin, long intervalMax) {
+        this.fileSystem = fileSystem;
+        this.intervalMin = intervalMin;
+        this.intervalMax = Math.max(intervalMin, intervalMax);
+    }
+
+    /**
+     * Add a key to its directory.
+     * The first key of a directory lists it (the first snapshot) and schedules its polls.
+     */
+    void register(SftpWatchKey key) throws IOException {
+
+        String stringPath = key.getDirectory().toString();
+        synchronized (directories) {
+            if (isClosed) {
+                throw new IOException("The file system is closed");
+            }
+            WatchedDirectory directory = directories.get(stringPath);
+            if (directory != null) {
+                directory.keys.add(key);
+                return;
+            }
+        }
+        if (!new SftpBasicFileAttributes(key.getDirectory()).isDirectory()) {
+            throw new NotDirectoryException(stringPath);
+        }
+        SftpDirectorySnapshot snapshot;
+        try {
+            snapshot = list(stringPath);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to list the directory (" + stringPath + ")", e);
+        }
+        synchronized (directories) {
+            WatchedDirectory directory = directories.get(stringPath);
+            if (directory == null) {
+                directory = new WatchedDirectory(stringPath, snapshot);
+                directories.put(stringPath, directory);
+                directory.schedule();
+            }
+            directory.keys.add(key);
+        }
+
+    }
+
+    /**
+     * Remove a key, a directory without key is not polled anymore
+     */
+    void unregister(SftpWatchKey key) {
+        synchronized (directories) {
+            WatchedDirectory directory = directories.get(key.getDirectory().toString());
+            if (directory != null && directory.keys.remove(key) && directory.keys.isEmpty()) {
+                directory.cancel();
+                directories.remove(directory.stringPath);
+            }
+        }
+    }
+
+    /**
+     * @return the number of watched directories
+     */
+    int size() {
+        synchronized (directories) {
+            return directories.size();
+        }
+    }
+
+    /**
+     * One listing (never from the metadata cache), the poll doesn't stat the directory
+     */
+    private SftpDirectorySnapshot list(String stringPath) throws SftpException {
+        Vector<ChannelSftp.LsEntry> entries = fileSystem.executeFresh(SftpCommand.LS, stringPath, channelSftp -> channelSftp.ls(stringPath));
+        return SftpDirectorySnapshot.of(entries);
+    }
+
+    /**
+     * Stop all polls (the file system is closed), the keys are invalidated
+     */
+    void close() {
+        List<WatchedDirectory> watched;
+        synchronized (directories) {
+            isClosed = true;
+            watched = new ArrayList<>(directories.values());
+            directories.clear();
+        }
+        for (WatchedDirectory directory : watched) {
+            directory.cancel();
+            for (SftpWatchKey key : directory.getKeys()) {
+                key.invalidate();
+            }
+        }
+    }
+
+    private class WatchedDirectory {
+
+        private final String stringPath;
+        private final Set<SftpWatchKey> keys = new HashSet<>();
+        private SftpDirectorySnapshot snapshot;
+        private long interval = intervalMin;
+        private ScheduledFuture<?> poll;
+
+        WatchedDirectory(String stringPath, SftpDirectorySnapshot snapshot) {
+            this.stringPath = stringPath;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Called with the lock of the directories
+         */
+        void schedule() {
+            poll = fileSystem.provider().scheduleWatch(this::poll, interval);
+        }
+
+        void cancel() {
+            if (poll != null) {
+                poll.cancel(false);
+            }
+        }
+
+        List<SftpWatchKey> getKeys() {
+            synchronized (directories) {
+                return new ArrayList<>(keys);
+            }
+        }
+
+        private void poll() {
+
+            SftpDirectorySnapshot current;
+            try {
+                current = list(stringPath);
+            } catch (SftpException e) {
+                if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    // The directory is gone
+                    synchronized (directories) {
+                        directories.remove(stringPath, this);
+                    }
+                    for (SftpWatchKey key : getKeys()) {
+                        key.invalidate();
+                    }
+                    return;
+                }
+                // Connection lost: the next poll will tell
+                LOGGER.fine("The poll of the watched directory (" + stringPath + ") has failed: " + e.getMessage());
+                current = snapshot;
+            } catch (RuntimeException e) {
+                LOGGER.warning("The poll of the watched directory (" + stringPath + ") has failed: " + e);
+                current = snapshot;
+            }
+
+            List<SftpWatchKey> signalledKeys = getKeys();
+            int changes = current.diff(snapshot, (change, name) -> {
+                Path context = fileSystem.getPath(name);
+                WatchEvent.Kind<Path> kind;
+                switch (change) {
+                    case CREATE:
+                        kind = StandardWatchEventKinds.ENTRY_CREATE;
+                        break;
+                    case DELETE:
+                        kind = StandardWatchEventKinds.ENTRY_DELETE;
+                        break;
+                    default:
+                        kind = StandardWatchEventKinds.ENTRY_MODIFY;
+                }
+                for (SftpWatchKey key : signalledKeys) {
+                    key.signalEvent(kind, context);
+                }
+            });
+            snapshot = current;
+            interval = changes > 0 ? intervalMin : Math.min(interval * 2, intervalMax);
+
+            synchronized (directories) {
+                if (directories.get(stringPath) == this) {
+                    schedule();
+                }
+            }
+
+        }
+
+    }
+
+}
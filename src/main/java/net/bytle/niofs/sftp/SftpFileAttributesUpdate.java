@@ -0,0 +1,257 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A bulk update of the attributes of a file (times, permissions, owner and group)
+ * <p/>
+ * All attributes are send to the server in one SSH_FXP_SETSTAT request.
+ * The protocol sends the access and modification time together (as well as the uid and the gid),
+ * then when only one of a pair is given, the current attributes are first fetched with a stat.
+ * <p/>
+ * JSch doesn't expose the FSETSTAT request on an open handle. A write channel
+ * will then apply the update by path just after the handle has been closed (See {@link SftpOverWriteByteChannel}).
+ */
+public class SftpFileAttributesUpdate {
+
+    private final FileTime lastModifiedTime;
+    private final FileTime lastAccessTime;
+    private final Set<PosixFilePermission> permissions;
+    private final Integer uid;
+    private final Integer gid;
+    private final Long size;
+
+    private SftpFileAttributesUpdate(SftpFileAttributesUpdateBuilder builder) {
+        this.lastModifiedTime = builder.lastModifiedTime;
+        this.lastAccessTime = builder.lastAccessTime;
+        this.permissions = builder.permissions;
+        this.uid = builder.uid;
+        this.gid = builder.gid;
+        this.size = builder.size;
+    }
+
+    /**
+     * @return true if there is nothing to update
+     */
+    public boolean isEmpty() {
+        return lastModifiedTime == null && lastAccessTime == null && permissions == null && uid == null && gid == null && size == null;
+    }
+
+    /**
+     * Apply the update on a path
+     *
+     * @param path the sftp path
+     * @throws IOException
+     */
+    public void apply(Path path) throws IOException {
+
+        if (isEmpty()) {
+            return;
+        }
+
+        SftpPath sftpPath = SftpFileSystemProvider.toSftpPath(path);
+        sftpPath.getFileSystem().checkWritable();
+        String stringPath = sftpPath.getStringPath();
+        try {
+
+            SftpATTRS current = null;
+            if (needsCurrentAttributes()) {
+                current = sftpPath.getFileSystem().executeFresh(SftpCommand.STAT, stringPath, channelSftp -> channelSftp.stat(stringPath));
+            }
+            SftpATTRS attrs = toSftpATTRS(current);
+            sftpPath.getFileSystem().execute(SftpCommand.SETSTAT, stringPath, channelSftp -> {
+                channelSftp.setStat(stringPath, attrs);
+                return null;
+            });
+
+        } catch (SftpException e) {
+            throw new IOException("Unable to set the file attributes of (" + stringPath + ")", e);
+        }
+
+    }
+
+    /**
+     * The SETSTAT request sends the times and the ids by pair
+     *
+     * @return true if a stat is needed to complete a pair
+     */
+    boolean needsCurrentAttributes() {
+        return (lastModifiedTime == null) != (lastAccessTime == null) || (uid == null) != (gid == null);
+    }
+
+    /**
+     * @param current the current attributes, only used when a pair is incomplete (See {@link #needsCurrentAttributes()})
+     * @return the attributes to send with only the flags of the updated attributes set
+     */
+    SftpATTRS toSftpATTRS(SftpATTRS current) {
+
+        SftpATTRS attrs = newSftpATTRS();
+
+        if (lastModifiedTime != null || lastAccessTime != null) {
+            int lastAccessTimeInInt = lastAccessTime != null ? SftpBasicFileAttributes.toSftpTime(lastAccessTime) : current.getATime();
+            int lastModifiedTimeInInt = lastModifiedTime != null ? SftpBasicFileAttributes.toSftpTime(lastModifiedTime) : current.getMTime();
+            attrs.setACMODTIME(lastAccessTimeInInt, lastModifiedTimeInInt);
+        }
+
+        if (size != null) {
+            attrs.setSIZE(size);
+        }
+
+        if (permissions != null) {
+            attrs.setPERMISSIONS(SftpPosixFileAttributes.toMode(permissions));
+        }
+
+        if (uid != null || gid != null) {
+            attrs.setUIDGID(
+                    uid != null ? uid : current.getUId(),
+                    gid != null ? gid : current.getGId()
+            );
+        }
+
+        return attrs;
+
+    }
+
+    // The private constructor made accessible once
+    private static volatile Constructor<SftpATTRS> sftpATTRSConstructor;
+
+    /**
+     * The constructor of {@link SftpATTRS} is private and a stat returns all flags (size included).
+     * We create then an empty one to send only the updated attributes.
+     *
+     * @return a SftpATTRS without any flags
+     */
+    static SftpATTRS newSftpATTRS() {
+        try {
+            if (sftpATTRSConstructor == null) {
+                Constructor<SftpATTRS> constructor = SftpATTRS.class.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                sftpATTRSConstructor = constructor;
+            }
+            return sftpATTRSConstructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to create an empty Sftp attributes object", e);
+        }
+    }
+
+    public static class SftpFileAttributesUpdateBuilder {
+
+        private FileTime lastModifiedTime;
+        private FileTime lastAccessTime;
+        private Set<PosixFilePermission> permissions;
+        private Integer uid;
+        private Integer gid;
+        private Long size;
+
+        public SftpFileAttributesUpdateBuilder() {
+        }
+
+        public SftpFileAttributesUpdateBuilder lastModifiedTime(FileTime lastModifiedTime) {
+            this.lastModifiedTime = lastModifiedTime;
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder lastAccessTime(FileTime lastAccessTime) {
+            this.lastAccessTime = lastAccessTime;
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder permissions(Set<PosixFilePermission> permissions) {
+            this.permissions = permissions;
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder owner(UserPrincipal owner) {
+            this.uid = toId(owner);
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder group(GroupPrincipal group) {
+            this.gid = toId(group);
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder uid(int uid) {
+            this.uid = uid;
+            return this;
+        }
+
+        public SftpFileAttributesUpdateBuilder gid(int gid) {
+            this.gid = gid;
+            return this;
+        }
+
+        /**
+         * Truncate (or extend) the file, See {@link SftpAsynchronousFileChannel#truncate(long)}
+         */
+        SftpFileAttributesUpdateBuilder size(long size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Take over the attributes given at the creation of a file
+         * (ie {@link java.nio.file.Files#newByteChannel(Path, Set, FileAttribute[])})
+         *
+         * @param attrs the file attributes with the view name as prefix (ie posix:permissions, basic:lastModifiedTime)
+         */
+        @SuppressWarnings("unchecked")
+        public SftpFileAttributesUpdateBuilder fileAttributes(FileAttribute<?>... attrs) {
+
+            for (FileAttribute<?> attr : attrs) {
+
+                String name = attr.name();
+                int colonPos = name.indexOf(':');
+                if (colonPos != -1) {
+                    name = name.substring(colonPos + 1);
+                }
+                switch (name) {
+                    case "lastModifiedTime":
+                        lastModifiedTime((FileTime) attr.value());
+                        break;
+                    case "lastAccessTime":
+                        lastAccessTime((FileTime) attr.value());
+                        break;
+                    case "permissions":
+                        permissions((Set<PosixFilePermission>) attr.value());
+                        break;
+                    case "owner":
+                        owner((UserPrincipal) attr.value());
+                        break;
+                    case "group":
+                        group((GroupPrincipal) attr.value());
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("The file attribute (" + attr.name() + ") is not supported.");
+                }
+            }
+            return this;
+
+        }
+
+        public SftpFileAttributesUpdate build() {
+            return new SftpFileAttributesUpdate(this);
+        }
+
+        private static int toId(UserPrincipal principal) {
+            if (!(principal instanceof SftpPrincipal)) {
+                throw new UnsupportedOperationException("Only Sftp principals (uid or gid) are supported. The principal (" + principal + ") is not one of them.");
+            }
+            return ((SftpPrincipal) principal).getId();
+        }
+
+    }
+
+}
@@ -1,8 +1,5 @@
 package net.bytle.niofs.sftp;
 
-import com.jcraft.jsch.SftpATTRS;
-import com.jcraft.jsch.SftpException;
-
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributeView;
@@ -35,49 +32,26 @@ public class SftpFileBasicAttributeView implements BasicFileAttributeView {
     }
 
     public BasicFileAttributes readAttributes() throws IOException {
-         throw new UnsupportedOperationException("The readAttributes function is not supported.");
+        return path.getFileAttributes();
     }
 
     /*
      * Create Time can not be set with Sftp
+     * The times are send in one SETSTAT request (See {@link SftpFileAttributesUpdate})
      */
     public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
 
-        try {
-
-            int lastModifiedTimeInInt;
-            int lastAccessTimeInInt;
-
-            SftpATTRS attrs = path.getChannelSftp().stat(path.getStringPath());
-
-            if (lastModifiedTime != null) {
-                lastModifiedTimeInInt = (int) (lastModifiedTime.toMillis() / 1000 - 2*SftpBasicFileAttributes.timeOffset);
-            } else {
-                lastModifiedTimeInInt = attrs.getMTime();
-            }
-
-            if (lastAccessTime != null) {
-                lastAccessTimeInInt = (int) (lastAccessTime.toMillis() / 1000 - 2*SftpBasicFileAttributes.timeOffset);
-            } else {
-                lastAccessTimeInInt = attrs.getATime();
-            }
-            attrs.setACMODTIME(
-                    lastAccessTimeInInt,
-                    lastModifiedTimeInInt
-            );
-
-            if (createTime != null) {
-                LOGGER.warning("The creation time of a file doesn't exist in the SSH protocol, the creation time can then not be changed.");
-                throw new UnsupportedOperationException("The creation time of a file doesn't exist in the SSH protocol, the creation time can" +
-                        " then not be changed.");
-            }
-
-            path.getChannelSftp().setStat(path.getStringPath(),attrs);
-
-        } catch (SftpException e) {
-            throw new RuntimeException(e);
+        if (createTime != null) {
+            LOGGER.warning("The creation time of a file doesn't exist in the SSH protocol, the creation time can then not be changed.");
+            throw new UnsupportedOperationException("The creation time of a file doesn't exist in the SSH protocol, the creation time can" +
+                    " then not be changed.");
         }
 
+        new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .lastModifiedTime(lastModifiedTime)
+                .lastAccessTime(lastAccessTime)
+                .build()
+                .apply(path);
 
     }
 
@@ -95,6 +69,9 @@ public class SftpFileBasicAttributeView implements BasicFileAttributeView {
         if (attr.equals("lastAccessTime")) {
             FileTime  lastAccessTime = (FileTime) value;
             setTimes(null,lastAccessTime,null);
+        } else if (attr.equals("lastModifiedTime")) {
+            FileTime lastModifiedTime = (FileTime) value;
+            setTimes(lastModifiedTime, null, null);
         } else {
             throw new UnsupportedOperationException("The file attribute ("+attr+") is unknown.");
         }
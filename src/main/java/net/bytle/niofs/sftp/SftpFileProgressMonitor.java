@@ -2,46 +2,156 @@ package net.bytle.niofs.sftp;
 
 import com.jcraft.jsch.SftpProgressMonitor;
 
+import java.nio.file.OpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by gerard on 22-11-2015.
+ * The progress of a transfer, reported to the {@link SftpTransferListener listeners}
+ * <p/>
+ * JSch calls {@link #count(long)} with the bytes of each chunk.
+ * When the {@link SftpCancellationToken token} is cancelled, {@link #count(long)} returns false and JSch aborts the transfer.
+ * The monitor lives as long as the byte channel: a read opened again at a new position or after a reconnection
+ * calls {@link #init(int, String, String, long)} again in the same transfer.
  */
 public class SftpFileProgressMonitor implements SftpProgressMonitor {
 
+    /**
+     * The minimum interval in ms between two progress notifications
+     */
+    static final long PROGRESS_INTERVAL = 100;
 
-    public long max; // the final count (i.e. length of file to transfer).
-    public String destinationFileName;
+    /**
+     * The weight of the last throughput in the smoothed throughput
+     */
+    static final double SMOOTHING_FACTOR = 0.3;
 
+    public long max = -1; // the final count (i.e. length of file to transfer), -1 if unknown.
+    public String destinationFileName;
 
-    private long count; // the number of bytes transferred so far
-    private int direction; // either SftpOverWriteByteChannel.PUT or get
-    private String stringBeingTransferred;
+    private final String path;
+    private final String direction; // SftpTransferEvent.READ or WRITE
+    private final List<SftpTransferListener> listeners;
+    private final SftpCancellationToken cancellationToken;
+
+    private volatile long count = 0; // the number of bytes transferred so far
+    private long startNanos = -1;
+    private long lastNanos;
+    private long lastCount;
+    private double throughput = 0;
+    private double smoothedThroughput = 0;
+    private boolean ended = false;
+
+    SftpFileProgressMonitor(String path, String direction, List<SftpTransferListener> listeners, SftpCancellationToken cancellationToken) {
+        this.path = path;
+        this.direction = direction;
+        this.listeners = listeners;
+        this.cancellationToken = cancellationToken;
+    }
 
+    /**
+     * @return a monitor with the listeners of the file system and the listener and token of the open options
+     */
+    static SftpFileProgressMonitor of(SftpPath path, String direction, Set<? extends OpenOption> options) {
+        List<SftpTransferListener> listeners = new ArrayList<>(path.getFileSystem().getTransferListeners());
+        listeners.addAll(SftpTransferOption.getListeners(options));
+        return new SftpFileProgressMonitor(path.getStringPath(), direction, listeners, SftpTransferOption.getCancellationToken(options));
+    }
 
-    public void init(int i, String src, String destinationFileName, long max) {
-        this.direction = i;
-        this.stringBeingTransferred = src;
+    public synchronized void init(int op, String src, String destinationFileName, long max) {
         this.destinationFileName = destinationFileName;
-        this.max = max;
+        if (max >= 0) {
+            // A read opened again at a position gives the size of the file
+            this.max = max;
+        }
     }
 
+    /**
+     * Starts the transfer and notifies the listeners (called by the byte channel once the file is opened)
+     */
+    synchronized void start() {
+        if (startNanos != -1) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        SftpTransferProgress progress = getProgress();
+        for (SftpTransferListener listener : listeners) {
+            listener.onStart(progress);
+        }
+    }
 
-    // Called periodically as more data is transfered.
-    public boolean count(long count) {
+    /**
+     * @param bytes the bytes transferred since the last call
+     * @return true if the transfer should go on, false if the transfer should be cancelled.
+     */
+    public boolean count(long bytes) {
+
+        synchronized (this) {
+            count += bytes;
+            long now = System.nanoTime();
+            long elapsed = now - lastNanos;
+            if (elapsed >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL)) {
+                throughput = (count - lastCount) * 1e9 / elapsed;
+                smoothedThroughput = smoothedThroughput == 0 ? throughput : SMOOTHING_FACTOR * throughput + (1 - SMOOTHING_FACTOR) * smoothedThroughput;
+                lastNanos = now;
+                lastCount = count;
+                SftpTransferProgress progress = getProgress();
+                for (SftpTransferListener listener : listeners) {
+                    listener.onProgress(progress);
+                }
+            }
+        }
+        return !isCancelled();
 
-        this.count = count;
-        // true if the transfer should go on, false if the transfer should be cancelled.
-        return true;
     }
 
-    // called when the transfer ended, either because all the data was transferred,
-    // or because the transfer was cancelled.
+    /**
+     * Called by JSch when a stream is closed.
+     * The transfer ends with the close of the byte channel (See {@link #close()})
+     */
     public void end() {
 
     }
 
+    /**
+     * Ends the transfer and notifies the listeners (once)
+     */
+    synchronized void close() {
+        if (ended || startNanos == -1) {
+            return;
+        }
+        ended = true;
+        long elapsed = System.nanoTime() - startNanos;
+        if (elapsed > 0 && smoothedThroughput == 0) {
+            // Shorter than a progress interval
+            throughput = count * 1e9 / elapsed;
+            smoothedThroughput = throughput;
+        }
+        SftpTransferProgress progress = getProgress();
+        for (SftpTransferListener listener : listeners) {
+            listener.onEnd(progress);
+        }
+    }
+
     public long getCount() {
         return count;
     }
 
+    public boolean isCancelled() {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    /**
+     * @return a snapshot of the progress
+     */
+    public synchronized SftpTransferProgress getProgress() {
+        Duration elapsed = startNanos == -1 ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - startNanos);
+        return new SftpTransferProgress(path, direction, count, max, elapsed, throughput, smoothedThroughput, isCancelled());
+    }
 
 }
@@ -0,0 +1,306 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpStatVFS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The file store of a path: the space of the remote file system where the path is
+ * <p/>
+ * The space comes from the statvfs@openssh.com extension or, when the server doesn't have it
+ * and {@link SftpFileSystem#KEY_FILESTORE_DF} is on, from a df command executed on the server.
+ * It's cached during {@link SftpFileSystem#KEY_FILESTORE_CACHE_TTL} ms:
+ * a check of the free space before each upload doesn't add a round trip.
+ * <p/>
+ * A store is identified by the file system id of statvfs (or the device of df):
+ * the paths of the same remote file system share one store and one cached space.
+ */
+public class SftpFileStore extends FileStore {
+
+    // The read only flag of statvfs (ST_RDONLY)
+    private static final long ST_RDONLY = 0x1;
+
+    private final SftpFileSystem fileSystem;
+    private final String name;
+    // The path whose space is read again when the cache expires
+    private final String stringPath;
+    private final boolean dfFallback;
+    private final long cacheTtl;
+    private volatile Space space;
+
+    /**
+     * @param fileSystem the file system
+     * @param stringPath the absolute path whose space was read
+     * @param space      the space of the path (See {@link #read(SftpFileSystem, String, boolean)})
+     * @param dfFallback execute df when the server doesn't have statvfs
+     * @param cacheTtl   the time to live in ms of the space
+     */
+    SftpFileStore(SftpFileSystem fileSystem, String stringPath, Space space, boolean dfFallback, long cacheTtl) {
+        this.fileSystem = fileSystem;
+        this.name = space.name;
+        this.stringPath = stringPath;
+        this.dfFallback = dfFallback;
+        this.cacheTtl = cacheTtl;
+        this.space = space;
+    }
+
+    /**
+     * The space of the file store: total, usable (by a non root user) and unallocated (free) in bytes
+     */
+    static class Space {
+
+        // The file system id (statvfs) or the device (df)
+        final String name;
+        final long total;
+        final long usable;
+        final long unallocated;
+        final boolean readOnly;
+        final long time = System.nanoTime();
+
+        Space(String name, long total, long usable, long unallocated, boolean readOnly) {
+            this.name = name;
+            this.total = total;
+            this.usable = usable;
+            this.unallocated = unallocated;
+            this.readOnly = readOnly;
+        }
+
+    }
+
+    /**
+     * @return the cached space or the space read again if it's expired
+     */
+    private Space getSpace() throws IOException {
+        Space current = space;
+        if (System.nanoTime() - current.time > TimeUnit.MILLISECONDS.toNanos(cacheTtl)) {
+            synchronized (this) {
+                current = space;
+                if (System.nanoTime() - current.time > TimeUnit.MILLISECONDS.toNanos(cacheTtl)) {
+                    current = read(fileSystem, stringPath, dfFallback);
+                    space = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * A space read for another path of the store is newer than the cached one
+     */
+    void update(Space newSpace) {
+        synchronized (this) {
+            if (newSpace.time - space.time > 0) {
+                space = newSpace;
+            }
+        }
+    }
+
+    /**
+     * @param stringPath an absolute path
+     * @param dfFallback execute df when the server doesn't have statvfs
+     * @return the space of the file system of the path
+     */
+    static Space read(SftpFileSystem fileSystem, String stringPath, boolean dfFallback) throws IOException {
+
+        boolean statVfs = fileSystem.getServerCapabilities().hasExtension(SftpServerCapabilities.STATVFS);
+        if (!statVfs && !dfFallback) {
+            throw new UnsupportedOperationException("The server has no " + SftpServerCapabilities.STATVFS + " extension and the df fallback (" + SftpFileSystem.KEY_FILESTORE_DF + ") is off");
+        }
+        try {
+            return fileSystem.execute(SftpCommand.STATVFS, stringPath, channelSftp -> statVfs ? statVfs(channelSftp, stringPath) : df(channelSftp, stringPath));
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to get the space of (" + stringPath + ")", e);
+        }
+
+    }
+
+    private static Space statVfs(ChannelSftp channelSftp, String stringPath) throws SftpException {
+        SftpStatVFS statVFS = channelSftp.statVFS(stringPath);
+        long fragmentSize = statVFS.getFragmentSize() > 0 ? statVFS.getFragmentSize() : statVFS.getBlockSize();
+        return new Space(
+                "fsid:" + Long.toHexString(statVFS.getFileSystemID()),
+                statVFS.getBlocks() * fragmentSize,
+                statVFS.getAvailBlocks() * fragmentSize,
+                statVFS.getFreeBlocks() * fragmentSize,
+                (statVFS.getMountFlag() & ST_RDONLY) != 0);
+    }
+
+    /**
+     * Execute df with the POSIX output format in Kb
+     * <pre>
+     * Filesystem     1024-blocks      Used Available Capacity Mounted on
+     * /dev/sda1        102687672  40316564  57111844      42% /
+     * </pre>
+     * The error output is written by the session in a buffer: a full error output can't block the command
+     * while the standard output is read.
+     */
+    private static Space df(ChannelSftp channelSftp, String stringPath) throws SftpException {
+
+        ChannelExec channel = null;
+        try {
+            // An exec channel of the session of the sftp channel
+            channel = (ChannelExec) channelSftp.getSession().openChannel("exec");
+            channel.setCommand("df -Pk " + quote(stringPath));
+            InputStream inputStream = channel.getInputStream();
+            ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+            channel.setErrStream(errorStream);
+            channel.connect();
+            String output = readAll(inputStream);
+            while (!channel.isClosed()) {
+                Thread.sleep(10);
+            }
+            String error = new String(errorStream.toByteArray(), StandardCharsets.UTF_8);
+            if (channel.getExitStatus() != 0) {
+                int id = error.contains("No such file") ? ChannelSftp.SSH_FX_NO_SUCH_FILE : ChannelSftp.SSH_FX_FAILURE;
+                throw new SftpException(id, "df has failed with the status " + channel.getExitStatus() + ": " + error.trim());
+            }
+            String[] lines = output.trim().split("\\r?\\n");
+            String[] columns = lines[lines.length - 1].trim().split("\\s+");
+            if (lines.length < 2 || columns.length < 6) {
+                throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "The output of df is unexpected: " + output);
+            }
+            long total = Long.parseLong(columns[1]) * 1024;
+            long used = Long.parseLong(columns[2]) * 1024;
+            long available = Long.parseLong(columns[3]) * 1024;
+            return new Space(columns[0], total, available, total - used, false);
+        } catch (JSchException | IOException e) {
+            throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "df has failed: " + e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "The output of df is unexpected: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "df was interrupted", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+
+    }
+
+    /**
+     * @return the path quoted for the shell of the server if it has special characters
+     */
+    static String quote(String path) {
+        if (path.matches("[A-Za-z0-9/._+-]+")) {
+            return path;
+        }
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    private static String readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the file system id (statvfs) or the device (df)
+     */
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String type() {
+        return SftpFileSystemProvider.SFTP_SCHEME;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return space.readOnly;
+    }
+
+    @Override
+    public long getTotalSpace() throws IOException {
+        return getSpace().total;
+    }
+
+    @Override
+    public long getUsableSpace() throws IOException {
+        return getSpace().usable;
+    }
+
+    @Override
+    public long getUnallocatedSpace() throws IOException {
+        return getSpace().unallocated;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return type == BasicFileAttributeView.class || type == PosixFileAttributeView.class;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return fileSystem.supportedFileAttributeViews().contains(name);
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws IOException {
+        switch (attribute) {
+            case "totalSpace":
+                return getTotalSpace();
+            case "usableSpace":
+                return getUsableSpace();
+            case "unallocatedSpace":
+                return getUnallocatedSpace();
+            default:
+                throw new UnsupportedOperationException("The attribute (" + attribute + ") is not supported");
+        }
+    }
+
+    /**
+     * Two stores are equal if they are the same remote file system (same file system id) seen by the same file system
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SftpFileStore)) {
+            return false;
+        }
+        SftpFileStore that = (SftpFileStore) o;
+        return fileSystem == that.fileSystem && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(fileSystem) + name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return stringPath + " (" + name + ")";
+    }
+
+}
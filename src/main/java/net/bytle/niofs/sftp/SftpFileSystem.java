@@ -1,16 +1,22 @@
 package net.bytle.niofs.sftp;
 
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.nio.file.attribute.UserPrincipalLookupService;
-import java.nio.file.spi.FileSystemProvider;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -24,17 +30,174 @@ public class SftpFileSystem extends FileSystem {
     private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
 
     // Parameters
-    // Set the working directory
+    // Set the working directory (the relative paths are resolved by the client, the channels are shared)
     public static final String KEY_WORKING_DIRECTORY = "working.directory";
-
-    private ChannelSftp channelSftp;
+    // The maximum number of directories known to exist (0 to disable), See {@link #isKnownDirectory(SftpPath)}
+    public static final String KEY_KNOWN_DIRECTORIES_MAX = "known.directories.max";
+    static final int DEFAULT_KNOWN_DIRECTORIES_MAX = 10000;
+    // The interval in ms between two keep alive messages to the server (0 to disable)
+    public static final String KEY_KEEPALIVE_INTERVAL = "keepalive.interval";
+    static final int DEFAULT_KEEPALIVE_INTERVAL = 15000;
+    // The number of keep alive messages without response before the session is considered dead
+    public static final String KEY_KEEPALIVE_COUNT_MAX = "keepalive.count.max";
+    static final int DEFAULT_KEEPALIVE_COUNT_MAX = 3;
+    // The maximum number of retries of an idempotent operation when the connection is lost
+    public static final String KEY_RETRY_MAX = "retry.max";
+    static final int DEFAULT_RETRY_MAX = 3;
+    // The first wait in ms before a retry, it doubles at each retry until the max
+    public static final String KEY_RETRY_BACKOFF_INITIAL = "retry.backoff.initial";
+    static final int DEFAULT_RETRY_BACKOFF_INITIAL = 100;
+    public static final String KEY_RETRY_BACKOFF_MAX = "retry.backoff.max";
+    static final int DEFAULT_RETRY_BACKOFF_MAX = 5000;
+    // The time in ms without any operation after which the session is closed (0 to disable)
+    // The file system stays open and connects again with the next operation
+    public static final String KEY_IDLE_TIMEOUT = "idle.timeout";
+    static final int DEFAULT_IDLE_TIMEOUT = 0;
+    // The maximum number of open sessions on a host by all file systems (0 for no limit)
+    // The first file system that connects to a host sets it
+    public static final String KEY_SESSIONS_MAX_PER_HOST = "sessions.max.per.host";
+    static final int DEFAULT_SESSIONS_MAX_PER_HOST = 0;
+    // The maximum time in ms to wait for a free session on the host
+    public static final String KEY_SESSIONS_WAIT_TIMEOUT = "sessions.wait.timeout";
+    static final int DEFAULT_SESSIONS_WAIT_TIMEOUT = 30000;
+    // The number of sftp channels opened with the session
+    public static final String KEY_CHANNEL_POOL_MIN = "channel.pool.min";
+    static final int DEFAULT_CHANNEL_POOL_MIN = 1;
+    // The maximum number of sftp channels of a session (ie of operations and streams in parallel)
+    public static final String KEY_CHANNEL_POOL_MAX = "channel.pool.max";
+    static final int DEFAULT_CHANNEL_POOL_MAX = 4;
+    // The maximum time in ms to wait for a free channel
+    public static final String KEY_CHANNEL_POOL_WAIT_TIMEOUT = "channel.pool.wait.timeout";
+    static final int DEFAULT_CHANNEL_POOL_WAIT_TIMEOUT = 30000;
+    // Connect in the background when the file system is created (true) or with the first operation (false)
+    public static final String KEY_CONNECT_EAGER = "connect.eager";
+    static final boolean DEFAULT_CONNECT_EAGER = false;
+    // Where the blocking calls are executed: on the calling thread (direct)
+    // or on the I/O threads of the session (dispatch), for virtual threads, See {@link SftpTransport}
+    public static final String KEY_EXECUTION_MODE = "execution.mode";
+    static final String EXECUTION_MODE_DIRECT = "direct";
+    static final String EXECUTION_MODE_DISPATCH = "dispatch";
+    // The number of read requests that a channel sends in advance (the JSch default is 16)
+    // JSch doesn't query limits@openssh.com, more requests in flight means less waits on a link with latency
+    public static final String KEY_BULK_REQUESTS = "bulk.requests";
+    static final int DEFAULT_BULK_REQUESTS = 16;
+    // Size the window and the packet of the channels to the bandwidth-delay product (the round trip time is measured by session)
+    // or keep the JSch defaults (window of 2 Mb, packet of 32 Kb), See {@link SftpChannelSizing}
+    // The measure costs 3 realpath round trips by session, it's then opt-in
+    public static final String KEY_WINDOW_AUTO = "window.auto";
+    static final boolean DEFAULT_WINDOW_AUTO = false;
+    // The expected bandwidth of the link in bytes by second (default 1 Gbit/s)
+    public static final String KEY_WINDOW_BANDWIDTH = "window.bandwidth";
+    static final int DEFAULT_WINDOW_BANDWIDTH = 125_000_000;
+    // The bounds of the window in bytes
+    public static final String KEY_WINDOW_SIZE_MIN = "window.size.min";
+    static final int DEFAULT_WINDOW_SIZE_MIN = SftpChannelSizing.JSCH_WINDOW_SIZE;
+    public static final String KEY_WINDOW_SIZE_MAX = "window.size.max";
+    static final int DEFAULT_WINDOW_SIZE_MAX = 32 * 1024 * 1024;
+    // The maximum packet in bytes (JSch refuses packets bigger than 256 Kb)
+    public static final String KEY_PACKET_SIZE_MAX = "packet.size.max";
+    static final int DEFAULT_PACKET_SIZE_MAX = 128 * 1024;
+    // Order the ciphers by their local throughput (measured once by JVM), the session gets the fastest one of the server
+    // See {@link SftpCiphers}
+    public static final String KEY_CIPHER_AUTO = "cipher.auto";
+    static final boolean DEFAULT_CIPHER_AUTO = false;
+    // The compression of the session: none, zlib (if the server has it)
+    // or adaptive (switched on and off with the compression ratio of the payload, See {@link SftpCompressionSampler})
+    public static final String KEY_COMPRESSION = "compression";
+    static final String COMPRESSION_NONE = "none";
+    static final String COMPRESSION_ZLIB = "zlib";
+    static final String COMPRESSION_ADAPTIVE = "adaptive";
+    // Publish the metrics of the file system in JMX, See {@link SftpMetrics}
+    public static final String KEY_METRICS_JMX = "metrics.jmx";
+    static final boolean DEFAULT_METRICS_JMX = true;
+    // The bounds in ms of the interval between two polls of a watched directory, See {@link SftpWatchService}
+    // The interval doubles while the directory doesn't change and goes back to the minimum with a change
+    public static final String KEY_WATCH_INTERVAL_MIN = "watch.interval.min";
+    static final int DEFAULT_WATCH_INTERVAL_MIN = 1000;
+    public static final String KEY_WATCH_INTERVAL_MAX = "watch.interval.max";
+    static final int DEFAULT_WATCH_INTERVAL_MAX = 60000;
+    // Execute df on the server when it has no statvfs@openssh.com extension, See {@link SftpFileStore}
+    public static final String KEY_FILESTORE_DF = "filestore.df";
+    static final boolean DEFAULT_FILESTORE_DF = false;
+    // The time in ms during which the space of a file store is cached
+    public static final String KEY_FILESTORE_CACHE_TTL = "filestore.cache.ttl";
+    static final int DEFAULT_FILESTORE_CACHE_TTL = 5000;
+    // Share one request between the concurrent stat, lstat, ls and realpath of the same path, See {@link SftpCommand#isCoalesced()}
+    public static final String KEY_COALESCE = "coalesce";
+    static final boolean DEFAULT_COALESCE = true;
+    // Declare the remote tree immutable: the mutations are rejected (ReadOnlyFileSystemException)
+    // and the metadata and the blocks of the files are cached much longer
+    public static final String KEY_READ_ONLY = "read.only";
+    static final boolean DEFAULT_READ_ONLY = false;
+    // The time in ms during which the results of stat, lstat, ls and realpath are cached (0 to disable)
+    // A mutation of the file system empties the cache
+    public static final String KEY_METADATA_CACHE_TTL = "metadata.cache.ttl";
+    static final int DEFAULT_METADATA_CACHE_TTL = 0;
+    static final int DEFAULT_METADATA_CACHE_TTL_READ_ONLY = Integer.MAX_VALUE;
+    // The maximum number of cached results
+    public static final String KEY_METADATA_CACHE_MAX = "metadata.cache.max";
+    static final int DEFAULT_METADATA_CACHE_MAX = 10000;
+    // The maximum size in bytes of the cached blocks of the files of a read only file system (0 to disable), See {@link SftpBlockCache}
+    public static final String KEY_BLOCK_CACHE_SIZE = "block.cache.size";
+    static final int DEFAULT_BLOCK_CACHE_SIZE = 64 * 1024 * 1024;
+    // The absolute path of a remote subtree to index in a local file (no index by default), See {@link SftpIndex}
+    public static final String KEY_INDEX_ROOT = "index.root";
+    // The local file of the index (default: a file by file system and root in the directory .niofs-sftp of the user home, readable only by its owner)
+    public static final String KEY_INDEX_FILE = "index.file";
+    // The maximum age in ms of the index to answer a query, an older index is refreshed in the background
+    public static final String KEY_INDEX_STALENESS = "index.staleness";
+    static final int DEFAULT_INDEX_STALENESS = 300000;
+    // The number of directories listed in parallel by a refresh of the index
+    public static final String KEY_INDEX_WALK_THREADS = "index.walk.threads";
+    static final int DEFAULT_INDEX_WALK_THREADS = 4;
+    // The maximum number of file stores cached by path
+    static final int FILE_STORES_MAX = 1000;
+    // The name of the cache of the known directories in the metrics
+    static final String CACHE_KNOWN_DIRECTORIES = "known.directories";
+    // The name of the cache of the metadata in the metrics
+    static final String CACHE_METADATA = "metadata";
 
     private final URI uri;
 
 
     private final SftpFileSystemBuilder sftpFileSystemBuilder;
 
-    private Session session;
+    // The session and the channels, shared with the file systems of the same user, host and port
+    private final SftpTransport transport;
+
+    private volatile boolean isClosed = false;
+
+    private int retryMax = DEFAULT_RETRY_MAX;
+    private int retryBackoffInitial = DEFAULT_RETRY_BACKOFF_INITIAL;
+    private int retryBackoffMax = DEFAULT_RETRY_BACKOFF_MAX;
+    private boolean coalesce = DEFAULT_COALESCE;
+
+    // The coalesced requests in flight by command and path
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    // Incremented after each mutation: a request in flight since an older epoch is not shared anymore
+    private final AtomicLong mutationEpoch = new AtomicLong();
+
+    private boolean readOnly = DEFAULT_READ_ONLY;
+    // The results of the coalesced commands by command and path
+    private final ConcurrentHashMap<String, CachedResult> metadataCache = new ConcurrentHashMap<>();
+    private long metadataCacheTtl = DEFAULT_METADATA_CACHE_TTL;
+    private int metadataCacheMax = DEFAULT_METADATA_CACHE_MAX;
+    // The blocks of the files (only when read only)
+    private SftpBlockCache blockCache;
+    // The local index of a subtree (null if not enabled)
+    private SftpIndex index;
+
+    // The id in the pool of the provider
+    private final String id;
+    private final SftpMetrics metrics;
+    // The file stores by file system id (statvfs) or device (df), See {@link #getFileStore(SftpPath)}
+    private final Map<String, SftpFileStore> fileStores = new ConcurrentHashMap<>();
+    // The file store of the absolute paths already asked
+    private final Map<String, SftpFileStore> pathFileStores = new ConcurrentHashMap<>();
+    // The polls of the watch services, created with the first one
+    private SftpDirectoryWatcher directoryWatcher;
+    // The listeners of all transfers, See {@link SftpTransferListener}
+    private final List<SftpTransferListener> transferListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Return the working directory
@@ -43,7 +206,7 @@ public class SftpFileSystem extends FileSystem {
     public String getWorkingDirectory() {
         if (workingDirectory ==null) {
             try {
-                workingDirectory = this.getChannelSftp().pwd();
+                workingDirectory = execute(SftpCommand.PWD, channelSftp -> channelSftp.pwd());
             } catch (SftpException e) {
                 throw new RuntimeException(e);
             }
@@ -53,79 +216,457 @@ public class SftpFileSystem extends FileSystem {
 
     private String workingDirectory;
 
+    // The paths are a chain of names that starts with the root
+    private final SftpPath rootPath = SftpPath.root(this);
+
+    // The parsed working directory shared by all relative paths
+    private SftpPath workingDirectoryPath;
+
+    // The directories known to exist (created or checked), See {@link SftpPath#createDirectory()}
+    private final Set<SftpPath> knownDirectories = Collections.newSetFromMap(new ConcurrentHashMap<SftpPath, Boolean>());
+    private int knownDirectoriesMax = DEFAULT_KNOWN_DIRECTORIES_MAX;
+
     /**
-     * Is used in the system file provider
-     * to check the access
-     *
-     * @return ChannelSftp
+     * @return the root path shared by all absolute paths
+     */
+    SftpPath getRootPath() {
+        return rootPath;
+    }
+
+    /**
+     * @param directory an absolute normalized path
+     * @return true if the directory is known to exist
      */
-    protected ChannelSftp getChannelSftp() {
+    boolean isKnownDirectory(SftpPath directory) {
+        boolean known = knownDirectories.contains(directory);
+        metrics.recordCacheAccess(CACHE_KNOWN_DIRECTORIES, known);
+        return known;
+    }
 
-        if (channelSftp == null) {
+    void addKnownDirectory(SftpPath directory) {
+        if (knownDirectories.size() >= knownDirectoriesMax) {
+            // Simple bound: the directories will be checked again
+            knownDirectories.clear();
+        }
+        if (knownDirectoriesMax > 0) {
+            knownDirectories.add(directory);
+        }
+    }
 
-            // Extract the user and the password
-            String userInfo = this.uri.getUserInfo();
-            String user = null;
-            String password = null;
-            if (userInfo != null) {
-                user = userInfo.substring(0, userInfo.indexOf(":"));
-                password = userInfo.substring(userInfo.indexOf(":") + 1, userInfo.length());
+    /**
+     * Forget a directory and its descendants (after a delete for instance)
+     *
+     * @param directory an absolute path
+     */
+    void removeKnownDirectories(SftpPath directory) {
+        Iterator<SftpPath> iterator = knownDirectories.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(directory)) {
+                iterator.remove();
             }
+        }
+    }
 
-            // No need to get the path of the URI here
+    /**
+     * @return the working directory as absolute path (parsed once)
+     */
+    SftpPath getWorkingDirectoryPath() {
+        if (workingDirectoryPath == null) {
+            workingDirectoryPath = ((SftpPath) getPath(getWorkingDirectory())).toAbsolutePath();
+        }
+        return workingDirectoryPath;
+    }
 
-            // Port
-            int port;
-            if (this.uri.getPort() == -1) {
-                port = 22;
-            } else {
-                port = this.uri.getPort();
-            }
+    /**
+     * Execute an operation on a healthy channel
+     * <p/>
+     * When the connection is lost, the next call will reconnect and an idempotent command is executed again
+     * after a wait that doubles at each retry (between {@link #KEY_RETRY_BACKOFF_INITIAL} and {@link #KEY_RETRY_BACKOFF_MAX})
+     *
+     * @param command   the command (that defines if the operation can be retried)
+     * @param operation the operation
+     * @param <T>       the type of the result
+     * @return the result of the operation
+     * @throws SftpException
+     */
+    <T> T execute(SftpCommand command, SftpOperation<T> operation) throws SftpException {
 
-            // Host
-            String host;
-            if (uri.getHost() != null) {
-                host = uri.getHost();
-            } else {
-                host = "localhost";
+        return execute(command, null, null, operation);
+
+    }
+
+    /**
+     * @param path the path of the request (for the events and the logs)
+     */
+    <T> T execute(SftpCommand command, String path, SftpOperation<T> operation) throws SftpException {
+
+        return execute(command, path, null, operation);
+
+    }
+
+    /**
+     * Execute an operation on the channel of a stream
+     * <p/>
+     * Each execution is a {@link SftpRequestEvent} in a Java Flight Recorder recording.
+     *
+     * @param command   the command (that defines if the operation can be retried)
+     * @param path      the path of the request (may be null)
+     * @param lease     the channel of the stream or null to borrow one for the operation
+     * @param operation the operation
+     * @param <T>       the type of the result
+     * @return the result of the operation
+     * @throws SftpException
+     */
+    <T> T execute(SftpCommand command, String path, SftpChannelLease lease, SftpOperation<T> operation) throws SftpException {
+
+        if (isClosed) {
+            throw new ClosedFileSystemException();
+        }
+        if (lease == null && path != null && command.isCoalesced()) {
+            return executeCached(command, path, operation, true);
+        }
+        if (command.isMutation()) {
+            checkWritable();
+        }
+        try {
+            return executeAndRecord(command, path, lease, operation);
+        } finally {
+            if (command.isMutation()) {
+                mutationEpoch.incrementAndGet();
+                metadataCache.clear();
+                if (path != null) {
+                    invalidateIndex(path);
+                }
             }
+        }
 
-            try {
+    }
 
-                LOGGER.info("Trying to connect to the sftp connection (Uri: sftp://" + (user == null ? "null" : user) + "@" + host + ":" + port + "' )");
-                JSch jsch = new JSch();
+    /**
+     * Execute a coalesced command without looking in the metadata cache (the result is cached for the next calls)
+     * <p/>
+     * For the callers that need the current state (a poll of a watched directory, a read before an update).
+     */
+    <T> T executeFresh(SftpCommand command, String path, SftpOperation<T> operation) throws SftpException {
+
+        if (isClosed) {
+            throw new ClosedFileSystemException();
+        }
+        return executeCached(command, path, operation, false);
 
-                // SSH Session
-                this.session = jsch.getSession(user, host, port);
-                if (password != null) {
-                    session.setPassword(password);
+    }
+
+    /**
+     * A cached result or error (a missing file is also cached)
+     */
+    private static class CachedResult {
+
+        final Object result;
+        final SftpException error;
+        final long epoch;
+        final long time = System.nanoTime();
+
+        CachedResult(Object result, SftpException error, long epoch) {
+            this.result = result;
+            this.error = error;
+            this.epoch = epoch;
+        }
+
+    }
+
+    /**
+     * The metadata cache in front of the coalesced requests
+     *
+     * @param lookup false to not use a cached result
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeCached(SftpCommand command, String path, SftpOperation<T> operation, boolean lookup) throws SftpException {
+
+        if (metadataCacheTtl <= 0) {
+            return coalesce ? executeCoalesced(command, path, operation) : executeAndRecord(command, path, null, operation);
+        }
+        String key = command.name() + ":" + path;
+        long epoch = mutationEpoch.get();
+        if (lookup) {
+            CachedResult cached = metadataCache.get(key);
+            boolean hit = cached != null && cached.epoch == epoch && System.nanoTime() - cached.time < TimeUnit.MILLISECONDS.toNanos(metadataCacheTtl);
+            metrics.recordCacheAccess(CACHE_METADATA, hit);
+            if (hit) {
+                if (cached.error != null) {
+                    throw new SftpException(cached.error.id, cached.error.getMessage(), cached.error);
                 }
-                java.util.Properties config = new java.util.Properties();
-                config.put("StrictHostKeyChecking", "no");
-                session.setConfig(config);
-                session.connect();
+                return (T) cached.result;
+            }
+        }
+        try {
+            T result = coalesce ? executeCoalesced(command, path, operation) : executeAndRecord(command, path, null, operation);
+            cache(key, new CachedResult(result, null, epoch));
+            return result;
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                cache(key, new CachedResult(null, e, epoch));
+            }
+            throw e;
+        }
+
+    }
+
+    private void cache(String key, CachedResult cachedResult) {
+        if (cachedResult.epoch != mutationEpoch.get()) {
+            // A mutation was executed during the request
+            return;
+        }
+        if (metadataCache.size() >= metadataCacheMax) {
+            // Simple bound: the results will be read again
+            metadataCache.clear();
+        }
+        metadataCache.put(key, cachedResult);
+    }
+
+    /**
+     * @throws ReadOnlyFileSystemException if the file system is read only (See {@link #KEY_READ_ONLY})
+     */
+    void checkWritable() {
+        if (readOnly) {
+            throw new ReadOnlyFileSystemException();
+        }
+    }
+
+    /**
+     * @return the local index of a subtree or null if it's not enabled (See {@link #KEY_INDEX_ROOT})
+     */
+    public SftpIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Remove a changed path from the index
+     *
+     * @param path an absolute path
+     */
+    void invalidateIndex(String path) {
+        if (index != null) {
+            index.invalidate(path);
+        }
+    }
+
+    /**
+     * @return the cache of the blocks of the files or null if the file system is not read only
+     */
+    SftpBlockCache getBlockCache() {
+        return blockCache;
+    }
 
-                // Channel used (sftp, exec ....
-                this.channelSftp = (ChannelSftp) session.openChannel("sftp");
-                this.channelSftp.connect();
+    /**
+     * A request in flight and the callers that wait for its result
+     */
+    private static class Flight {
 
-                // Environment parameters
+        final long epoch;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
 
-                if (workingDirectory != null) {
+        Flight(long epoch) {
+            this.epoch = epoch;
+        }
 
+    }
 
-                    this.channelSftp.cd(workingDirectory);
+    /**
+     * The first caller executes the request, the concurrent callers of the same command and path wait for its result.
+     * A caller doesn't share a request started before a mutation: it can't miss its own writes.
+     * <p/>
+     * The result is shared: the callers must not modify it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeCoalesced(SftpCommand command, String path, SftpOperation<T> operation) throws SftpException {
+
+        String key = command.name() + ":" + path;
+        long epoch = mutationEpoch.get();
+        Flight[] started = new Flight[1];
+        Flight flight = flights.compute(key, (k, current) -> {
+            if (current != null && current.epoch == epoch) {
+                return current;
+            }
+            started[0] = new Flight(epoch);
+            return started[0];
+        });
+
+        if (flight != started[0]) {
+            metrics.recordCoalesced(command);
+            try {
+                return (T) flight.result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "Interrupted while waiting for the request (" + key + ")", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SftpException) {
+                    // A new exception with the stack of this caller
+                    throw new SftpException(((SftpException) cause).id, cause.getMessage(), cause);
                 }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw (Error) cause;
+            }
+        }
 
+        try {
+            T result = executeAndRecord(command, path, null, operation);
+            flights.remove(key, flight);
+            flight.result.complete(result);
+            return result;
+        } catch (SftpException | RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
 
-            } catch (Exception e) {
+    }
 
-                throw new RuntimeException(e);
+    private <T> T executeAndRecord(SftpCommand command, String path, SftpChannelLease lease, SftpOperation<T> operation) throws SftpException {
+
+        SftpRequestEvent event = new SftpRequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        T result = null;
+        try {
+            result = executeWithRetry(command, lease, operation, event);
+            success = true;
+            return result;
+        } finally {
+            metrics.recordOperation(command, System.nanoTime() - start, success);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = command.name();
+                event.path = path;
+                event.success = success;
+                if (command.isTransfer() && result instanceof Integer) {
+                    event.bytes = Math.max(0, (Integer) result);
+                }
+                event.sessionId = transport.getSessionId();
+                event.commit();
+            }
+        }
+
+    }
 
+    private <T> T executeWithRetry(SftpCommand command, SftpChannelLease lease, SftpOperation<T> operation, SftpRequestEvent event) throws SftpException {
+
+        int retry = 0;
+        while (true) {
+            ChannelSftp channelSftp = null;
+            try {
+                long waitStart = System.nanoTime();
+                channelSftp = lease != null ? lease.get() : transport.borrowChannel();
+                metrics.recordChannelWait(System.nanoTime() - waitStart);
+                metrics.recordRoundTrip();
+                event.channelId = channelSftp.getId();
+                return transport.execute(channelSftp, operation);
+            } catch (SftpException e) {
+                if (!isConnectionLost(e)) {
+                    throw e;
+                }
+                metrics.recordConnectionLost();
+                if (lease != null) {
+                    lease.reset();
+                }
+                if (!command.isIdempotent() || retry >= retryMax) {
+                    throw e;
+                }
+                LOGGER.warning("The connection was lost during the command (" + command + "), retry " + (retry + 1) + "/" + retryMax);
+            } catch (SftpConnectionException e) {
+                metrics.recordConnectionLost();
+                if (!command.isIdempotent() || retry >= retryMax) {
+                    throw new SftpException(ChannelSftp.SSH_FX_NO_CONNECTION, "Unable to connect", e);
+                }
+                LOGGER.warning("Unable to connect for the command (" + command + "), retry " + (retry + 1) + "/" + retryMax);
+            } finally {
+                if (lease == null && channelSftp != null) {
+                    transport.returnChannel(channelSftp);
+                }
+            }
+            try {
+                Thread.sleep(Math.min(retryBackoffMax, (long) retryBackoffInitial << Math.min(retry, 30)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "Interrupted while waiting for a retry", e);
             }
+            retry++;
         }
 
-        return channelSftp;
+    }
+
+    /**
+     * The version and the extensions of the server are read once by session
+     *
+     * @return the capabilities of the server
+     */
+    public SftpServerCapabilities getServerCapabilities() {
+        return transport.getServerCapabilities();
+    }
+
+    /**
+     * @return the id of the current session (user@host:port#number, a reconnection starts a new session)
+     */
+    String getSessionId() {
+        return transport.getSessionId();
+    }
+
+    /**
+     * @return the round trip time, the window and the packet size of the channels (measured once by session)
+     */
+    public SftpChannelSizing getChannelSizing() {
+        return transport.getChannelSizing();
+    }
+
+    /**
+     * Sample the payload of a stream for the adaptive compression (nothing in the other modes)
+     *
+     * @param buffer the bytes between the position and the limit (the buffer doesn't change)
+     */
+    void sampleCompression(ByteBuffer buffer) {
+        transport.sampleCompression(buffer);
+    }
+
+    /**
+     * @return true if the compression of the session is on (or wanted if the server has no compression)
+     */
+    boolean isCompressionOn() {
+        return transport.isCompressionOn();
+    }
+
+    /**
+     * @return a channel for the life of a stream (to close with the stream)
+     */
+    SftpChannelLease newChannelLease() {
+        return new SftpChannelLease(transport);
+    }
+
+    /**
+     * @return true if the shared session is open
+     */
+    boolean isConnected() {
+        return transport.isConnected();
+    }
+
+    /**
+     * @return the shared session (connected)
+     */
+    Session getSession() {
+        return transport.getSession();
+    }
+
+    /**
+     * @param e the exception of the operation
+     * @return true if the exception comes from a lost connection (and not from the server)
+     */
+    private boolean isConnectionLost(SftpException e) {
+        return e.id == ChannelSftp.SSH_FX_NO_CONNECTION
+                || e.id == ChannelSftp.SSH_FX_CONNECTION_LOST
+                || e.getCause() instanceof IOException
+                || !transport.isConnected();
     }
 
 
@@ -138,22 +679,194 @@ public class SftpFileSystem extends FileSystem {
 
         // Uri
         this.uri = sftpFileSystemBuilder.uri;
+        this.id = sftpFileSystemBuilder.id;
         this.sftpFileSystemBuilder = sftpFileSystemBuilder;
+        this.metrics = new SftpMetrics(id);
 
         // Working directory is get here because, we may need it in the paths operations
         // for relative path. We then don't need to make an SFTP connection to the working directory
-        if (sftpFileSystemBuilder.env != null) {
+        if (sftpFileSystemBuilder.env != null && sftpFileSystemBuilder.env.get(KEY_WORKING_DIRECTORY) != null) {
             workingDirectory = sftpFileSystemBuilder.env.get(KEY_WORKING_DIRECTORY);
             if (workingDirectory.charAt(0) != '/') {
                 throw new IllegalArgumentException("Working directory should be absolute. The value (" + workingDirectory + ") of the environment parameters (" + KEY_WORKING_DIRECTORY + ") does not begin with a /");
             }
         }
+        knownDirectoriesMax = getIntegerParameter(KEY_KNOWN_DIRECTORIES_MAX, DEFAULT_KNOWN_DIRECTORIES_MAX);
+        retryMax = getIntegerParameter(KEY_RETRY_MAX, DEFAULT_RETRY_MAX);
+        retryBackoffInitial = getIntegerParameter(KEY_RETRY_BACKOFF_INITIAL, DEFAULT_RETRY_BACKOFF_INITIAL);
+        retryBackoffMax = getIntegerParameter(KEY_RETRY_BACKOFF_MAX, DEFAULT_RETRY_BACKOFF_MAX);
+        coalesce = getBooleanParameter(KEY_COALESCE, DEFAULT_COALESCE);
+        readOnly = getBooleanParameter(KEY_READ_ONLY, DEFAULT_READ_ONLY);
+        metadataCacheTtl = getIntegerParameter(KEY_METADATA_CACHE_TTL, readOnly ? DEFAULT_METADATA_CACHE_TTL_READ_ONLY : DEFAULT_METADATA_CACHE_TTL);
+        metadataCacheMax = getIntegerParameter(KEY_METADATA_CACHE_MAX, DEFAULT_METADATA_CACHE_MAX);
+        int blockCacheSize = getIntegerParameter(KEY_BLOCK_CACHE_SIZE, DEFAULT_BLOCK_CACHE_SIZE);
+        if (readOnly && blockCacheSize > 0) {
+            blockCache = new SftpBlockCache(blockCacheSize, metrics);
+        }
+
+        // The transport parameters are the ones of the first file system of the user on the host
+        transport = provider().acquireTransport(uri, transportId ->
+                new SftpTransport.SftpTransportBuilder(provider(), uri, transportId)
+                        .keepAlive(
+                                getIntegerParameter(KEY_KEEPALIVE_INTERVAL, DEFAULT_KEEPALIVE_INTERVAL),
+                                getIntegerParameter(KEY_KEEPALIVE_COUNT_MAX, DEFAULT_KEEPALIVE_COUNT_MAX))
+                        .idleTimeout(getIntegerParameter(KEY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT))
+                        .sessionsMaxPerHost(
+                                getIntegerParameter(KEY_SESSIONS_MAX_PER_HOST, DEFAULT_SESSIONS_MAX_PER_HOST),
+                                getIntegerParameter(KEY_SESSIONS_WAIT_TIMEOUT, DEFAULT_SESSIONS_WAIT_TIMEOUT))
+                        .channelPool(
+                                getIntegerParameter(KEY_CHANNEL_POOL_MIN, DEFAULT_CHANNEL_POOL_MIN),
+                                getIntegerParameter(KEY_CHANNEL_POOL_MAX, DEFAULT_CHANNEL_POOL_MAX),
+                                getIntegerParameter(KEY_CHANNEL_POOL_WAIT_TIMEOUT, DEFAULT_CHANNEL_POOL_WAIT_TIMEOUT))
+                        .dispatch(isDispatchMode())
+                        .bulkRequests(getIntegerParameter(KEY_BULK_REQUESTS, DEFAULT_BULK_REQUESTS))
+                        .cipherAuto(getBooleanParameter(KEY_CIPHER_AUTO, DEFAULT_CIPHER_AUTO))
+                        .compression(getCompression())
+                        .channelSizing(
+                                getBooleanParameter(KEY_WINDOW_AUTO, DEFAULT_WINDOW_AUTO),
+                                getIntegerParameter(KEY_WINDOW_BANDWIDTH, DEFAULT_WINDOW_BANDWIDTH),
+                                getIntegerParameter(KEY_WINDOW_SIZE_MIN, DEFAULT_WINDOW_SIZE_MIN),
+                                getIntegerParameter(KEY_WINDOW_SIZE_MAX, DEFAULT_WINDOW_SIZE_MAX),
+                                getIntegerParameter(KEY_PACKET_SIZE_MAX, DEFAULT_PACKET_SIZE_MAX))
+                        .build()
+        );
+        String indexRoot = sftpFileSystemBuilder.env == null ? null : sftpFileSystemBuilder.env.get(KEY_INDEX_ROOT);
+        if (indexRoot != null) {
+            if (!indexRoot.startsWith("/")) {
+                throw new IllegalArgumentException("The index root should be absolute. The value (" + indexRoot + ") of the environment parameters (" + KEY_INDEX_ROOT + ") does not begin with a /");
+            }
+            String indexFile = sftpFileSystemBuilder.env.get(KEY_INDEX_FILE);
+            index = new SftpIndex(this, indexRoot,
+                    indexFile != null ? Paths.get(indexFile) : Paths.get(System.getProperty("user.home"), ".niofs-sftp", Integer.toHexString((id + indexRoot).hashCode()) + ".index"),
+                    getIntegerParameter(KEY_INDEX_STALENESS, DEFAULT_INDEX_STALENESS),
+                    getIntegerParameter(KEY_INDEX_WALK_THREADS, DEFAULT_INDEX_WALK_THREADS));
+            if (!index.isFresh()) {
+                index.refreshInBackground();
+            }
+        }
+        if (getBooleanParameter(KEY_CONNECT_EAGER, DEFAULT_CONNECT_EAGER)) {
+            provider().connectInBackground(transport);
+        }
+        if (getBooleanParameter(KEY_METRICS_JMX, DEFAULT_METRICS_JMX)) {
+            metrics.registerMBean();
+        }
+
+    }
+
+    /**
+     * @param key          the key of the environment parameters
+     * @param defaultValue the value if the parameter is not set
+     * @return the integer value of an environment parameter
+     */
+    private int getIntegerParameter(String key, int defaultValue) {
+        if (sftpFileSystemBuilder.env == null || sftpFileSystemBuilder.env.get(key) == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(sftpFileSystemBuilder.env.get(key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The value (" + sftpFileSystemBuilder.env.get(key) + ") of the environment parameters (" + key + ") is not an integer");
+        }
+    }
+
+    /**
+     * @return the compression mode of the session (none, zlib or adaptive), See {@link #KEY_COMPRESSION}
+     */
+    private String getCompression() {
+        String compression = sftpFileSystemBuilder.env == null ? null : sftpFileSystemBuilder.env.get(KEY_COMPRESSION);
+        if (compression == null) {
+            return COMPRESSION_NONE;
+        }
+        if (compression.equals(COMPRESSION_NONE) || compression.equals(COMPRESSION_ZLIB) || compression.equals(COMPRESSION_ADAPTIVE)) {
+            return compression;
+        }
+        throw new IllegalArgumentException("The value (" + compression + ") of the environment parameters (" + KEY_COMPRESSION + ") is not " + COMPRESSION_NONE + ", " + COMPRESSION_ZLIB + " or " + COMPRESSION_ADAPTIVE);
+    }
+
+    private boolean isDispatchMode() {
+        String mode = sftpFileSystemBuilder.env == null ? null : sftpFileSystemBuilder.env.get(KEY_EXECUTION_MODE);
+        if (mode == null || mode.equals(EXECUTION_MODE_DIRECT)) {
+            return false;
+        }
+        if (mode.equals(EXECUTION_MODE_DISPATCH)) {
+            return true;
+        }
+        throw new IllegalArgumentException("The value (" + mode + ") of the environment parameters (" + KEY_EXECUTION_MODE + ") is not " + EXECUTION_MODE_DIRECT + " or " + EXECUTION_MODE_DISPATCH);
+    }
+
+    /**
+     * @param key          the key of the environment parameters
+     * @param defaultValue the value if the parameter is not set
+     * @return the boolean value of an environment parameter
+     */
+    private boolean getBooleanParameter(String key, boolean defaultValue) {
+        if (sftpFileSystemBuilder.env == null || sftpFileSystemBuilder.env.get(key) == null) {
+            return defaultValue;
+        }
+        String value = sftpFileSystemBuilder.env.get(key);
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("The value (" + value + ") of the environment parameters (" + key + ") is not a boolean (true or false)");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * @return the id of the shared transport (user@host:port), two file systems with the same id are on the same server
+     */
+    String getTransportId() {
+        return transport.getId();
+    }
+
+    /**
+     * @return the id of the file system in the pool of the provider
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * @return the counters and the latencies of the operations
+     */
+    public SftpMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param listener a listener of the progress of all the transfers (reads and writes) of the file system
+     */
+    public void addTransferListener(SftpTransferListener listener) {
+        transferListeners.add(listener);
+    }
+
+    public void removeTransferListener(SftpTransferListener listener) {
+        transferListeners.remove(listener);
+    }
 
+    List<SftpTransferListener> getTransferListeners() {
+        return transferListeners;
+    }
 
+    /**
+     * @return the polls of the watched directories of all watch services
+     */
+    synchronized SftpDirectoryWatcher getDirectoryWatcher() {
+        if (directoryWatcher == null) {
+            directoryWatcher = new SftpDirectoryWatcher(this,
+                    getIntegerParameter(KEY_WATCH_INTERVAL_MIN, DEFAULT_WATCH_INTERVAL_MIN),
+                    getIntegerParameter(KEY_WATCH_INTERVAL_MAX, DEFAULT_WATCH_INTERVAL_MAX));
+        }
+        return directoryWatcher;
+    }
+
+    /**
+     * @return the URI of the file system (used to build the URI of a path)
+     */
+    URI getUri() {
+        return uri;
     }
 
     @Override
-    public FileSystemProvider provider() {
+    public SftpFileSystemProvider provider() {
 
         return sftpFileSystemBuilder.sftpFileSystemProvider;
     }
@@ -164,14 +877,19 @@ public class SftpFileSystem extends FileSystem {
      */
     @Override
     public void close() throws IOException {
-        if (this.channelSftp != null) {
-            this.channelSftp.disconnect();
-        }
-        if (this.session != null) {
-            this.session.disconnect();
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
         }
         //TODO: The filesystem pool must be in the sftpFileSystem class and not in the provider
-        this.sftpFileSystemBuilder.sftpFileSystemProvider.removeFileSystem(this.uri);
+        this.sftpFileSystemBuilder.sftpFileSystemProvider.removeFileSystem(this);
+        this.sftpFileSystemBuilder.sftpFileSystemProvider.releaseTransport(transport);
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+        metrics.unregisterMBean();
     }
 
     /**
@@ -180,11 +898,8 @@ public class SftpFileSystem extends FileSystem {
     @Override
     public boolean isOpen() {
 
-        if (this.channelSftp == null) {
-            return true;
-        } else {
-            return !this.channelSftp.isClosed();
-        }
+        // A lost connection is reconnected, only the close method closes the file system
+        return !isClosed;
 
     }
 
@@ -196,7 +911,7 @@ public class SftpFileSystem extends FileSystem {
     @Override
     public boolean isReadOnly() {
 
-        throw new UnsupportedOperationException();
+        return readOnly;
 
     }
 
@@ -215,18 +930,46 @@ public class SftpFileSystem extends FileSystem {
     @Override
     public Iterable<Path> getRootDirectories() {
         ArrayList<Path> rootDirectories = new ArrayList<Path>();
-        Path rootPath = SftpPath.get(this, SftpPath.ROOT_PREFIX);
         rootDirectories.add(rootPath);
         return rootDirectories;
     }
 
+    /**
+     * @return the file store of the root directory
+     */
     @Override
     public Iterable<FileStore> getFileStores() {
 
-        throw new UnsupportedOperationException();
+        try {
+            return Collections.singletonList(getFileStore(rootPath));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
     }
 
+    /**
+     * @return the file store of a path (See {@link SftpFileStore}).
+     * The first ask of a path reads its space to get its file system id,
+     * the paths of the same file system id share then one store and its cached space.
+     */
+    SftpFileStore getFileStore(SftpPath path) throws IOException {
+        String stringPath = path.toAbsolutePath().toString();
+        SftpFileStore fileStore = pathFileStores.get(stringPath);
+        if (fileStore == null) {
+            boolean dfFallback = getBooleanParameter(KEY_FILESTORE_DF, DEFAULT_FILESTORE_DF);
+            SftpFileStore.Space space = SftpFileStore.read(this, stringPath, dfFallback);
+            fileStore = fileStores.computeIfAbsent(space.name, name -> new SftpFileStore(this, stringPath, space, dfFallback,
+                    getIntegerParameter(KEY_FILESTORE_CACHE_TTL, DEFAULT_FILESTORE_CACHE_TTL)));
+            fileStore.update(space);
+            if (pathFileStores.size() >= FILE_STORES_MAX) {
+                pathFileStores.clear();
+            }
+            pathFileStores.put(stringPath, fileStore);
+        }
+        return fileStore;
+    }
+
     @Override
     public Set<String> supportedFileAttributeViews() {
         return Collections.unmodifiableSet(
@@ -252,7 +995,10 @@ public class SftpFileSystem extends FileSystem {
 
     @Override
     public WatchService newWatchService() throws IOException {
-        throw new UnsupportedOperationException();
+        if (isClosed) {
+            throw new ClosedFileSystemException();
+        }
+        return new SftpWatchService(this);
     }
 
     public static class SftpFileSystemBuilder {
@@ -260,6 +1006,7 @@ public class SftpFileSystem extends FileSystem {
         private final SftpFileSystemProvider sftpFileSystemProvider;
         private final URI uri;
         private Map<String, String> env;
+        private String id;
 
         public SftpFileSystemBuilder(SftpFileSystemProvider sftpFileSystemProvider, URI uri) {
             this.sftpFileSystemProvider = sftpFileSystemProvider;
@@ -275,5 +1022,13 @@ public class SftpFileSystem extends FileSystem {
             this.env = env;
             return this;
         }
+
+        /**
+         * @param id the id of the file system in the pool of the provider
+         */
+        SftpFileSystemBuilder id(String id) {
+            this.id = id;
+            return this;
+        }
     }
 }
@@ -1,18 +1,29 @@
 package net.bytle.niofs.sftp;
 
+import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.SftpException;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.nio.file.spi.FileSystemProvider;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * Created by gerard on 20-11-2015.
@@ -22,8 +33,32 @@ public class SftpFileSystemProvider extends FileSystemProvider {
 
     static final String SFTP_SCHEME = "sftp";
 
-    // The pool of Sftp Connection
-    private static final Map<String, SftpFileSystem> fileSystemPool = new HashMap<>();
+    // The pool of Sftp Connection by id and fingerprint of the password
+    private static final ConcurrentMap<String, SftpFileSystem> fileSystemPool = new ConcurrentHashMap<>();
+
+    // The sessions and their channels by user, host, port and fingerprint of the password, shared by the file systems
+    private static final ConcurrentMap<String, SftpTransport> transports = new ConcurrentHashMap<>();
+
+    // The salt of the fingerprints of the passwords (a fingerprint is never the same in two processes)
+    private static final byte[] credentialSalt = newCredentialSalt();
+
+    // The number of open sessions by host, See {@link SftpFileSystem#KEY_SESSIONS_MAX_PER_HOST}
+    private static final ConcurrentMap<String, Semaphore> hostSessions = new ConcurrentHashMap<>();
+
+    // The checks of the idle file systems, See {@link SftpFileSystem#KEY_IDLE_TIMEOUT}
+    private static volatile ScheduledExecutorService idleScheduler;
+
+    // The timing of the polls of the watched directories (executed on the IO executor), See {@link SftpWatchService}
+    private static volatile ScheduledExecutorService watchScheduler;
+
+    // The operations of the asynchronous channels and of the publishers without executor, See {@link #newAsynchronousFileChannel}
+    private static final ExecutorService ioExecutor = Executors.newCachedThreadPool(daemonThreadFactory("sftp-io"));
+
+    // The flag of JSch that sends posix-rename@openssh.com instead of SSH_FXP_RENAME, See {@link #move}
+    private static volatile Field posixRenameField;
+
+    // The connections in the background, See {@link SftpFileSystem#KEY_CONNECT_EAGER}
+    private static final ExecutorService connectExecutor = Executors.newCachedThreadPool(daemonThreadFactory("sftp-connect"));
 
     @Override
     public String getScheme() {
@@ -36,23 +71,50 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     @Override
     public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
 
-        String key = toFileSystemId(uri, env);
-        if (fileSystemPool.containsKey(key)) {
-            return fileSystemPool.get(key);
-        } else {
-            // Build a Sftp File System object
-            SftpFileSystem sftpFileSystem = new SftpFileSystem.SftpFileSystemBuilder(this, uri)
-                    .environmentParameters((Map<String, String>) env)
-                    .build();
+        String id = toFileSystemId(uri, env);
+        String fingerprint = toCredentialFingerprint(uri);
+        String options = toPoolOptions(env);
+        if (fingerprint.isEmpty()) {
+            // Without password, the file system is the existing one with the same options
+            SftpFileSystem existing = findFileSystem(id, null, options);
+            if (existing != null) {
+                return existing;
+            }
+        }
 
-            // Add the file system in the pool
-            fileSystemPool.put(toFileSystemId(uri,env), sftpFileSystem);
+        // Only one file system is build by key even with concurrent calls
+        // The build doesn't connect, the lock on the key is then short
+        // A file system is shared only with the same password and the same options (a read-only view is never a writable one)
+        return fileSystemPool.computeIfAbsent(id + "#" + fingerprint + "#" + options, key ->
+                new SftpFileSystem.SftpFileSystemBuilder(this, uri)
+                        .environmentParameters((Map<String, String>) env)
+                        .id(id)
+                        .build()
+        );
 
-            // Return it
-            return sftpFileSystem;
+    }
 
-        }
+    /**
+     * The options of the environment that change the behaviour of a file system
+     * and that are then part of its key in the pool, See {@link #newFileSystem(URI, Map)}
+     */
+    private static final String[] POOL_OPTIONS = {
+            SftpFileSystem.KEY_READ_ONLY,
+            SftpFileSystem.KEY_METADATA_CACHE_TTL,
+            SftpFileSystem.KEY_METADATA_CACHE_MAX,
+            SftpFileSystem.KEY_BLOCK_CACHE_SIZE
+    };
 
+    /**
+     * @return the values of the {@link #POOL_OPTIONS} of the environment as given (empty when absent)
+     */
+    static String toPoolOptions(Map<String, ?> env) {
+        StringBuilder options = new StringBuilder();
+        for (String key : POOL_OPTIONS) {
+            Object value = env == null ? null : env.get(key);
+            options.append(key).append('=').append(value == null ? "" : value.toString().trim().toLowerCase()).append(';');
+        }
+        return options.toString();
     }
 
 
@@ -72,6 +134,53 @@ public class SftpFileSystemProvider extends FileSystemProvider {
         return new SftpFileChannel();
     }
 
+    /**
+     * The reads and the writes at a position are executed in parallel on the channels of the pool
+     * (See {@link SftpAsynchronousFileChannel})
+     *
+     * @param path
+     * @param options
+     * @param executor the executor of the operations or null for the executor of the provider
+     * @param attrs    the attributes of a created file
+     * @return an asynchronous file channel
+     * @throws IOException
+     */
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(Path path,
+                                                              Set<? extends OpenOption> options,
+                                                              ExecutorService executor,
+                                                              FileAttribute<?>... attrs)
+            throws IOException {
+
+        SftpPath sftpPath = toSftpPath(path);
+        boolean writable = options.contains(StandardOpenOption.WRITE);
+        if (writable) {
+            sftpPath.getFileSystem().checkWritable();
+        }
+        boolean readable = options.contains(StandardOpenOption.READ) || !writable;
+        if (options.contains(StandardOpenOption.APPEND)) {
+            throw new UnsupportedOperationException("The APPEND option is not allowed with an asynchronous channel");
+        }
+
+        if (writable) {
+            boolean exists = Files.exists(sftpPath);
+            if (options.contains(StandardOpenOption.CREATE_NEW) && exists) {
+                throw new FileAlreadyExistsException(sftpPath.toString());
+            }
+            boolean create = !exists && (options.contains(StandardOpenOption.CREATE) || options.contains(StandardOpenOption.CREATE_NEW));
+            if (create || (exists && options.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+                // An empty file (with its attributes)
+                new SftpOverWriteByteChannel(sftpPath, new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                        .fileAttributes(attrs)
+                        .build())
+                        .close();
+            }
+        }
+
+        return new SftpAsynchronousFileChannel(sftpPath, readable, writable, executor != null ? executor : ioExecutor);
+
+    }
+
     /**
      * The getFileSystem method is used to retrieve a reference to an existing file system
      *
@@ -81,7 +190,8 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     @Override
     public FileSystem getFileSystem(URI uri) {
 
-        FileSystem sftpFileSystem = fileSystemPool.get(toFileSystemId(uri));
+        String fingerprint = toCredentialFingerprint(uri);
+        FileSystem sftpFileSystem = findFileSystem(toFileSystemId(uri), fingerprint.isEmpty() ? null : fingerprint, null);
         if (sftpFileSystem == null) {
             try {
                 sftpFileSystem = newFileSystem(uri,null);
@@ -89,14 +199,72 @@ public class SftpFileSystemProvider extends FileSystemProvider {
                 throw new RuntimeException(e);
             }
         }
-        assert  sftpFileSystem != null;
         return sftpFileSystem;
 
     }
 
+    /**
+     * @param id          the id of a file system
+     * @param fingerprint the fingerprint of its password or null for any password
+     * @param options     its {@link #toPoolOptions(Map) options} or null for any options
+     * @return a file system of the pool with this id or null
+     */
+    private SftpFileSystem findFileSystem(String id, String fingerprint, String options) {
+        for (Map.Entry<String, SftpFileSystem> entry : fileSystemPool.entrySet()) {
+            if (!entry.getValue().getId().equals(id)) {
+                continue;
+            }
+            // The key is the id, the fingerprint (hexadecimal) and the options separated by #
+            String credentialAndOptions = entry.getKey().substring(id.length() + 1);
+            int separator = credentialAndOptions.indexOf('#');
+            if (fingerprint != null && !credentialAndOptions.substring(0, separator).equals(fingerprint)) {
+                continue;
+            }
+            if (options != null && !credentialAndOptions.substring(separator + 1).equals(options)) {
+                continue;
+            }
+            return entry.getValue();
+        }
+        return null;
+    }
+
+    private static byte[] newCredentialSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * @return a salted hash of the password of the uri or an empty string without password.
+     * A file system and a transport are shared only with the same password:
+     * a wrong password doesn't reuse the session authenticated with the good one
+     */
+    static String toCredentialFingerprint(URI uri) {
+
+        String userInfo = uri.getUserInfo();
+        if (userInfo == null || userInfo.indexOf(':') == -1) {
+            return "";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(credentialSalt);
+            byte[] hash = digest.digest(userInfo.substring(userInfo.indexOf(':') + 1).getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                fingerprint.append(String.format("%02x", hash[i]));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The SHA-256 algorithm is mandatory in Java", e);
+        }
+
+    }
+
     /**
      * To construct an ID of the file System from the URI
      * to support the function {@link #getFileSystem(URI)}
+     * The password is not part of the id, it can then be omitted to get an existing file system
+     * (the pool and the transports are keyed also by {@link #toCredentialFingerprint(URI) its fingerprint})
      * @param uri
      * @return
      */
@@ -106,25 +274,38 @@ public class SftpFileSystemProvider extends FileSystemProvider {
 
     private String toFileSystemId(URI uri, Map<String, ?> env) {
 
-        String id = null;
+        String id = "";
         if (uri.getUserInfo() != null) {
-            id = uri.getUserInfo();
+            String userInfo = uri.getUserInfo();
+            id = (userInfo.indexOf(':') == -1 ? userInfo : userInfo.substring(0, userInfo.indexOf(':'))) + "@";
+        }
+        id += toHostId(uri);
+
+        if (env !=null) {
+           if (env.get(SftpFileSystem.KEY_WORKING_DIRECTORY) != null) {
+               id += env.get(SftpFileSystem.KEY_WORKING_DIRECTORY);
+           }
         }
+        return id;
+
+    }
+
+    /**
+     * @param uri
+     * @return the host and the port
+     */
+    private static String toHostId(URI uri) {
+
+        String id = "";
         if (uri.getHost()!=null) {
             id += uri.getHost();
         } else {
             id += "localhost";
         }
         if (uri.getPort() != -1) {
-            id += uri.getPort();
+            id += ":" + uri.getPort();
         } else {
-            id += "22";
-        }
-
-        if (env !=null) {
-           if (env.get(SftpFileSystem.KEY_WORKING_DIRECTORY) != null) {
-               id += env.get(SftpFileSystem.KEY_WORKING_DIRECTORY);
-           }
+            id += ":22";
         }
         return id;
 
@@ -132,15 +313,175 @@ public class SftpFileSystemProvider extends FileSystemProvider {
 
     /**
      * When the {@link SftpFileSystem#close() file System close}, the file system must be deleted from the pool
-     * @param uri
-     * @return
+     * @param sftpFileSystem
      */
-    protected FileSystem removeFileSystem(URI uri) {
+    protected void removeFileSystem(SftpFileSystem sftpFileSystem) {
 
-        return fileSystemPool.remove(toFileSystemId(uri));
+        fileSystemPool.values().remove(sftpFileSystem);
 
     }
 
+    /**
+     * Get the transport (session and channels) of the user on the host of a file system
+     * and start to use it
+     *
+     * @param uri     the uri of the file system
+     * @param factory builds the transport if the file system is the first one of the user on the host
+     * @return the shared transport
+     */
+    SftpTransport acquireTransport(URI uri, Function<String, SftpTransport> factory) {
+
+        // The id of a file system without working directory
+        String id = toFileSystemId(uri);
+        return transports.compute(toTransportKey(uri), (key, transport) -> {
+            if (transport == null) {
+                transport = factory.apply(id);
+            }
+            transport.retain();
+            return transport;
+        });
+
+    }
+
+    /**
+     * @return the key of the transport of the uri in the pool (its id and the fingerprint of the password)
+     */
+    String toTransportKey(URI uri) {
+        return toFileSystemId(uri) + "#" + toCredentialFingerprint(uri);
+    }
+
+    /**
+     * A file system stops to use a transport, the last one closes it
+     *
+     * @param transport
+     */
+    void releaseTransport(SftpTransport transport) {
+
+        transports.computeIfPresent(transport.getKey(), (key, current) ->
+                current == transport && transport.release() ? null : current
+        );
+
+    }
+
+    /**
+     * Wait for a free session on a host
+     * <p/>
+     * When the maximum number of sessions is reached, the idle session of the same host
+     * (the least recently used) is closed to make room.
+     *
+     * @param sftpTransport the transport that connects
+     * @param maxSessions   the maximum number of sessions on the host (the first transport of a host sets it)
+     * @param timeout       the maximum time in ms to wait for a free session
+     * @return true if a session was acquired
+     */
+    boolean acquireSession(SftpTransport sftpTransport, int maxSessions, long timeout) throws InterruptedException {
+
+        Semaphore sessions = hostSessions.computeIfAbsent(sftpTransport.getHostId(), host -> new Semaphore(maxSessions, true));
+        if (sessions.tryAcquire()) {
+            return true;
+        }
+
+        SftpTransport leastRecentlyUsed = null;
+        for (SftpTransport transport : transports.values()) {
+            if (transport != sftpTransport
+                    && transport.isIdle()
+                    && transport.getHostId().equals(sftpTransport.getHostId())
+                    && (leastRecentlyUsed == null || transport.getLastAccessTime() < leastRecentlyUsed.getLastAccessTime())) {
+                leastRecentlyUsed = transport;
+            }
+        }
+        if (leastRecentlyUsed != null) {
+            leastRecentlyUsed.disconnectIfIdle(0);
+        }
+
+        return sessions.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Release a session acquired with {@link #acquireSession(SftpTransport, int, long)}
+     *
+     * @param sftpTransport
+     */
+    void releaseSession(SftpTransport sftpTransport) {
+        Semaphore sessions = hostSessions.get(sftpTransport.getHostId());
+        if (sessions != null) {
+            sessions.release();
+        }
+    }
+
+    /**
+     * Check periodically if a transport is idle to close its session
+     *
+     * @param sftpTransport
+     * @param idleTimeout   the idle time in ms
+     * @return the scheduled check to cancel when the transport is closed
+     */
+    ScheduledFuture<?> scheduleIdleCheck(SftpTransport sftpTransport, long idleTimeout) {
+
+        if (idleScheduler == null) {
+            synchronized (SftpFileSystemProvider.class) {
+                if (idleScheduler == null) {
+                    idleScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("sftp-idle-check"));
+                }
+            }
+        }
+        long period = Math.max(100, idleTimeout / 2);
+        return idleScheduler.scheduleWithFixedDelay(() -> sftpTransport.disconnectIfIdle(idleTimeout), period, period, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Schedule the poll of a watched directory.
+     * The scheduler only keeps the time: the poll (a blocking listing) is executed on the IO executor,
+     * a slow server doesn't delay the polls of the other directories.
+     *
+     * @param poll  the poll
+     * @param delay the delay in ms
+     * @return the scheduled poll to cancel when the directory is not watched anymore
+     */
+    ScheduledFuture<?> scheduleWatch(Runnable poll, long delay) {
+
+        if (watchScheduler == null) {
+            synchronized (SftpFileSystemProvider.class) {
+                if (watchScheduler == null) {
+                    watchScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("sftp-watch"));
+                }
+            }
+        }
+        return watchScheduler.schedule(() -> ioExecutor.execute(poll), delay, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * @return the daemon threads of the operations without executor
+     */
+    static ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Connect a transport in the background
+     *
+     * @param sftpTransport
+     */
+    void connectInBackground(SftpTransport sftpTransport) {
+        connectExecutor.execute(sftpTransport::warmUp);
+    }
+
+    /**
+     * The threads of the provider must not prevent the JVM to exit
+     *
+     * @param name the name of the threads
+     */
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     @Override
     public Path getPath(URI uri) {
 
@@ -152,9 +493,20 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     @Override
     public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
 
+        if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)) {
+            toSftpPath(path).getFileSystem().checkWritable();
+        }
+
         // Create a new file
+        // The attributes are set in one request when the file is closed
         if (options.containsAll(EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))){
-            return new SftpOverWriteByteChannel(toSftpPath(path));
+            SftpFileAttributesUpdate attributesUpdate = new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                    .fileAttributes(attrs)
+                    .build();
+            return new SftpOverWriteByteChannel(toSftpPath(path), attributesUpdate, options);
+        } else if (!options.contains(StandardOpenOption.WRITE) && !options.contains(StandardOpenOption.APPEND)) {
+            // Read
+            return new SftpReadByteChannel(toSftpPath(path), options);
         } else{
             throw new UnsupportedOperationException();
         }
@@ -176,11 +528,8 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     @Override
     public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
 
-        try {
-            toSftpPath(dir).createDirectory();
-        } catch (SftpException e) {
-            throw new RuntimeException(e);
-        }
+        toSftpPath(dir).getFileSystem().checkWritable();
+        toSftpPath(dir).createDirectory();
 
     }
 
@@ -188,16 +537,25 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     public void delete(Path path) throws IOException {
 
         SftpPath sftpPath = toSftpPath(path);
+        sftpPath.getFileSystem().checkWritable();
         if (Files.exists(sftpPath)) {
             try {
 
+                String stringPath = sftpPath.getStringPath();
                 if (Files.isDirectory(sftpPath)) {
 
-                    sftpPath.getChannelSftp().rmdir(sftpPath.getStringPath());
+                    sftpPath.getFileSystem().execute(SftpCommand.RMDIR, stringPath, channelSftp -> {
+                        channelSftp.rmdir(stringPath);
+                        return null;
+                    });
+                    sftpPath.getFileSystem().removeKnownDirectories(sftpPath.toAbsolutePath());
 
                 } else {
 
-                    sftpPath.getChannelSftp().rm(sftpPath.getStringPath());
+                    sftpPath.getFileSystem().execute(SftpCommand.RM, stringPath, channelSftp -> {
+                        channelSftp.rm(stringPath);
+                        return null;
+                    });
 
                 }
 
@@ -209,19 +567,206 @@ public class SftpFileSystemProvider extends FileSystemProvider {
 
     }
 
+    /**
+     * The content goes through the client (JSch can't send the copy-data extension).
+     * The source and the target can be on two servers.
+     * <p/>
+     * The copy reads and writes at the same time: on the same file system, it needs two channels (See {@link SftpFileSystem#KEY_CHANNEL_POOL_MAX}).
+     * With {@link StandardCopyOption#COPY_ATTRIBUTES}, the times and the permissions are set in one request at the end.
+     */
     @Override
     public void copy(Path source, Path target, CopyOption... options) throws IOException {
-        throw new UnsupportedOperationException();
+
+        SftpPath sourcePath = toSftpPath(source);
+        SftpPath targetPath = toSftpPath(target);
+        targetPath.getFileSystem().checkWritable();
+        Set<CopyOption> copyOptions = new HashSet<>(Arrays.asList(options));
+
+        if (isSameFile(sourcePath, targetPath)) {
+            return;
+        }
+        SftpPosixFileAttributes sourceAttributes = sourcePath.getFileAttributes();
+        prepareTarget(targetPath, copyOptions.contains(StandardCopyOption.REPLACE_EXISTING));
+
+        SftpFileAttributesUpdate attributesUpdate = null;
+        if (copyOptions.contains(StandardCopyOption.COPY_ATTRIBUTES)) {
+            attributesUpdate = new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                    .lastModifiedTime(sourceAttributes.lastModifiedTime())
+                    .lastAccessTime(sourceAttributes.lastAccessTime())
+                    .permissions(sourceAttributes.permissions())
+                    .build();
+        }
+
+        if (sourceAttributes.isDirectory()) {
+            // The entries are not copied
+            createDirectory(targetPath);
+            if (attributesUpdate != null) {
+                attributesUpdate.apply(targetPath);
+            }
+            return;
+        }
+
+        try (SftpReadByteChannel sourceChannel = new SftpReadByteChannel(sourcePath);
+             SftpOverWriteByteChannel targetChannel = new SftpOverWriteByteChannel(targetPath, attributesUpdate)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SftpContentPublisher.DEFAULT_CHUNK_SIZE);
+            while (sourceChannel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    targetChannel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+
     }
 
+    /**
+     * A rename on the server. When the server has the posix-rename@openssh.com extension
+     * (See {@link SftpFileSystem#getServerCapabilities()}), JSch uses it and an existing target is replaced atomically.
+     * Without it, an existing target is first deleted (and an atomic move is not supported).
+     * <p/>
+     * Between two servers (or two users), the move is a copy and a delete: an existing target is replaced
+     * only with {@link StandardCopyOption#REPLACE_EXISTING} and a directory with entries is not moved ({@link DirectoryNotEmptyException}).
+     */
     @Override
     public void move(Path source, Path target, CopyOption... options) throws IOException {
-        throw new UnsupportedOperationException();
+
+        SftpPath sourcePath = toSftpPath(source).toAbsolutePath();
+        SftpPath targetPath = toSftpPath(target).toAbsolutePath();
+        sourcePath.getFileSystem().checkWritable();
+        targetPath.getFileSystem().checkWritable();
+        Set<CopyOption> copyOptions = new HashSet<>(Arrays.asList(options));
+        boolean atomic = copyOptions.contains(StandardCopyOption.ATOMIC_MOVE);
+        boolean replace = atomic || copyOptions.contains(StandardCopyOption.REPLACE_EXISTING);
+
+        if (isSameFile(sourcePath, targetPath)) {
+            return;
+        }
+        SftpFileSystem sftpFileSystem = sourcePath.getFileSystem();
+        if (!sftpFileSystem.getTransportId().equals(targetPath.getFileSystem().getTransportId())) {
+            if (atomic) {
+                throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "The source and the target are not on the same server");
+            }
+            // As a move between two devices: only an empty directory can be moved (its entries are not copied)
+            if (sourcePath.getFileAttributes(LinkOption.NOFOLLOW_LINKS).isDirectory()) {
+                try (DirectoryStream<Path> entries = newDirectoryStream(sourcePath, entry -> true)) {
+                    if (entries.iterator().hasNext()) {
+                        throw new DirectoryNotEmptyException(source.toString());
+                    }
+                }
+            }
+            // The target is replaced only with REPLACE_EXISTING (See prepareTarget)
+            if (copyOptions.contains(StandardCopyOption.REPLACE_EXISTING)) {
+                copy(sourcePath, targetPath, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                copy(sourcePath, targetPath, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            delete(sourcePath);
+            return;
+        }
+
+        if (Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            if (!replace) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            if (!sftpFileSystem.getServerCapabilities().hasExtension(SftpServerCapabilities.POSIX_RENAME)) {
+                if (atomic) {
+                    throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "The server has no " + SftpServerCapabilities.POSIX_RENAME + " extension to replace the target");
+                }
+                delete(targetPath);
+            }
+        }
+
+        String sourceString = sourcePath.toString();
+        String targetString = targetPath.toString();
+        try {
+            sftpFileSystem.execute(SftpCommand.RENAME, sourceString, channelSftp -> {
+                if (replace) {
+                    channelSftp.rename(sourceString, targetString);
+                } else {
+                    renameWithoutReplace(channelSftp, sourceString, targetString);
+                }
+                return null;
+            });
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(sourceString);
+            }
+            if (!replace && Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+                // Created after the check
+                throw new FileAlreadyExistsException(targetString);
+            }
+            throw new IOException("Unable to move (" + sourceString + ") to (" + targetString + ")", e);
+        }
+        sftpFileSystem.removeKnownDirectories(sourcePath);
+        sftpFileSystem.invalidateIndex(targetString);
+
     }
 
+    /**
+     * Rename with the SSH_FXP_RENAME of the protocol: the server fails if the target exists
+     * (a target created after the check of the move is never replaced).
+     * JSch sends posix-rename@openssh.com (that replaces the target) when the server has it:
+     * its flag is turned off during the call (the channel is used only by the caller).
+     */
+    static void renameWithoutReplace(ChannelSftp channelSftp, String source, String target) throws SftpException {
+        Field posixRename;
+        boolean hasPosixRename;
+        try {
+            posixRename = getPosixRenameField();
+            hasPosixRename = posixRename.getBoolean(channelSftp);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new SftpException(ChannelSftp.SSH_FX_OP_UNSUPPORTED, "The rename without replace is not available: " + e, e);
+        }
+        if (!hasPosixRename) {
+            channelSftp.rename(source, target);
+            return;
+        }
+        try {
+            posixRename.setBoolean(channelSftp, false);
+            try {
+                channelSftp.rename(source, target);
+            } finally {
+                posixRename.setBoolean(channelSftp, true);
+            }
+        } catch (IllegalAccessException e) {
+            throw new SftpException(ChannelSftp.SSH_FX_OP_UNSUPPORTED, "The rename without replace is not available: " + e, e);
+        }
+    }
+
+    private static Field getPosixRenameField() throws NoSuchFieldException {
+        if (posixRenameField == null) {
+            Field field = ChannelSftp.class.getDeclaredField("extension_posix_rename");
+            field.setAccessible(true);
+            posixRenameField = field;
+        }
+        return posixRenameField;
+    }
+
+    /**
+     * Delete the target of a copy if it exists and can be replaced
+     */
+    private void prepareTarget(SftpPath targetPath, boolean replaceExisting) throws IOException {
+        if (Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            if (!replaceExisting) {
+                throw new FileAlreadyExistsException(targetPath.toString());
+            }
+            delete(targetPath);
+        }
+    }
+
+    /**
+     * Without links, two paths are the same file when they have the same absolute path on the same server
+     */
     @Override
     public boolean isSameFile(Path path, Path path2) throws IOException {
-        throw new UnsupportedOperationException();
+        if (!(path2 instanceof SftpPath)) {
+            return false;
+        }
+        SftpPath sftpPath = toSftpPath(path);
+        SftpPath sftpPath2 = (SftpPath) path2;
+        return sftpPath.getFileSystem().getTransportId().equals(sftpPath2.getFileSystem().getTransportId())
+                && sftpPath.toAbsolutePath().normalize().equals(sftpPath2.toAbsolutePath().normalize());
     }
 
     @Override
@@ -231,7 +776,8 @@ public class SftpFileSystemProvider extends FileSystemProvider {
 
     @Override
     public FileStore getFileStore(Path path) throws IOException {
-        throw new UnsupportedOperationException();
+        SftpPath sftpPath = toSftpPath(path);
+        return sftpPath.getFileSystem().getFileStore(sftpPath);
     }
 
     /**
@@ -260,7 +806,7 @@ public class SftpFileSystemProvider extends FileSystemProvider {
                     break;
                 case WRITE:
                     if (path.getFileSystem().isReadOnly())
-                        throw new AccessDeniedException(toString());
+                        throw new AccessDeniedException(path.toString(), null, "The file system is read only");
                     break;
                 case EXECUTE:
                     break;
@@ -290,7 +836,7 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
 
         if (type == BasicFileAttributes.class || type == SftpBasicFileAttributes.class || type == PosixFileAttributes.class || type == SftpPosixFileAttributes.class)
-            return (A) toSftpPath(path).getFileAttributes();
+            return (A) toSftpPath(path).getFileAttributes(options);
         else {
             throw new UnsupportedOperationException("The class (" + type + ") is not supported.");
         }
@@ -315,6 +861,8 @@ public class SftpFileSystemProvider extends FileSystemProvider {
     @Override
     public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
 
+        toSftpPath(path).getFileSystem().checkWritable();
+
         String type;
         String attr;
 
@@ -329,6 +877,9 @@ public class SftpFileSystemProvider extends FileSystemProvider {
         if (type.equals("basic")) {
             SftpFileBasicAttributeView view = SftpFileBasicAttributeView.get(path);
             view.setAttribute(attr, value);
+        } else if (type.equals("posix")) {
+            SftpPosixFileAttributeView view = SftpPosixFileAttributeView.get(path);
+            view.setAttribute(attr, value);
         } else {
             throw new UnsupportedOperationException("view <" + type + "> is not supported");
         }
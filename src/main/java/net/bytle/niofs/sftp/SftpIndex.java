@@ -0,0 +1,753 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A persistent local index of the metadata of a remote subtree (See {@link SftpFileSystem#KEY_INDEX_ROOT})
+ * <p/>
+ * The index is built by a parallel walk of the subtree and saved in a compact binary file.
+ * A refresh stats the known directories and lists again only the ones whose modification time has changed
+ * (a file added, deleted or renamed changes the time of its directory).
+ * The modification time is in seconds: a directory modified in the second of its listing (or later) is listed again
+ * by each refresh until its time is older than its listing (the clocks of the client and the server are supposed in sync).
+ * <p/>
+ * The attributes and the directory streams of the subtree are read from the index while it's younger than
+ * {@link SftpFileSystem#KEY_INDEX_STALENESS}. An older index is refreshed in the background and the server is asked meanwhile.
+ * The mutations of the file system remove the directories that they change from the index until the next refresh:
+ * the removed paths are appended to the file before the mutation returns and removed again when the file is loaded.
+ * <p/>
+ * The staleness bounds only the changes that modify a directory (a file added, deleted or renamed by another client).
+ * A file changed in place by another client (content, size, time or permissions) doesn't change its directory:
+ * its attributes stay the ones of the index across the refreshes until its directory is modified.
+ * <p/>
+ * The file is memory mapped when the file system is created: only the table of the directories is read,
+ * the entries of a directory are decoded with its first access.
+ * <pre>
+ * header    : magic (int), version (int), refresh time (long), root (string), offset of the table (long)
+ * entries   : by directory, sorted by name: name (string), permissions (int), size (long), atime (int), mtime (int), uid (int), gid (int)
+ * table     : count (int) and by directory: path (string), mtime (int), listing time in seconds (int), offset of the entries (long), count of entries (int)
+ * journal   : the paths changed since the save (string) until the end of the file
+ * string    : length (int) and UTF-8 bytes
+ * </pre>
+ */
+public class SftpIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    // SFXI
+    private static final int MAGIC = 0x53465849;
+    private static final int VERSION = 2;
+    // The name of the cache of the index in the metrics
+    static final String CACHE_INDEX = "index";
+    // The type of a file in its permissions (not public in SftpATTRS)
+    private static final int S_IFMT = 0xf000;
+    private static final int S_IFDIR = 0x4000;
+    private static final int S_IFLNK = 0xa000;
+
+    private final SftpFileSystem fileSystem;
+    private final String root;
+    private final Path file;
+    private final long staleness;
+    private final int walkThreads;
+
+    private volatile Snapshot snapshot;
+    // One refresh at a time
+    private final Object refreshLock = new Object();
+    // One write of the file at a time (an append to the journal or the move of a new file)
+    private final Object fileLock = new Object();
+    // A refresh in the background is running
+    private final AtomicBoolean isRefreshing = new AtomicBoolean(false);
+    // The paths changed during a refresh, they are removed from the new index (null without refresh)
+    private volatile Set<String> changedDuringRefresh;
+
+    /**
+     * @param fileSystem  the file system
+     * @param root        the absolute path of the remote subtree
+     * @param file        the local file of the index (loaded if it exists)
+     * @param staleness   the maximum age in ms of the index to answer a query
+     * @param walkThreads the number of directories listed in parallel
+     */
+    SftpIndex(SftpFileSystem fileSystem, String root, Path file, long staleness, int walkThreads) {
+        this.fileSystem = fileSystem;
+        this.root = root.length() > 1 && root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+        this.file = file;
+        this.staleness = staleness;
+        this.walkThreads = Math.max(1, walkThreads);
+        if (Files.exists(file)) {
+            try {
+                this.snapshot = load(file, this.root);
+            } catch (IOException e) {
+                LOGGER.warning("The index (" + file + ") can't be loaded, it will be built again: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The directories of the index at a refresh time
+     */
+    private static class Snapshot {
+
+        // The directories by absolute path (the mutations remove their directories)
+        final ConcurrentHashMap<String, Directory> directories;
+        // The start of the refresh in ms since the epoch
+        final long refreshTime;
+
+        Snapshot(ConcurrentHashMap<String, Directory> directories, long refreshTime) {
+            this.directories = directories;
+            this.refreshTime = refreshTime;
+        }
+
+    }
+
+    /**
+     * A directory with its modification time, the time of its listing and its entries,
+     * in the heap after a listing or in the mapped file (decoded with the first access)
+     */
+    private static class Directory {
+
+        final int mtime;
+        // The local time in seconds when the listing has started
+        final int listingTime;
+        private final Entries listed;
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int count;
+        private volatile SoftReference<Entries> decoded = new SoftReference<>(null);
+
+        Directory(int mtime, int listingTime, Entries listed) {
+            this.mtime = mtime;
+            this.listingTime = listingTime;
+            this.listed = listed;
+            this.buffer = null;
+            this.offset = 0;
+            this.count = listed.names.length;
+        }
+
+        Directory(int mtime, int listingTime, ByteBuffer buffer, int offset, int count) {
+            this.mtime = mtime;
+            this.listingTime = listingTime;
+            this.listed = null;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        /**
+         * @return true if a modification after the listing would have changed the modification time
+         * (the time is in seconds: a modification in the second of the listing keeps it)
+         */
+        boolean isUnchanged(int mtime) {
+            return this.mtime == mtime && mtime < listingTime;
+        }
+
+        Entries getEntries() {
+            if (listed != null) {
+                return listed;
+            }
+            Entries entries = decoded.get();
+            if (entries == null) {
+                entries = Entries.decode(buffer.duplicate(), offset, count);
+                decoded = new SoftReference<>(entries);
+            }
+            return entries;
+        }
+
+    }
+
+    /**
+     * The entries of a directory sorted by name, the attributes are in arrays
+     */
+    private static class Entries {
+
+        final String[] names;
+        final int[] permissions;
+        final long[] sizes;
+        final int[] atimes;
+        final int[] mtimes;
+        final int[] uids;
+        final int[] gids;
+
+        Entries(int count) {
+            names = new String[count];
+            permissions = new int[count];
+            sizes = new long[count];
+            atimes = new int[count];
+            mtimes = new int[count];
+            uids = new int[count];
+            gids = new int[count];
+        }
+
+        /**
+         * @param listing a listing of the server (the . and .. entries are skipped)
+         */
+        static Entries of(List<ChannelSftp.LsEntry> listing) {
+            List<ChannelSftp.LsEntry> children = new ArrayList<>(listing.size());
+            for (ChannelSftp.LsEntry entry : listing) {
+                if (!(entry.getFilename().equals(".") || entry.getFilename().equals(".."))) {
+                    children.add(entry);
+                }
+            }
+            children.sort(Comparator.comparing(ChannelSftp.LsEntry::getFilename));
+            Entries entries = new Entries(children.size());
+            for (int i = 0; i < children.size(); i++) {
+                SftpATTRS attrs = children.get(i).getAttrs();
+                entries.names[i] = children.get(i).getFilename();
+                entries.permissions[i] = attrs.getPermissions();
+                entries.sizes[i] = attrs.getSize();
+                entries.atimes[i] = attrs.getATime();
+                entries.mtimes[i] = attrs.getMTime();
+                entries.uids[i] = attrs.getUId();
+                entries.gids[i] = attrs.getGId();
+            }
+            return entries;
+        }
+
+        static Entries decode(ByteBuffer buffer, int offset, int count) {
+            buffer.position(offset);
+            Entries entries = new Entries(count);
+            for (int i = 0; i < count; i++) {
+                entries.names[i] = readString(buffer);
+                entries.permissions[i] = buffer.getInt();
+                entries.sizes[i] = buffer.getLong();
+                entries.atimes[i] = buffer.getInt();
+                entries.mtimes[i] = buffer.getInt();
+                entries.uids[i] = buffer.getInt();
+                entries.gids[i] = buffer.getInt();
+            }
+            return entries;
+        }
+
+        void encode(DataOutputStream output) throws IOException {
+            for (int i = 0; i < names.length; i++) {
+                writeString(output, names[i]);
+                output.writeInt(permissions[i]);
+                output.writeLong(sizes[i]);
+                output.writeInt(atimes[i]);
+                output.writeInt(mtimes[i]);
+                output.writeInt(uids[i]);
+                output.writeInt(gids[i]);
+            }
+        }
+
+        int indexOf(String name) {
+            return Arrays.binarySearch(names, name);
+        }
+
+        boolean isDirectory(int i) {
+            return (permissions[i] & S_IFMT) == S_IFDIR;
+        }
+
+        boolean isLink(int i) {
+            return (permissions[i] & S_IFMT) == S_IFLNK;
+        }
+
+        SftpATTRS toSftpATTRS(int i) {
+            SftpATTRS attrs = SftpFileAttributesUpdate.newSftpATTRS();
+            attrs.setSIZE(sizes[i]);
+            attrs.setPERMISSIONS(permissions[i]);
+            setFileType(attrs, permissions[i]);
+            attrs.setACMODTIME(atimes[i], mtimes[i]);
+            attrs.setUIDGID(uids[i], gids[i]);
+            return attrs;
+        }
+
+    }
+
+    // The permissions field of SftpATTRS made accessible once
+    private static volatile Field permissionsField;
+
+    /**
+     * {@link SftpATTRS#setPERMISSIONS(int)} keeps the type of the file of the attributes (none for new attributes)
+     * and the field is private: it's set to get the type (directory, link, ...)
+     */
+    private static void setFileType(SftpATTRS attrs, int permissions) {
+        try {
+            if (permissionsField == null) {
+                Field field = SftpATTRS.class.getDeclaredField("permissions");
+                field.setAccessible(true);
+                permissionsField = field;
+            }
+            permissionsField.setInt(attrs, permissions);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to set the type of the file in the Sftp attributes object", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Map the file and read its table of directories
+     */
+    private static Snapshot load(Path file, String root) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The index is bigger than 2 Gb");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("The file is not an index of this version");
+            }
+            long refreshTime = buffer.getLong();
+            String indexRoot = readString(buffer);
+            if (!indexRoot.equals(root)) {
+                throw new IOException("The index is the one of (" + indexRoot + ")");
+            }
+            buffer.position((int) buffer.getLong());
+            int count = buffer.getInt();
+            ConcurrentHashMap<String, Directory> directories = new ConcurrentHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                int mtime = buffer.getInt();
+                int listingTime = buffer.getInt();
+                int offset = (int) buffer.getLong();
+                directories.put(path, new Directory(mtime, listingTime, buffer, offset, buffer.getInt()));
+            }
+            // The journal
+            while (buffer.hasRemaining()) {
+                drop(directories, readString(buffer), root);
+            }
+            return new Snapshot(directories, refreshTime);
+        } catch (RuntimeException e) {
+            throw new IOException("The index is corrupted", e);
+        }
+
+    }
+
+    /**
+     * Write the index in a temporary file moved at the end: a crash leaves the previous file
+     */
+    private void save(Map<String, Directory> directories, long refreshTime) throws IOException {
+
+        Path directory = file.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            // Readable only by its owner (the temporary file of the index has also only the owner permissions)
+            if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            List<String> paths = new ArrayList<>(directories.keySet());
+            long[] offsets = new long[paths.size()];
+            int tableOffsetPosition;
+            long tableOffset;
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(refreshTime);
+                writeString(output, root);
+                // The offset of the table is written at the end
+                tableOffsetPosition = output.size();
+                output.writeLong(0);
+                for (int i = 0; i < paths.size(); i++) {
+                    offsets[i] = output.size();
+                    directories.get(paths.get(i)).getEntries().encode(output);
+                }
+                tableOffset = output.size();
+                output.writeInt(paths.size());
+                for (int i = 0; i < paths.size(); i++) {
+                    Directory entry = directories.get(paths.get(i));
+                    writeString(output, paths.get(i));
+                    output.writeInt(entry.mtime);
+                    output.writeInt(entry.listingTime);
+                    output.writeLong(offsets[i]);
+                    output.writeInt(entry.count);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, tableOffset), tableOffsetPosition);
+                channel.force(false);
+            }
+            synchronized (fileLock) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+    }
+
+    /**
+     * Refresh the index and save it: the first time, the subtree is walked,
+     * then only the directories with a new modification time are listed again.
+     * The directories are listed in parallel (See {@link SftpFileSystem#KEY_INDEX_WALK_THREADS}).
+     *
+     * @throws IOException if the walk or the save fails (the index is then unchanged)
+     */
+    public void refresh() throws IOException {
+
+        synchronized (refreshLock) {
+
+            long refreshTime = System.currentTimeMillis();
+            Snapshot previous = snapshot;
+            Set<String> changed = ConcurrentHashMap.newKeySet();
+            changedDuringRefresh = changed;
+            try {
+                ConcurrentHashMap<String, Directory> directories = walk(previous == null ? Collections.emptyMap() : previous.directories);
+                save(directories, refreshTime);
+                snapshot = load(file, root);
+            } finally {
+                changedDuringRefresh = null;
+            }
+            // A change may have been listed before it was done
+            for (String path : changed) {
+                invalidate(path);
+            }
+            LOGGER.fine("The index of (" + root + ") was refreshed with " + getDirectoryCount() + " directories in " + (System.currentTimeMillis() - refreshTime) + " ms");
+
+        }
+
+    }
+
+    /**
+     * Refresh the index on a thread of the provider (if no refresh is running)
+     */
+    void refreshInBackground() {
+        if (isRefreshing.compareAndSet(false, true)) {
+            SftpFileSystemProvider.getIoExecutor().execute(() -> {
+                try {
+                    refresh();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warning("The refresh of the index of (" + root + ") has failed: " + e);
+                } finally {
+                    isRefreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * A parallel walk: each directory is a task that submits its sub-directories
+     *
+     * @param previous the directories of the previous index
+     */
+    private ConcurrentHashMap<String, Directory> walk(Map<String, Directory> previous) throws IOException {
+
+        ConcurrentHashMap<String, Directory> directories = new ConcurrentHashMap<>(Math.max(16, previous.size() * 2));
+        ExecutorService executor = Executors.newFixedThreadPool(walkThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sftp-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger pending = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Walk walk = new Walk() {
+
+            @Override
+            public void submit(String path, Integer mtime) {
+                pending.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            visit(path, mtime, previous, directories, this);
+                        }
+                    } catch (SftpException | RuntimeException e) {
+                        if (!path.equals(root) && e instanceof SftpException && ((SftpException) e).id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                            // Deleted during the walk
+                            return;
+                        }
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        if (pending.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+
+        };
+
+        try {
+            walk.submit(root, null);
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The walk of (" + root + ") was interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        Exception e = failure.get();
+        if (e instanceof SftpException && ((SftpException) e).id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+            throw new NoSuchFileException(root);
+        }
+        if (e != null) {
+            throw new IOException("Unable to walk (" + root + ")", e);
+        }
+        return directories;
+
+    }
+
+    private interface Walk {
+
+        /**
+         * @param path  a directory
+         * @param mtime its modification time from the listing of its parent or null to stat it
+         */
+        void submit(String path, Integer mtime);
+
+    }
+
+    /**
+     * A directory unchanged since its listing keeps its entries, the others are listed
+     */
+    private void visit(String path, Integer knownMtime, Map<String, Directory> previous, Map<String, Directory> directories, Walk walk) throws SftpException {
+
+        int mtime = knownMtime != null ? knownMtime : fileSystem.executeFresh(SftpCommand.STAT, path, channelSftp -> channelSftp.stat(path)).getMTime();
+        Directory directory = previous.get(path);
+        if (directory == null || !directory.isUnchanged(mtime)) {
+            int listingTime = (int) (System.currentTimeMillis() / 1000);
+            Vector<ChannelSftp.LsEntry> listing = fileSystem.executeFresh(SftpCommand.LS, path, channelSftp -> channelSftp.ls(path));
+            directory = new Directory(mtime, listingTime, Entries.of(listing));
+            directories.put(path, directory);
+            Entries entries = directory.getEntries();
+            for (int i = 0; i < entries.names.length; i++) {
+                if (entries.isDirectory(i)) {
+                    walk.submit(child(path, entries.names[i]), entries.mtimes[i]);
+                }
+            }
+        } else {
+            directories.put(path, directory);
+            Entries entries = directory.getEntries();
+            for (int i = 0; i < entries.names.length; i++) {
+                if (entries.isDirectory(i)) {
+                    // The mtime of a sub-directory is not in an unchanged listing
+                    walk.submit(child(path, entries.names[i]), null);
+                }
+            }
+        }
+
+    }
+
+    private static String child(String directory, String name) {
+        return directory.equals("/") ? "/" + name : directory + "/" + name;
+    }
+
+    /**
+     * @return the parent of an absolute path or null for the root
+     */
+    private static String parent(String path) {
+        int separator = path.lastIndexOf('/');
+        if (separator < 0 || path.equals("/")) {
+            return null;
+        }
+        return separator == 0 ? "/" : path.substring(0, separator);
+    }
+
+    private boolean isInSubtree(String path) {
+        return isInSubtree(path, root);
+    }
+
+    private static boolean isInSubtree(String path, String root) {
+        return path.equals(root) || path.startsWith(root.equals("/") ? "/" : root + "/");
+    }
+
+    /**
+     * Remove the directory of a changed path (and the path and its descendants if it's a directory)
+     *
+     * @return true if a directory was removed
+     */
+    private static boolean drop(Map<String, Directory> directories, String path, String root) {
+        if (!isInSubtree(path, root)) {
+            return false;
+        }
+        boolean dropped = false;
+        String parent = parent(path);
+        if (parent != null) {
+            dropped = directories.remove(parent) != null;
+        }
+        if (directories.remove(path) != null) {
+            dropped = true;
+            String prefix = path + "/";
+            directories.keySet().removeIf(directory -> directory.startsWith(prefix));
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the snapshot if it can answer a query, a stale index is refreshed in the background
+     */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.refreshTime > staleness) {
+            refreshInBackground();
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * @param path        an absolute path
+     * @param followLinks true if the attributes of the target of a link are asked (a link is then not answered)
+     * @return the attributes of the path or null if the index can't answer
+     * @throws NoSuchFileException if the path is not in its indexed directory
+     */
+    SftpATTRS stat(String path, boolean followLinks) throws NoSuchFileException {
+
+        String parent = parent(path);
+        if (parent == null || !isInSubtree(path)) {
+            return null;
+        }
+        Snapshot current = getSnapshot();
+        Directory directory = current == null ? null : current.directories.get(parent);
+        if (directory == null) {
+            fileSystem.getMetrics().recordCacheAccess(CACHE_INDEX, false);
+            return null;
+        }
+        Entries entries = directory.getEntries();
+        int i = entries.indexOf(path.substring(path.lastIndexOf('/') + 1));
+        if (i < 0) {
+            fileSystem.getMetrics().recordCacheAccess(CACHE_INDEX, true);
+            throw new NoSuchFileException(path);
+        }
+        boolean hit = !(followLinks && entries.isLink(i));
+        fileSystem.getMetrics().recordCacheAccess(CACHE_INDEX, hit);
+        return hit ? entries.toSftpATTRS(i) : null;
+
+    }
+
+    /**
+     * @param path an absolute directory path
+     * @return the entries of the directory by name or null if the index can't answer
+     */
+    Map<String, SftpATTRS> list(String path) {
+
+        if (!isInSubtree(path)) {
+            return null;
+        }
+        Snapshot current = getSnapshot();
+        Directory directory = current == null ? null : current.directories.get(path);
+        fileSystem.getMetrics().recordCacheAccess(CACHE_INDEX, directory != null);
+        if (directory == null) {
+            return null;
+        }
+        Entries entries = directory.getEntries();
+        Map<String, SftpATTRS> children = new LinkedHashMap<>(entries.names.length * 2);
+        for (int i = 0; i < entries.names.length; i++) {
+            children.put(entries.names[i], entries.toSftpATTRS(i));
+        }
+        return children;
+
+    }
+
+    /**
+     * A path was changed by the file system: its directory (and the path and its descendants if it's a directory)
+     * are removed from the index until the next refresh.
+     * The path is appended to the journal of the file: a file system that loads the file removes them also.
+     *
+     * @param path an absolute path
+     */
+    void invalidate(String path) {
+        if (!isInSubtree(path)) {
+            return;
+        }
+        Set<String> changed = changedDuringRefresh;
+        if (changed != null) {
+            changed.add(path);
+        }
+        Snapshot current = snapshot;
+        if (current != null && drop(current.directories, path, root)) {
+            appendToJournal(path);
+        }
+    }
+
+    /**
+     * Append a changed path to the file, the file is deleted if it can't be written (it would give stale answers)
+     */
+    private void appendToJournal(String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+        record.flip();
+        synchronized (fileLock) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                LOGGER.warning("The change of (" + path + ") can't be written in the index (" + file + "), the index is deleted: " + e.getMessage());
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException deleteException) {
+                    LOGGER.warning("The index (" + file + ") can't be deleted: " + deleteException.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the absolute path of the indexed subtree
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the local file of the index
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the start time of the last refresh in ms since the epoch (0 if the index was never built)
+     */
+    public long getRefreshTime() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.refreshTime;
+    }
+
+    /**
+     * @return true if the index answers the queries (younger than the staleness bound)
+     */
+    public boolean isFresh() {
+        Snapshot current = snapshot;
+        return current != null && System.currentTimeMillis() - current.refreshTime <= staleness;
+    }
+
+    /**
+     * @return the number of indexed directories
+     */
+    public int getDirectoryCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.directories.size();
+    }
+
+}
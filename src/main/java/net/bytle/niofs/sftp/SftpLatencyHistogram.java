@@ -0,0 +1,89 @@
+package net.bytle.niofs.sftp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A latency histogram with power of two buckets in microseconds
+ * <p/>
+ * The bucket i counts the latencies between 2^(i-1) and 2^i - 1 microseconds (the bucket 0 counts the latencies under 1 microsecond).
+ * A record is a few atomic additions without lock: it can be called by all threads of the file system.
+ * A percentile is the upper bound of its bucket (a precision of a factor 2).
+ */
+public class SftpLatencyHistogram {
+
+    // 2^40 microseconds is more than 12 days
+    static final int BUCKETS = 41;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean in microseconds (0 without latency)
+     */
+    public long getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / count / 1000;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound in microseconds of the bucket of the percentile (0 without latency)
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(counts.length - 1);
+    }
+
+    /**
+     * @param bucket the index of a bucket
+     * @return the maximum latency of the bucket in microseconds
+     */
+    public static long upperBoundMicros(int bucket) {
+        return (1L << bucket) - 1;
+    }
+
+    /**
+     * @return a copy of the counts by bucket
+     */
+    public long[] getBuckets() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+}
@@ -0,0 +1,273 @@
+package net.bytle.niofs.sftp;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The counters and the latency histograms of a file system
+ * <p/>
+ * They are published in JMX (See {@link SftpFileSystem#KEY_METRICS_JMX}) with the name
+ * <code>net.bytle.niofs.sftp:type=SftpFileSystem,name="the id of the file system"</code>
+ * (with an <code>instance</code> key when another live file system has the same id, ie another password)
+ * and given to the listeners (See {@link #addListener(SftpMetricsListener)}).
+ * <p/>
+ * The counters are {@link LongAdder}: a record doesn't lock, the threads of the file system don't contend on it.
+ */
+public class SftpMetrics implements SftpMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    static final String JMX_DOMAIN = "net.bytle.niofs.sftp";
+    // The number of the next instance of a name already registered
+    private static final AtomicLong instances = new AtomicLong(1);
+
+    private final String fileSystemId;
+
+    private final Map<SftpCommand, SftpLatencyHistogram> latencies = new EnumMap<>(SftpCommand.class);
+    private final Map<SftpCommand, LongAdder> errors = new EnumMap<>(SftpCommand.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder channelWaitNanos = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    private final List<SftpMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ObjectName objectName;
+
+    SftpMetrics(String fileSystemId) {
+        this.fileSystemId = fileSystemId;
+        // Created once: the maps are then only read
+        for (SftpCommand command : SftpCommand.values()) {
+            latencies.put(command, new SftpLatencyHistogram());
+            errors.put(command, new LongAdder());
+        }
+    }
+
+    public void addListener(SftpMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SftpMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    void recordOperation(SftpCommand command, long nanos, boolean success) {
+        latencies.get(command).record(nanos);
+        if (!success) {
+            errors.get(command).increment();
+        }
+        for (SftpMetricsListener listener : listeners) {
+            listener.onOperation(command, nanos, success);
+        }
+    }
+
+    void recordRoundTrip() {
+        roundTrips.increment();
+    }
+
+    void recordBytesRead(long bytes) {
+        bytesRead.add(bytes);
+        for (SftpMetricsListener listener : listeners) {
+            listener.onBytesRead(bytes);
+        }
+    }
+
+    void recordBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+        for (SftpMetricsListener listener : listeners) {
+            listener.onBytesWritten(bytes);
+        }
+    }
+
+    void recordChannelWait(long nanos) {
+        channelWaitNanos.add(nanos);
+        for (SftpMetricsListener listener : listeners) {
+            listener.onChannelWait(nanos);
+        }
+    }
+
+    void recordConnectionLost() {
+        reconnects.increment();
+        for (SftpMetricsListener listener : listeners) {
+            listener.onConnectionLost();
+        }
+    }
+
+    void recordCoalesced(SftpCommand command) {
+        coalescedRequests.increment();
+        for (SftpMetricsListener listener : listeners) {
+            listener.onCoalesced(command);
+        }
+    }
+
+    void recordCacheAccess(String cache, boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+        for (SftpMetricsListener listener : listeners) {
+            listener.onCacheAccess(cache, hit);
+        }
+    }
+
+    /**
+     * @param command a SFTP command
+     * @return the latencies of the command
+     */
+    public SftpLatencyHistogram getLatencies(SftpCommand command) {
+        return latencies.get(command);
+    }
+
+    /**
+     * Register the metrics in the platform MBean server
+     */
+    void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            String prefix = JMX_DOMAIN + ":type=SftpFileSystem,name=" + ObjectName.quote(fileSystemId);
+            ObjectName name = new ObjectName(prefix);
+            while (true) {
+                try {
+                    mBeanServer.registerMBean(this, name);
+                    break;
+                } catch (InstanceAlreadyExistsException e) {
+                    // The name is the one of another live file system with the same id: it's never taken
+                    name = new ObjectName(prefix + ",instance=" + instances.getAndIncrement());
+                }
+            }
+            objectName = name;
+        } catch (JMException e) {
+            LOGGER.warning("The metrics of (" + fileSystemId + ") could not be registered in JMX: " + e);
+        }
+    }
+
+    void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.fine("The metrics of (" + fileSystemId + ") were already unregistered: " + e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return the name in JMX or null if the metrics are not registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public String getFileSystemId() {
+        return fileSystemId;
+    }
+
+    /**
+     * @return a value by command name, the commands without operation are not in the map
+     */
+    private Map<String, Long> byCommand(Function<SftpCommand, Long> value) {
+        Map<String, Long> values = new TreeMap<>();
+        for (SftpCommand command : SftpCommand.values()) {
+            if (latencies.get(command).getCount() > 0) {
+                values.put(command.name(), value.apply(command));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return byCommand(command -> latencies.get(command).getCount());
+    }
+
+    @Override
+    public Map<String, Long> getOperationErrors() {
+        return byCommand(command -> errors.get(command).sum());
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMeanMicros() {
+        return byCommand(command -> latencies.get(command).getMeanMicros());
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50Micros() {
+        return byCommand(command -> latencies.get(command).getPercentileMicros(50));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99Micros() {
+        return byCommand(command -> latencies.get(command).getPercentileMicros(99));
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String command) {
+        return latencies.get(SftpCommand.valueOf(command)).getBuckets();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    @Override
+    public long getChannelWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(channelWaitNanos.sum());
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hits = getCacheHits();
+        long accesses = hits + getCacheMisses();
+        return accesses == 0 ? 0 : hits / (double) accesses;
+    }
+
+}
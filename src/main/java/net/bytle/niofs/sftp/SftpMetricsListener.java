@@ -0,0 +1,59 @@
+package net.bytle.niofs.sftp;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A listener of the metrics of a file system (See {@link SftpMetrics#addListener(SftpMetricsListener)})
+ * <p/>
+ * The methods are called on the thread of the operation: they must be fast and must not throw.
+ * They do nothing by default.
+ */
+public interface SftpMetricsListener {
+
+    /**
+     * @param command the SFTP command
+     * @param nanos   the time of the operation with its retries and the wait for a channel
+     * @param success false if the operation has failed
+     */
+    default void onOperation(SftpCommand command, long nanos, boolean success) {
+    }
+
+    /**
+     * @param bytes the bytes read from the server
+     */
+    default void onBytesRead(long bytes) {
+    }
+
+    /**
+     * @param bytes the bytes written to the server
+     */
+    default void onBytesWritten(long bytes) {
+    }
+
+    /**
+     * @param nanos the time waited for a free channel of the pool
+     */
+    default void onChannelWait(long nanos) {
+    }
+
+    /**
+     * A connection was lost during an operation
+     */
+    default void onConnectionLost() {
+    }
+
+    /**
+     * A request has shared the result of a concurrent identical request in flight (See {@link SftpCommand#isCoalesced()})
+     *
+     * @param command the SFTP command
+     */
+    default void onCoalesced(SftpCommand command) {
+    }
+
+    /**
+     * @param cache the name of the cache
+     * @param hit   true if the value was in the cache
+     */
+    default void onCacheAccess(String cache, boolean hit) {
+    }
+
+}
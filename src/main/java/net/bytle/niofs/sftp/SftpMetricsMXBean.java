@@ -0,0 +1,64 @@
+package net.bytle.niofs.sftp;
+
+import java.util.Map;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The metrics of a file system published in JMX (See {@link SftpMetrics})
+ * <p/>
+ * The maps are by SFTP command (See {@link SftpCommand}).
+ */
+public interface SftpMetricsMXBean {
+
+    /**
+     * @return the id of the file system (user@host:port and the working directory)
+     */
+    String getFileSystemId();
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getOperationErrors();
+
+    Map<String, Long> getLatencyMeanMicros();
+
+    Map<String, Long> getLatencyP50Micros();
+
+    Map<String, Long> getLatencyP99Micros();
+
+    /**
+     * @param command the name of a SFTP command
+     * @return the counts by power of two buckets of microseconds (See {@link SftpLatencyHistogram})
+     */
+    long[] getLatencyHistogram(String command);
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /**
+     * @return the requests executed on the server (a round trip each)
+     */
+    long getRoundTrips();
+
+    long getChannelWaitTimeMillis();
+
+    /**
+     * @return the connections lost during an operation
+     */
+    long getReconnects();
+
+    /**
+     * @return the requests that didn't go to the server: they have shared the result of a concurrent identical request
+     */
+    long getCoalescedRequests();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * @return the hits divided by the accesses (0 without access)
+     */
+    double getCacheHitRate();
+
+}
@@ -0,0 +1,20 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A SFTP request made on a channel
+ * <p/>
+ * The operations are executed by the file system (See {@link SftpFileSystem#execute(SftpCommand, SftpOperation)})
+ * that gives a healthy channel and retries the idempotent commands when the connection is lost.
+ * An operation must then not keep any state between two executions.
+ *
+ * @param <T> the type of the result
+ */
+interface SftpOperation<T> {
+
+    T execute(ChannelSftp channelSftp) throws SftpException;
+
+}
@@ -4,8 +4,13 @@ import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.SftpException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.file.OpenOption;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Created by gerard on 22-11-2015.
@@ -17,13 +22,47 @@ import java.nio.channels.*;
 public class SftpOverWriteByteChannel implements SeekableByteChannel {
 
     private final SftpFileProgressMonitor monitor;
+    private final SftpPath path;
+    private SftpFileAttributesUpdate attributesUpdate;
+    // The file handle belongs to a channel
+    private final SftpChannelLease channelLease;
     WritableByteChannel writableByteChannel;
+    // The first bytes are sampled for the adaptive compression
+    private boolean isSampled = false;
+    // The transfer in a Java Flight Recorder recording (null if not recorded)
+    private SftpTransferEvent transferEvent;
+    private long bytesWritten = 0;
 
     protected SftpOverWriteByteChannel(SftpPath path) {
+        this(path, null);
+    }
+
+    /**
+     * @param path
+     * @param attributesUpdate the attributes to set when the channel is closed (may be null)
+     */
+    protected SftpOverWriteByteChannel(SftpPath path, SftpFileAttributesUpdate attributesUpdate) {
+        this(path, attributesUpdate, Collections.emptySet());
+    }
+
+    /**
+     * @param path
+     * @param attributesUpdate the attributes to set when the channel is closed (may be null)
+     * @param options          the open options with the {@link SftpTransferOption transfer options}
+     */
+    protected SftpOverWriteByteChannel(SftpPath path, SftpFileAttributesUpdate attributesUpdate, Set<? extends OpenOption> options) {
+        this.path = path;
+        this.attributesUpdate = attributesUpdate;
+        this.channelLease = path.getFileSystem().newChannelLease();
         try {
-            monitor = new SftpFileProgressMonitor();
-            writableByteChannel = Channels.newChannel(path.getChannelSftp().put(path.getStringPath(), monitor, ChannelSftp.OVERWRITE));
+            monitor = SftpFileProgressMonitor.of(path, SftpTransferEvent.WRITE, options);
+            String stringPath = path.getStringPath();
+            OutputStream outputStream = path.getFileSystem().execute(SftpCommand.OPEN, stringPath, channelLease, channelSftp -> channelSftp.put(stringPath, monitor, ChannelSftp.OVERWRITE));
+            writableByteChannel = Channels.newChannel(outputStream);
+            transferEvent = SftpTransferEvent.start(stringPath, SftpTransferEvent.WRITE);
+            monitor.start();
         } catch (SftpException e) {
+            channelLease.close();
             throw new RuntimeException(e);
         }
     }
@@ -32,13 +71,52 @@ public class SftpOverWriteByteChannel implements SeekableByteChannel {
         throw new NonReadableChannelException();
     }
 
+    /**
+     * The write is executed on the channel of the stream (on an I/O thread in the dispatch mode, See {@link SftpFileSystem#KEY_EXECUTION_MODE})
+     */
     public int write(ByteBuffer src) throws IOException {
-        return writableByteChannel.write(src);
+        if (monitor.isCancelled()) {
+            throw new InterruptedIOException("The write of (" + path + ") was cancelled");
+        }
+        if (!isSampled && src.remaining() >= SftpCompressionSampler.SAMPLE_SIZE_MIN) {
+            path.getFileSystem().sampleCompression(src);
+            isSampled = true;
+        }
+        int written = onChannel(SftpCommand.APPEND, () -> writableByteChannel.write(src));
+        bytesWritten += written;
+        path.getFileSystem().getMetrics().recordBytesWritten(written);
+        return written;
+    }
+
+    /**
+     * A write or a close of the stream
+     */
+    private interface StreamOperation<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * @param command {@link SftpCommand#APPEND} for a write (the caches are invalidated only by the open and the close)
+     *                or {@link SftpCommand#CLOSE}
+     */
+    private <T> T onChannel(SftpCommand command, StreamOperation<T> operation) throws IOException {
+        try {
+            return path.getFileSystem().execute(command, path.getStringPath(), channelLease, channelSftp -> {
+                try {
+                    return operation.execute();
+                } catch (IOException e) {
+                    throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The write of (" + path + ") has failed", e);
+                }
+            });
+        } catch (SftpException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to write the file (" + path + ")", e);
+        }
     }
 
     public long position() throws IOException {
-        // Need to get a monitor from the channelsftp.put method
-        // To implement it
         return monitor.getCount();
     }
 
@@ -58,7 +136,33 @@ public class SftpOverWriteByteChannel implements SeekableByteChannel {
         return writableByteChannel.isOpen();
     }
 
+    /**
+     * Set the attributes (times, permissions, owner, group) that are applied
+     * in one SETSTAT request when the channel is closed.
+     * This is how a copy or an upload preserves the attributes of the source.
+     *
+     * @param attributesUpdate
+     */
+    public void setAttributesOnClose(SftpFileAttributesUpdate attributesUpdate) {
+        this.attributesUpdate = attributesUpdate;
+    }
+
     public void close() throws IOException {
-        writableByteChannel.close();
+        if (!writableByteChannel.isOpen()) {
+            return;
+        }
+        try {
+            onChannel(SftpCommand.CLOSE, () -> {
+                writableByteChannel.close();
+                return null;
+            });
+        } finally {
+            channelLease.close();
+            monitor.close();
+            SftpTransferEvent.end(transferEvent, 0, bytesWritten, path.getFileSystem().getSessionId());
+        }
+        if (attributesUpdate != null) {
+            attributesUpdate.apply(path);
+        }
     }
 }
@@ -17,11 +17,13 @@
 package net.bytle.niofs.sftp;
 
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchEvent.Modifier;
@@ -38,7 +40,7 @@ import java.util.*;
  * (for the local directory).
  * They can be queried by lpwd() and pwd(), and changed by cd(dir) and lcd(dir).
  */
-class SftpPath implements Path {
+public class SftpPath implements Path {
 
 
     protected static final String ROOT_PREFIX = "/";
@@ -46,56 +48,63 @@ class SftpPath implements Path {
 
     private final SftpFileSystem sftpFileSystem;
     private final boolean isAbsolute;
-    private String stringPath;
 
-    private List<String> names;
-    private List<String> relativeDirectoryNames; // The relative directory in a names format, get it through the function {@link #getRelativeDirectoryNames}
+    // A path is a chain of names that shares its parents.
+    // The children of a directory (in a walk, in a listing) hold then only their own name.
+    private final SftpPath parent; // null for the root and for the first name of a relative path
+    private final String name; // the last name (interned), empty for the root and the empty path
+    private final int nameCount;
+
+    // The directory of a relative path, null means the working directory (See {@link #toAbsolutePath()})
+    // It may be itself relative (ie the parent of a relative path)
+    private final SftpPath relativeDirectory;
+
+    // The attributes read with the listing of the parent, See {@link #getListingAttributes()}
+    private SftpATTRS listingAttributes;
+
+    // Lazy cached forms
+    private String stringPath;
+    private SftpPath absolutePath;
+    private int hash;
 
 
     /**
      * Create a path
      *
-     * @param sftpFileSystem:         The File Syste,
-     * @param stringPath:             A string path
-     * @param relativeDirectoryNames; The relative directory to stringPath if any (Intern parameters)
+     * @param sftpFileSystem:    The File System
+     * @param parent:            The parent path (null for the root and the first name of a relative path)
+     * @param name:              The last name
+     * @param isAbsolute:        If the path is absolute
+     * @param relativeDirectory: The relative directory of a relative path if any (Intern parameters)
      */
-    private SftpPath(FileSystem sftpFileSystem, String stringPath, List<String> relativeDirectoryNames) {
-
-        this.sftpFileSystem = (SftpFileSystem) sftpFileSystem;
-        this.stringPath = stringPath;
-        this.relativeDirectoryNames = relativeDirectoryNames;
-
-        if (relativeDirectoryNames == null) {
-            if (this.stringPath.startsWith(ROOT_PREFIX)) {
-                isAbsolute = true;
-            } else {
-                isAbsolute = false;
-                // This means that the path is relative to the working directory.
-                // The working directory is not get here because we don't want to make a sftp connection if it's not needed
-                // We have then a wrapper function. See {@link #getRelativeDirectoryNames}
-            }
+    private SftpPath(SftpFileSystem sftpFileSystem, SftpPath parent, String name, boolean isAbsolute, SftpPath relativeDirectory) {
+
+        this.sftpFileSystem = sftpFileSystem;
+        this.parent = parent;
+        this.name = name;
+        this.isAbsolute = isAbsolute;
+        this.relativeDirectory = relativeDirectory;
+
+        if (parent != null) {
+            this.nameCount = parent.nameCount + 1;
+        } else if (isAbsolute) {
+            this.nameCount = 0; // The root
         } else {
-            isAbsolute = false;
-        }
-
-        // Parse the stringPath parameters to a Arrays List of names
-        if (stringPath != null) {
-
-            String stringPathToParse = stringPath;
-            if (isAbsolute) {
-                stringPathToParse = stringPath.substring(1, stringPath.length());
-            }
-            this.names = new ArrayList(
-                    Arrays.asList(stringPathToParse.split(PATH_SEPARATOR))
-            );
-
+            this.nameCount = 1; // The first name of a relative path (or the empty path)
         }
 
+    }
 
+    /**
+     * @param sftpFileSystem
+     * @return the root path of a file system (See {@link SftpFileSystem#getRootPath()})
+     */
+    static SftpPath root(SftpFileSystem sftpFileSystem) {
+        return new SftpPath(sftpFileSystem, null, "", true, null);
     }
 
 
-    public FileSystem getFileSystem() {
+    public SftpFileSystem getFileSystem() {
         return this.sftpFileSystem;
     }
 
@@ -107,9 +116,7 @@ class SftpPath implements Path {
 
     public Path getRoot() {
         if (isAbsolute) {
-            return new SftpPath(sftpFileSystem,
-                    ROOT_PREFIX,
-                    null);
+            return sftpFileSystem.getRootPath();
         } else {
             return null;
         }
@@ -123,157 +130,332 @@ class SftpPath implements Path {
      */
     public Path getFileName() {
 
-        List relativeDirectoryNames = new ArrayList<>();
-        if (!isAbsolute) {
-            relativeDirectoryNames.addAll(this.getRelativeDirectoryNames());
+        if (nameCount == 0) {
+            return null; // The root
         }
-        relativeDirectoryNames.addAll(this.names.subList(0, this.names.size() - 1));
-
-        String stringPathName = this.names.get(this.names.size() - 1);
-        return new SftpPath(this.sftpFileSystem, stringPathName, relativeDirectoryNames);
+        if (parent == null) {
+            return this; // Already a single name
+        }
+        return new SftpPath(sftpFileSystem, null, name, false, parent);
 
     }
 
     public Path getParent() {
 
-        if (isAbsolute) {
-
-            if (this.names.size() == 0) {
-                return null; // There is no parent, this is the root
-            } else {
-                return new SftpPath(sftpFileSystem,
-                        ROOT_PREFIX + String.join(PATH_SEPARATOR, this.names.subList(0, this.names.size() - 1)),
-                        null);
-            }
-
-        } else {
-
-            return new SftpPath(sftpFileSystem,
-                    String.join(PATH_SEPARATOR, this.names.subList(0, this.names.size() - 1)),
-                    this.getRelativeDirectoryNames());
-
-        }
-
+        // null for the root and for a single name
+        return parent;
 
     }
 
     public int getNameCount() {
-        return this.names.size();
+        return this.nameCount;
     }
 
     public Path getName(int index) {
 
-        List<String> relativeDirectoryNames = new ArrayList<>();
-        if (!isAbsolute) {
-
-            relativeDirectoryNames = this.getRelativeDirectoryNames();
-
+        if (index < 0 || index >= nameCount) {
+            throw new IllegalArgumentException("The index (" + index + ") is out of the bounds [0," + nameCount + "[");
         }
-        if (index > 1) {
-            relativeDirectoryNames.addAll(this.names.subList(0, index - 1));
+        SftpPath namePath = ancestor(index + 1);
+        if (namePath.parent == null) {
+            return namePath;
         }
-
-        return new SftpPath(sftpFileSystem,
-                this.names.get(index),
-                relativeDirectoryNames);
+        return new SftpPath(sftpFileSystem, null, namePath.name, false, namePath.parent);
 
     }
 
     public Path subpath(int beginIndex, int endIndex) {
 
-        List<String> relativeDirectoryNames = new ArrayList<>();
-        if (!isAbsolute) {
-
-            relativeDirectoryNames = this.getRelativeDirectoryNames();
-
+        if (beginIndex < 0 || beginIndex >= nameCount || endIndex > nameCount || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("The indexes [" + beginIndex + "," + endIndex + "[ are out of the bounds [0," + nameCount + "[");
         }
-        if (beginIndex > 0) {
-            relativeDirectoryNames.addAll(this.names.subList(0, beginIndex));
+        SftpPath endPath = ancestor(endIndex);
+        if (!isAbsolute && beginIndex == 0) {
+            return endPath; // shared
         }
 
-        return
-                new SftpPath(sftpFileSystem,
-                        String.join(PATH_SEPARATOR, this.names.subList(beginIndex, endIndex)),
-                        this.relativeDirectoryNames);
+        SftpPath directory = ancestor(beginIndex);
+        String[] names = endPath.names();
+        SftpPath subpath = null;
+        for (int i = beginIndex; i < endIndex; i++) {
+            subpath = new SftpPath(sftpFileSystem, subpath, names[i], false, directory);
+        }
+        return subpath;
 
     }
 
     public boolean startsWith(Path other) {
-        throw new UnsupportedOperationException();
+
+        SftpPath otherPath = toSftpPathOrNull(other);
+        if (otherPath == null || otherPath.isAbsolute != isAbsolute || otherPath.nameCount > nameCount) {
+            return false;
+        }
+        return ancestor(otherPath.nameCount).equals(otherPath);
+
     }
 
     public boolean startsWith(String other) {
-        throw new UnsupportedOperationException();
+        return startsWith(parse(sftpFileSystem, other));
     }
 
     public boolean endsWith(Path other) {
-        throw new UnsupportedOperationException();
+
+        SftpPath otherPath = toSftpPathOrNull(other);
+        if (otherPath == null || otherPath.nameCount > nameCount) {
+            return false;
+        }
+        if (otherPath.isAbsolute) {
+            return equals(otherPath);
+        }
+        SftpPath path = this;
+        while (otherPath != null) {
+            if (!path.name.equals(otherPath.name)) {
+                return false;
+            }
+            path = path.parent;
+            otherPath = otherPath.parent;
+        }
+        return true;
+
     }
 
     public boolean endsWith(String other) {
-        throw new UnsupportedOperationException();
+        return endsWith(parse(sftpFileSystem, other));
     }
 
+    /**
+     * Remove the redundant names ("." and "directory/..")
+     *
+     * @return this path if there is nothing to remove (the common case)
+     */
     public Path normalize() {
-        throw new UnsupportedOperationException();
+
+        boolean isNormalized = true;
+        for (SftpPath path = this; path != null && isNormalized; path = path.parent) {
+            isNormalized = !(path.name.equals(".") || path.name.equals(".."));
+        }
+        if (isNormalized) {
+            return this;
+        }
+
+        String[] names = names();
+        int count = 0;
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (count > 0 && !names[count - 1].equals("..")) {
+                    count--;
+                    continue;
+                }
+                if (isAbsolute) {
+                    continue; // The parent of the root is the root
+                }
+            }
+            names[count++] = name;
+        }
+
+        SftpPath normalizedPath = isAbsolute ? sftpFileSystem.getRootPath() : emptyPath(sftpFileSystem, relativeDirectory);
+        for (int i = 0; i < count; i++) {
+            normalizedPath = normalizedPath.resolveChild(names[i]);
+        }
+        return normalizedPath;
+
     }
 
+    /**
+     * The other path is added to this path that is shared as parent
+     *
+     * @param other
+     * @return the resolved path
+     */
     public Path resolve(Path other) {
-        throw new UnsupportedOperationException();
+
+        SftpPath otherPath = SftpFileSystemProvider.toSftpPath(other);
+        if (otherPath.isAbsolute) {
+            return otherPath;
+        }
+        if (otherPath.isEmpty()) {
+            return this;
+        }
+        SftpPath resolvedPath = this;
+        for (String name : otherPath.names()) {
+            resolvedPath = resolvedPath.resolveChild(name);
+        }
+        return resolvedPath;
+
     }
 
     public Path resolve(String other) {
-        throw new UnsupportedOperationException();
+        return resolve(parse(sftpFileSystem, other));
     }
 
     public Path resolveSibling(Path other) {
-        throw new UnsupportedOperationException();
+        if (other == null) {
+            throw new NullPointerException();
+        }
+        return parent == null ? other : parent.resolve(other);
     }
 
     public Path resolveSibling(String other) {
-        throw new UnsupportedOperationException();
+        return resolveSibling(parse(sftpFileSystem, other));
     }
 
+    /**
+     * The relative path is relative to this path
+     * (ie its absolute path is the absolute path of the other path)
+     *
+     * @param other
+     * @return a relative path
+     */
     public Path relativize(Path other) {
-        throw new UnsupportedOperationException();
+
+        SftpPath otherPath = SftpFileSystemProvider.toSftpPath(other);
+        if (otherPath.isAbsolute != isAbsolute) {
+            throw new IllegalArgumentException("The paths (" + this + ", " + other + ") must be both absolute or both relative");
+        }
+        if (isEmpty()) {
+            return otherPath;
+        }
+
+        String[] names = names();
+        String[] otherNames = otherPath.names();
+        int common = 0;
+        while (common < names.length && common < otherNames.length && names[common].equals(otherNames[common])) {
+            common++;
+        }
+
+        SftpPath relativePath = emptyPath(sftpFileSystem, this);
+        for (int i = common; i < names.length; i++) {
+            relativePath = relativePath.resolveChild("..");
+        }
+        for (int i = common; i < otherNames.length; i++) {
+            relativePath = relativePath.resolveChild(otherNames[i]);
+        }
+        return relativePath;
+
     }
 
+    /**
+     * The URI doesn't contain the password
+     * A relative path needs the working directory
+     *
+     * @return the URI of the absolute path
+     */
     public URI toUri() {
-        throw new UnsupportedOperationException();
+
+        URI fileSystemUri = sftpFileSystem.getUri();
+        String user = fileSystemUri.getUserInfo();
+        if (user != null && user.indexOf(':') != -1) {
+            user = user.substring(0, user.indexOf(':'));
+        }
+        try {
+            return new URI(SftpFileSystemProvider.SFTP_SCHEME, user, fileSystemUri.getHost(), fileSystemUri.getPort(), getStringPath(), null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+
     }
 
-    public Path toAbsolutePath() {
+    /**
+     * The absolute path is computed once
+     * A relative path is resolved against its relative directory or the working directory
+     *
+     * @return the absolute path
+     */
+    public SftpPath toAbsolutePath() {
+
         if (this.isAbsolute()) {
             return this;
-        } else {
+        }
+
+        if (absolutePath == null) {
+
+            SftpPath directory;
+            if (relativeDirectory == null) {
+                directory = sftpFileSystem.getWorkingDirectoryPath();
+            } else {
+                directory = relativeDirectory.toAbsolutePath();
+            }
 
-            String relativePath = ROOT_PREFIX + String.join(PATH_SEPARATOR, this.getRelativeDirectoryNames());
-            if (!this.stringPath.equals("")) {
-                return get(sftpFileSystem, relativePath + sftpFileSystem.getSeparator() + this.stringPath);
+            if (parent == null) {
+                absolutePath = name.isEmpty() ? directory : directory.resolveChild(name);
             } else {
-                return get(sftpFileSystem, relativePath);
+                absolutePath = parent.toAbsolutePath().resolveChild(name);
             }
 
         }
+        return absolutePath;
 
     }
 
 
+    /**
+     * The server resolves the path (realpath): the links are followed.
+     * With {@link LinkOption#NOFOLLOW_LINKS}, the path is checked (lstat), only its parent is resolved
+     * and its name is appended: a link is not followed in the last name
+     * (a .. after a link is resolved by the server against the target of the link, never removed as a string).
+     */
     public Path toRealPath(LinkOption... options) throws IOException {
-        throw new UnsupportedOperationException();
+
+        if (Arrays.asList(options).contains(LinkOption.NOFOLLOW_LINKS)) {
+            getFileAttributes(options);
+            SftpPath absolutePath = toAbsolutePath();
+            SftpPath parent = (SftpPath) absolutePath.getParent();
+            Path name = absolutePath.getFileName();
+            if (parent == null || name == null || name.toString().equals(".") || name.toString().equals("..")) {
+                // The root or a directory (never a link)
+                return absolutePath.realPath();
+            }
+            return parent.realPath().resolve(name.toString());
+        }
+        return realPath();
+
+    }
+
+    /**
+     * @return the path resolved by the server (realpath), the links are followed
+     */
+    private Path realPath() throws IOException {
+
+        String stringPath = getStringPath();
+        try {
+            String realPath = sftpFileSystem.execute(SftpCommand.REALPATH, stringPath, channelSftp -> {
+                // The realpath of OpenSSH doesn't fail on a missing path
+                channelSftp.stat(stringPath);
+                return channelSftp.realpath(stringPath);
+            });
+            return sftpFileSystem.getPath(realPath);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to get the real path of (" + stringPath + ")", e);
+        }
+
     }
 
     public File toFile() {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * The modifiers are ignored, the interval of the polls is set on the file system (See {@link SftpFileSystem#KEY_WATCH_INTERVAL_MIN})
+     */
     public WatchKey register(WatchService watcher, Kind<?>[] events, Modifier... modifiers) throws IOException {
-        throw new UnsupportedOperationException();
+        return register(watcher, events);
     }
 
+    /**
+     * Register the directory with a watch service of the file system (See {@link SftpWatchService})
+     */
     public WatchKey register(WatchService watcher, Kind<?>... events) throws IOException {
 
-        throw new UnsupportedOperationException();
+        if (!(watcher instanceof SftpWatchService)) {
+            throw new ProviderMismatchException("The watch service is not a sftp watch service");
+        }
+        return ((SftpWatchService) watcher).register(this, events);
 
     }
 
@@ -307,30 +489,107 @@ class SftpPath implements Path {
 
     }
 
+    /**
+     * The order is the lexicographic order of the string forms (that are cached)
+     *
+     * @param other
+     * @return
+     */
     public int compareTo(Path other) {
-        throw new UnsupportedOperationException();
+        return toString().compareTo(SftpFileSystemProvider.toSftpPath(other).toString());
     }
 
-    protected SftpPosixFileAttributes getFileAttributes() throws IOException {
-        return new SftpPosixFileAttributes(this);
+    /**
+     * Two paths are equal if they have the same names in the same file system
+     * (The relative directory of a relative path is not taken into account as with the string form)
+     *
+     * @param object
+     * @return
+     */
+    @Override
+    public boolean equals(Object object) {
+
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof SftpPath)) {
+            return false;
+        }
+        SftpPath path = this;
+        SftpPath otherPath = (SftpPath) object;
+        if (otherPath.sftpFileSystem != sftpFileSystem || otherPath.isAbsolute != isAbsolute || otherPath.nameCount != nameCount) {
+            return false;
+        }
+        if (hash != 0 && otherPath.hash != 0 && hash != otherPath.hash) {
+            return false;
+        }
+        while (path != otherPath) {
+            if (path == null || otherPath == null || !path.name.equals(otherPath.name)) {
+                return false;
+            }
+            path = path.parent;
+            otherPath = otherPath.parent;
+        }
+        return true;
+
     }
 
     /**
-     * @return the string
+     * The hash is computed once from the hash of the parent
+     *
+     * @return
      */
-    public String toString() {
+    @Override
+    public int hashCode() {
 
-        return this.stringPath;
+        int h = hash;
+        if (h == 0) {
+            if (parent != null) {
+                h = 31 * parent.hashCode() + name.hashCode();
+            } else {
+                h = isAbsolute ? 1 : name.hashCode();
+            }
+            hash = h;
+        }
+        return h;
 
     }
 
+    protected SftpPosixFileAttributes getFileAttributes() throws IOException {
+        return new SftpPosixFileAttributes(this);
+    }
+
+    /**
+     * @param options {@link LinkOption#NOFOLLOW_LINKS} to read the attributes of a link (lstat)
+     */
+    protected SftpPosixFileAttributes getFileAttributes(LinkOption... options) throws IOException {
+        return new SftpPosixFileAttributes(this, !Arrays.asList(options).contains(LinkOption.NOFOLLOW_LINKS));
+    }
+
     /**
-     * A shortcut to get the ChannelSftp saved in the file systen object
+     * The string is build once from the string of the parent
+     * (that is then shared between the siblings)
      *
-     * @return ChannelSftp
+     * @return the string
      */
-    protected ChannelSftp getChannelSftp() {
-        return this.sftpFileSystem.getChannelSftp();
+    public String toString() {
+
+        if (stringPath == null) {
+            if (parent == null) {
+                stringPath = isAbsolute ? ROOT_PREFIX : name;
+            } else if (parent.nameCount == 0) {
+                stringPath = ROOT_PREFIX + name;
+            } else {
+                String parentString = parent.toString();
+                stringPath = new StringBuilder(parentString.length() + 1 + name.length())
+                        .append(parentString)
+                        .append(PATH_SEPARATOR)
+                        .append(name)
+                        .toString();
+            }
+        }
+        return this.stringPath;
+
     }
 
     /**
@@ -340,39 +599,178 @@ class SftpPath implements Path {
      */
     protected String getStringPath() {
 
-        if (isAbsolute) {
+        return toAbsolutePath().toString();
 
-            return stringPath;
+    }
 
-        } else {
+    /**
+     * Implementation of the createDirectory function of the FileSystemProvider
+     * <p/>
+     * The missing directories are created with absolute paths (the current directory of the channel is never changed).
+     * The levels are checked from the deepest upward as the parents of an upload exist most of the time.
+     * The known directories are remembered in the file system to skip the checks the next time.
+     * JSch waits for each response, the requests can then not be pipelined.
+     *
+     * @throws IOException
+     */
+    protected void createDirectory() throws IOException {
+
+        SftpPath directory = (SftpPath) toAbsolutePath().normalize();
+        try {
+            createDirectories(directory);
+        } catch (NoSuchFileException e) {
+            // A known directory was deleted by someone else, we start again without the known directories
+            sftpFileSystem.removeKnownDirectories(sftpFileSystem.getRootPath());
+            createDirectories(directory);
+        }
+
+    }
+
+    private void createDirectories(SftpPath directory) throws IOException {
 
-            String relativePath = ROOT_PREFIX + String.join(PATH_SEPARATOR, this.getRelativeDirectoryNames());
-            if (!this.stringPath.equals("")) {
-                relativePath += sftpFileSystem.getSeparator() + this.stringPath;
+        if (sftpFileSystem.isKnownDirectory(directory)) {
+            return;
+        }
+
+        // From the deepest level upward
+        List<SftpPath> missingDirectories = new ArrayList<>();
+        SftpPath existingDirectory = directory;
+        while (existingDirectory.nameCount > 0 && !sftpFileSystem.isKnownDirectory(existingDirectory)) {
+            try {
+                String stringPath = existingDirectory.toString();
+                SftpATTRS attrs = sftpFileSystem.execute(SftpCommand.STAT, stringPath, channelSftp -> channelSftp.stat(stringPath));
+                if (!attrs.isDir()) {
+                    if (existingDirectory == directory) {
+                        throw new FileAlreadyExistsException(directory.toString());
+                    }
+                    throw new NotDirectoryException(existingDirectory.toString());
+                }
+                break;
+            } catch (SftpException e) {
+                if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    throw new IOException("Unable to get the attributes of (" + existingDirectory + ")", e);
+                }
+                missingDirectories.add(existingDirectory);
+                existingDirectory = existingDirectory.parent;
             }
-            return relativePath;
+        }
+        sftpFileSystem.addKnownDirectory(existingDirectory);
+
+        // Downward with absolute paths
+        for (int i = missingDirectories.size() - 1; i >= 0; i--) {
+            SftpPath missingDirectory = missingDirectories.get(i);
+            String stringPath = missingDirectory.toString();
+            try {
+                sftpFileSystem.execute(SftpCommand.MKDIR, stringPath, channelSftp -> {
+                    channelSftp.mkdir(stringPath);
+                    return null;
+                });
+            } catch (SftpException e) {
+                if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    throw new NoSuchFileException(stringPath);
+                }
+                // Created in the meantime (or by the first try of a retry) ?
+                try {
+                    if (!sftpFileSystem.execute(SftpCommand.STAT, stringPath, channelSftp -> channelSftp.stat(stringPath)).isDir()) {
+                        throw new NotDirectoryException(stringPath);
+                    }
+                } catch (SftpException statException) {
+                    throw new IOException("Unable to create the directory (" + missingDirectory + ")", e);
+                }
+            }
+            sftpFileSystem.addKnownDirectory(missingDirectory);
+        }
+
+    }
 
+    /**
+     * A child path that shares this path as parent.
+     * Used to create the path of the entries of a directory listing without any parsing.
+     *
+     * @param name a single name (not interned as the names of a listing are mostly unique)
+     * @return the child path
+     */
+    SftpPath resolveChild(String name) {
+        if (isEmpty()) {
+            // The empty path has no name to share
+            return new SftpPath(sftpFileSystem, null, name, false, relativeDirectory);
         }
+        return new SftpPath(sftpFileSystem, this, name, isAbsolute, relativeDirectory);
+    }
 
+    /**
+     * A child of a directory listing with the attributes of the listing entry
+     *
+     * @param name  a single name
+     * @param attrs the attributes of the listing entry
+     * @return the child path
+     */
+    SftpPath resolveChild(String name, SftpATTRS attrs) {
+        SftpPath child = resolveChild(name);
+        child.listingAttributes = attrs;
+        return child;
     }
 
     /**
-     * Implementation of the createDirectory function of the FileSystemProvider
+     * The attributes are read with the listing without any request.
+     * They are not updated: to get the current attributes, read them with {@link java.nio.file.Files#readAttributes(Path, Class, LinkOption...)}
      *
-     * @throws SftpException
+     * @return the attributes read with the listing of the parent directory or null if the path doesn't come from a listing
      */
-    protected void createDirectory() throws SftpException {
+    public SftpPosixFileAttributes getListingAttributes() {
+        return listingAttributes == null ? null : new SftpPosixFileAttributes(listingAttributes);
+    }
 
-        for (String folder : this.names) {
-            if (folder.length() > 0) {
-                try {
-                    this.getChannelSftp().cd(folder);
-                } catch (SftpException e) {
-                    this.getChannelSftp().mkdir(folder);
-                    this.getChannelSftp().cd(folder);
-                }
-            }
+    /**
+     * @return true for the empty path
+     */
+    private boolean isEmpty() {
+        return !isAbsolute && parent == null && name.isEmpty();
+    }
+
+    /**
+     * @param sftpFileSystem
+     * @param relativeDirectory
+     * @return an empty path relative to a directory
+     */
+    private static SftpPath emptyPath(SftpFileSystem sftpFileSystem, SftpPath relativeDirectory) {
+        return new SftpPath(sftpFileSystem, null, "", false, relativeDirectory);
+    }
+
+    /**
+     * @param other
+     * @return the sftp path or null if this is not a path of this provider
+     */
+    private static SftpPath toSftpPathOrNull(Path other) {
+        if (other == null) {
+            throw new NullPointerException();
+        }
+        return other instanceof SftpPath ? (SftpPath) other : null;
+    }
+
+    /**
+     * @param depth the number of names
+     * @return the ancestor (or this path) with the given number of names (0 is the root for an absolute path)
+     */
+    private SftpPath ancestor(int depth) {
+        SftpPath ancestor = this;
+        while (ancestor.nameCount > depth) {
+            ancestor = ancestor.parent;
+        }
+        return ancestor;
+    }
+
+    /**
+     * @return the names in an array
+     */
+    private String[] names() {
+        String[] names = new String[nameCount];
+        SftpPath path = this;
+        for (int i = nameCount - 1; i >= 0; i--) {
+            names[i] = path.name;
+            path = path.parent;
         }
+        return names;
     }
 
     public static Path get(FileSystem fileSystem, String first, String[] more) {
@@ -392,7 +790,7 @@ class SftpPath implements Path {
             }
             path = sb.toString();
         }
-        return new SftpPath(fileSystem, path, null);
+        return parse((SftpFileSystem) fileSystem, path);
     }
 
     /**
@@ -408,30 +806,45 @@ class SftpPath implements Path {
     }
 
     /**
-     * An helper function to populate the relativeDirectoryNames variable
-     * when the path is relative to the working directory (ie when relativeDirectoryNames == null)
-     * This prevent to make an SFTP connection when manipulating absolute path
+     * Parse a string path in a chain of names
+     * The redundant separators are removed and the names are interned
+     * as the same directory names come back in a lot of paths.
      *
-     * @return the relative directory in a list of names form
+     * @param sftpFileSystem
+     * @param stringPath
+     * @return the path
      */
-    private List<String> getRelativeDirectoryNames() {
-
-        // The path is relative but we don't have the relative directory
-        // This means that the path is relative to the working directory
-        if (!isAbsolute && relativeDirectoryNames == null) {
-
-            String workingDirectory = ((SftpFileSystem) getFileSystem()).getWorkingDirectory();
-            List<String> strings = Arrays.asList(workingDirectory.split(PATH_SEPARATOR));
-            // The subList function suppress the root so that
-            // we don't have any empty value
-            this.relativeDirectoryNames = new ArrayList(strings.subList(1,strings.size()));
-            return this.relativeDirectoryNames;
-
-        } else {
-
-            return this.relativeDirectoryNames;
+    private static SftpPath parse(SftpFileSystem sftpFileSystem, String stringPath) {
+
+        boolean isAbsolute = stringPath.startsWith(ROOT_PREFIX);
+        SftpPath path = isAbsolute ? sftpFileSystem.getRootPath() : null;
+        boolean isNormalized = true;
+
+        int length = stringPath.length();
+        int start = isAbsolute ? 1 : 0;
+        while (start <= length) {
+            int end = stringPath.indexOf(PATH_SEPARATOR, start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                String name = stringPath.substring(start, end).intern();
+                path = new SftpPath(sftpFileSystem, path, name, isAbsolute, null);
+            } else if (end < length || start > (isAbsolute ? 1 : 0)) {
+                // A redundant or a trailing separator
+                isNormalized = false;
+            }
+            start = end + 1;
+        }
 
+        if (path == null) {
+            path = emptyPath(sftpFileSystem, null);
+        }
+        if (isNormalized) {
+            path.stringPath = stringPath;
         }
+        return path;
 
     }
-}
\ No newline at end of file
+
+}
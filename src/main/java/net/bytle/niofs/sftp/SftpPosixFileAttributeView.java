@@ -1,11 +1,8 @@
 package net.bytle.niofs.sftp;
 
-import com.jcraft.jsch.SftpException;
-
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.attribute.*;
-import java.util.HashMap;
 import java.util.Set;
 
 /**
@@ -13,6 +10,9 @@ import java.util.Set;
  * Manage the permissions
  *
  * For the dates, see {@link SftpBasicFileAttributes}
+ *
+ * Each setter sends only one SETSTAT request. To update several attributes
+ * in one round trip, see {@link SftpFileAttributesUpdate}
  */
 public class SftpPosixFileAttributeView implements PosixFileAttributeView {
 
@@ -28,25 +28,37 @@ public class SftpPosixFileAttributeView implements PosixFileAttributeView {
 
     public UserPrincipal getOwner() throws IOException {
 
-        throw new UnsupportedOperationException();
+        return readAttributes().owner();
 
     }
 
+    /**
+     * Set the owner
+     * @param owner a {@link SftpUserPrincipal} (ie an uid)
+     * @throws IOException
+     */
     public void setOwner(UserPrincipal owner) throws IOException {
 
-        throw new UnsupportedOperationException();
+        new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .owner(owner)
+                .build()
+                .apply(path);
 
     }
 
     public PosixFileAttributes readAttributes() throws IOException {
 
-        throw new UnsupportedOperationException();
+        return path.getFileAttributes();
 
     }
 
+    /*
+     * Create Time can not be set with Sftp
+     * See {@link SftpFileBasicAttributeView#setTimes(FileTime, FileTime, FileTime)}
+     */
     public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
 
-        throw new UnsupportedOperationException();
+        new SftpFileBasicAttributeView(path).setTimes(lastModifiedTime, lastAccessTime, createTime);
 
     }
 
@@ -57,75 +69,44 @@ public class SftpPosixFileAttributeView implements PosixFileAttributeView {
      */
     public void setPermissions(Set<PosixFilePermission> perms) throws IOException {
 
-        // Create the textual representation of the permission
-        // for owner, group and other
-        char[] ownerPerm = "---".toCharArray();
-        char[] groupPerm = "---".toCharArray();
-        char[] otherPerm = "---".toCharArray();
-        for (PosixFilePermission posixFilePermission: perms) {
-
-            switch(posixFilePermission) {
-                case OWNER_READ:
-                    ownerPerm[0]="r".toCharArray()[0];
-                    break;
-                case OWNER_WRITE:
-                    ownerPerm[1]="w".toCharArray()[0];
-                    break;
-                case OWNER_EXECUTE:
-                    ownerPerm[2]="x".toCharArray()[0];
-                    break;
-                case GROUP_READ:
-                    groupPerm[0]="r".toCharArray()[0];
-                    break;
-                case GROUP_WRITE:
-                    groupPerm[1]="w".toCharArray()[0];
-                    break;
-                case GROUP_EXECUTE:
-                    groupPerm[2]="x".toCharArray()[0];
-                    break;
-                case OTHERS_READ:
-                    otherPerm[0]="r".toCharArray()[0];
-                    break;
-                case OTHERS_WRITE:
-                    otherPerm[1]="w".toCharArray()[0];
-                    break;
-                case OTHERS_EXECUTE:
-                    otherPerm[2]="x".toCharArray()[0];
-                    break;
-            }
-        }
-
-        // Create a mapping between textual and digital representations
-        HashMap<String, Integer> textToDigitMap = new HashMap<>();
-        textToDigitMap.put("---",0);
-        textToDigitMap.put("--x",1);
-        textToDigitMap.put("-w-",2);
-        textToDigitMap.put("-wx",3);
-        textToDigitMap.put("r--",4);
-        textToDigitMap.put("r-x",5);
-        textToDigitMap.put("rw-",6);
-        textToDigitMap.put("rwx",7);
-
-        // Calculate the digital representations
-        // because this is the only one that accepts Jsch
-        int permissions = 0; // All access are denied
-        permissions += textToDigitMap.get(String.valueOf(ownerPerm))*100;
-        permissions += textToDigitMap.get(String.valueOf(groupPerm))*10;
-        permissions += textToDigitMap.get(String.valueOf(otherPerm))*1;
-        int permissionOctal = Integer.parseInt(String.valueOf(permissions),8); // Data must be in octal !
-        // Set the permission
-        try {
-            this.path.getChannelSftp().chmod(permissionOctal,this.path.getStringPath());
-        } catch (SftpException e) {
-            throw new RuntimeException(e);
-        }
-
+        // A chmod makes a stat and a setstat, we send only the setstat
+        new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .permissions(perms)
+                .build()
+                .apply(path);
 
     }
 
+    /**
+     * Set the group
+     * @param group a {@link SftpGroupPrincipal} (ie a gid)
+     * @throws IOException
+     */
     public void setGroup(GroupPrincipal group) throws IOException {
 
-        throw new UnsupportedOperationException();
+        new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .group(group)
+                .build()
+                .apply(path);
+
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setAttribute(String attr, Object value) throws IOException {
+
+        switch (attr) {
+            case "permissions":
+                setPermissions((Set<PosixFilePermission>) value);
+                break;
+            case "owner":
+                setOwner((UserPrincipal) value);
+                break;
+            case "group":
+                setGroup((GroupPrincipal) value);
+                break;
+            default:
+                new SftpFileBasicAttributeView(path).setAttribute(attr, value);
+        }
 
     }
 
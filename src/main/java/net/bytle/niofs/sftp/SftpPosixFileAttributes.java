@@ -1,5 +1,7 @@
 package net.bytle.niofs.sftp;
 
+import com.jcraft.jsch.SftpATTRS;
+
 import java.io.IOException;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.PosixFileAttributes;
@@ -16,12 +18,20 @@ public class SftpPosixFileAttributes extends SftpBasicFileAttributes implements
         super(path);
     }
 
+    protected SftpPosixFileAttributes(SftpPath path, boolean followLinks) throws IOException {
+        super(path, followLinks);
+    }
+
+    protected SftpPosixFileAttributes(SftpATTRS attrs) {
+        super(attrs);
+    }
+
     public UserPrincipal owner() {
         return new SftpUserPrincipal(this.attrs.getUId());
     }
 
     public GroupPrincipal group() {
-        return new SftpGroupPrincipal(this.attrs.getUId());
+        return new SftpGroupPrincipal(this.attrs.getGId());
     }
 
     public Set<PosixFilePermission> permissions() {
@@ -54,4 +64,20 @@ public class SftpPosixFileAttributes extends SftpBasicFileAttributes implements
 
     }
 
+    /**
+     * The numeric (octal) representation of a set of permissions
+     * as expected by the SFTP protocol (ie 0750)
+     *
+     * @param permissions
+     * @return the permissions bits
+     */
+    static int toMode(Set<PosixFilePermission> permissions) {
+        int mode = 0;
+        for (PosixFilePermission permission : permissions) {
+            // The enum is ordered from OWNER_READ (0400) to OTHERS_EXECUTE (0001)
+            mode |= 1 << (8 - permission.ordinal());
+        }
+        return mode;
+    }
+
 }
@@ -19,6 +19,13 @@ public class SftpPrincipal implements Principal {
         return String.valueOf(uId);
     }
 
+    /**
+     * @return the numeric id (uid or gid)
+     */
+    protected int getId() {
+        return uId;
+    }
+
     public boolean implies(Subject subject) {
         if (subject !=null) {
             Set<Principal> principals = subject.getPrincipals();
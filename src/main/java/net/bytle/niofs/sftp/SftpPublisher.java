@@ -0,0 +1,135 @@
+package net.bytle.niofs.sftp;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A publisher that produces its items on an executor, only when they are requested
+ * <p/>
+ * Each subscription has its own producer. The producer waits for the demand of the subscriber
+ * before it sends a request to the server: a slow subscriber slows down the requests
+ * and the items are never buffered.
+ *
+ * @param <T> the type of the items
+ */
+abstract class SftpPublisher<T> implements Flow.Publisher<T> {
+
+    private final Executor executor;
+
+    SftpPublisher(Executor executor) {
+        this.executor = executor != null ? executor : SftpFileSystemProvider.getIoExecutor();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "The subscriber must not be null");
+        SftpSubscription subscription = new SftpSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        executor.execute(subscription::run);
+    }
+
+    /**
+     * Produce the items with {@link SftpSubscription#next(Object)}
+     *
+     * @param subscription the subscription
+     * @throws Exception an error is send to the subscriber
+     */
+    protected abstract void publish(SftpSubscription subscription) throws Exception;
+
+    class SftpSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = lock.newCondition();
+        private long demand = 0;
+        private volatile boolean cancelled = false;
+        private Throwable requestError;
+
+        private SftpSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    requestError = new IllegalArgumentException("The number of requested items (" + n + ") must be positive");
+                } else {
+                    // Capped at Long.MAX_VALUE (unbounded)
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                demanded.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                demanded.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait until the subscriber requests an item
+         *
+         * @return false if the subscription was cancelled (the producer must stop)
+         */
+        boolean awaitDemand() throws InterruptedException {
+            lock.lock();
+            try {
+                while (demand == 0 && !cancelled && requestError == null) {
+                    demanded.await();
+                }
+                return !cancelled && requestError == null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Send an item (after {@link #awaitDemand()})
+         */
+        void next(T item) {
+            lock.lock();
+            try {
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            } finally {
+                lock.unlock();
+            }
+            subscriber.onNext(item);
+        }
+
+        private void run() {
+            try {
+                publish(this);
+                if (requestError != null) {
+                    subscriber.onError(requestError);
+                } else if (!cancelled) {
+                    subscriber.onComplete();
+                }
+            } catch (Throwable e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!cancelled) {
+                    subscriber.onError(requestError != null ? requestError : e);
+                }
+            }
+        }
+
+    }
+
+}
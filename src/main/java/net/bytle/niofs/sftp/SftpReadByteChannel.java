@@ -0,0 +1,284 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A channel to read a file
+ * <p/>
+ * The file is read from the current position. When the connection is lost,
+ * the read is an idempotent {@link SftpCommand#READ read at an offset}: the file is then opened again
+ * on the new connection at the current position and the read is done again.
+ * <p/>
+ * On a read only file system, the file is read by block and the blocks are cached (See {@link SftpBlockCache}):
+ * the file is opened only to read a block that is not in the cache.
+ */
+public class SftpReadByteChannel implements SeekableByteChannel {
+
+    private final SftpPath path;
+    private final String stringPath;
+    // The file handle belongs to a channel
+    private final SftpChannelLease channelLease;
+    // The progress of the transfer and its cancellation
+    private final SftpFileProgressMonitor monitor;
+
+    private InputStream inputStream;
+    // The channel of the input stream, a new channel means a reconnection
+    private ChannelSftp inputStreamChannel;
+    // The position of the input stream (it's the position of the channel without block cache)
+    private long inputStreamPosition = 0;
+    private long position = 0;
+    // The blocks of the file system (null if it's not read only)
+    private final SftpBlockCache blockCache;
+    private boolean isOpen = true;
+    // The first bytes are sampled for the adaptive compression
+    private boolean isSampled = false;
+    // The transfer in a Java Flight Recorder recording (null if not recorded)
+    private SftpTransferEvent transferEvent;
+    private long bytesRead = 0;
+
+    protected SftpReadByteChannel(SftpPath path) throws IOException {
+        this(path, Collections.emptySet());
+    }
+
+    /**
+     * @param path
+     * @param options the open options with the {@link SftpTransferOption transfer options}
+     */
+    protected SftpReadByteChannel(SftpPath path, Set<? extends OpenOption> options) throws IOException {
+        this.path = path;
+        this.stringPath = path.getStringPath();
+        this.monitor = SftpFileProgressMonitor.of(path, SftpTransferEvent.READ, options);
+        this.blockCache = path.getFileSystem().getBlockCache();
+        this.channelLease = path.getFileSystem().newChannelLease();
+        // Open the file (and check that it exists)
+        try {
+            if (blockCache != null) {
+                // The file is opened with the first block not cached
+                path.getFileAttributes();
+            } else {
+                execute(channelSftp -> {
+                    openAt(channelSftp, position);
+                    return null;
+                });
+            }
+        } catch (IOException e) {
+            channelLease.close();
+            throw e;
+        }
+        transferEvent = SftpTransferEvent.start(stringPath, SftpTransferEvent.READ);
+        monitor.start();
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+
+        if (!isOpen) {
+            throw new ClosedChannelException();
+        }
+        checkCancellation();
+        if (blockCache != null) {
+            int read = blockCache.read(stringPath, position, dst, offset -> execute(channelSftp -> readBlock(channelSftp, offset)));
+            if (read > 0) {
+                position += read;
+                bytesRead += read;
+            }
+            return read;
+        }
+        int start = dst.position();
+        int read = execute(channelSftp -> readAtPosition(channelSftp, dst));
+        if (read == -1) {
+            // JSch ends the stream of a cancelled transfer
+            checkCancellation();
+        }
+        if (read > 0) {
+            bytesRead += read;
+            path.getFileSystem().getMetrics().recordBytesRead(read);
+        }
+        if (!isSampled && read >= SftpCompressionSampler.SAMPLE_SIZE_MIN) {
+            ByteBuffer payload = dst.duplicate();
+            payload.position(start).limit(start + read);
+            path.getFileSystem().sampleCompression(payload);
+            isSampled = true;
+        }
+        return read;
+
+    }
+
+    private void checkCancellation() throws InterruptedIOException {
+        if (monitor.isCancelled()) {
+            throw new InterruptedIOException("The read of (" + stringPath + ") was cancelled");
+        }
+    }
+
+    /**
+     * The operation executed by the file system.
+     * It opens the file at the current position if the channel has changed (ie after a reconnection)
+     */
+    private int readAtPosition(ChannelSftp channelSftp, ByteBuffer dst) throws SftpException {
+
+        if (inputStreamChannel != channelSftp) {
+            openAt(channelSftp, position);
+        }
+        try {
+            int read;
+            if (dst.hasArray()) {
+                read = inputStream.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (read > 0) {
+                    dst.position(dst.position() + read);
+                }
+            } else {
+                byte[] buffer = new byte[dst.remaining()];
+                read = inputStream.read(buffer, 0, buffer.length);
+                if (read > 0) {
+                    dst.put(buffer, 0, read);
+                }
+            }
+            if (read > 0) {
+                position += read;
+                inputStreamPosition += read;
+            }
+            return read;
+        } catch (IOException e) {
+            // The stream is lost, the file will be opened again at the position
+            closeInputStream();
+            throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The read of (" + stringPath + ") at the position (" + position + ") has failed", e);
+        }
+
+    }
+
+    /**
+     * Read a block for the block cache, the stream is opened again only if it's not at the offset
+     *
+     * @return the bytes of the block (less than a block at the end of the file)
+     */
+    private byte[] readBlock(ChannelSftp channelSftp, long offset) throws SftpException {
+
+        if (inputStreamChannel != channelSftp || inputStreamPosition != offset) {
+            openAt(channelSftp, offset);
+        }
+        byte[] block = new byte[SftpBlockCache.BLOCK_SIZE];
+        int length = 0;
+        try {
+            int read;
+            while (length < block.length && (read = inputStream.read(block, length, block.length - length)) != -1) {
+                length += read;
+                inputStreamPosition += read;
+            }
+        } catch (IOException e) {
+            closeInputStream();
+            throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "The read of (" + stringPath + ") at the position (" + offset + ") has failed", e);
+        }
+        if (length > 0) {
+            path.getFileSystem().getMetrics().recordBytesRead(length);
+        }
+        return length == block.length ? block : Arrays.copyOf(block, length);
+
+    }
+
+    private void openAt(ChannelSftp channelSftp, long offset) throws SftpException {
+        closeInputStream();
+        inputStream = channelSftp.get(stringPath, monitor, offset);
+        inputStreamChannel = channelSftp;
+        inputStreamPosition = offset;
+    }
+
+    private <T> T execute(SftpOperation<T> operation) throws IOException {
+        try {
+            return path.getFileSystem().execute(SftpCommand.READ, stringPath, channelLease, operation);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw new NoSuchFileException(stringPath);
+            }
+            throw new IOException("Unable to read the file (" + stringPath + ")", e);
+        }
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public long position() throws IOException {
+        return position;
+    }
+
+    /**
+     * The file is opened again at the new position with the next read
+     *
+     * @param newPosition
+     * @return
+     * @throws IOException
+     */
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("The position (" + newPosition + ") must be positive");
+        }
+        if (newPosition != position) {
+            if (blockCache == null) {
+                closeInputStream();
+            }
+            position = newPosition;
+        }
+        return this;
+    }
+
+    /**
+     * The stat is executed on the channel of the stream.
+     * Borrowing a second channel could wait forever when all channels are held by streams.
+     */
+    public long size() throws IOException {
+        if (!isOpen) {
+            throw new ClosedChannelException();
+        }
+        if (blockCache != null) {
+            // Immutable
+            return path.getFileAttributes().size();
+        }
+        return execute(channelSftp -> channelSftp.stat(stringPath)).getSize();
+    }
+
+    public SeekableByteChannel truncate(long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    public void close() throws IOException {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        closeInputStream();
+        channelLease.close();
+        monitor.close();
+        SftpTransferEvent.end(transferEvent, bytesRead, 0, path.getFileSystem().getSessionId());
+    }
+
+    private void closeInputStream() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // The connection may be already lost
+            }
+            inputStream = null;
+            inputStreamChannel = null;
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.bytle.niofs.sftp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A Java Flight Recorder event by SFTP request (See {@link SftpFileSystem#execute(SftpCommand, String, SftpChannelLease, SftpOperation)})
+ * <p/>
+ * The duration is the one of the operation with its retries and the wait for a channel.
+ * When the event is not enabled in the recording, the fields are not set and nothing is committed.
+ */
+@Name("net.bytle.niofs.sftp.Request")
+@Label("SFTP Request")
+@Category({"SFTP"})
+@Description("A request executed on a SFTP server")
+class SftpRequestEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @Description("The bytes read or written by the request")
+    @DataAmount
+    long bytes;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Channel Id")
+    @Description("The id of the SSH channel in the session")
+    int channelId;
+
+    @Label("Session Id")
+    @Description("The user, the host, the port and the number of the session (a reconnection starts a new session)")
+    String sessionId;
+
+}
@@ -0,0 +1,91 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The protocol version and the extensions announced by the server in its SSH_FXP_VERSION packet
+ * <p/>
+ * They are read once by session (See {@link SftpFileSystem#getServerCapabilities()}).
+ * <p/>
+ * JSch sends no extended request of its own (ie limits@openssh.com, copy-data):
+ * the request sizes stay the ones of JSch and the announced extensions that JSch uses are
+ * posix-rename@openssh.com (See {@link SftpFileSystemProvider#move}), statvfs@openssh.com and hardlink@openssh.com.
+ */
+public class SftpServerCapabilities {
+
+    public static final String POSIX_RENAME = "posix-rename@openssh.com";
+    public static final String STATVFS = "statvfs@openssh.com";
+    public static final String HARDLINK = "hardlink@openssh.com";
+    public static final String LIMITS = "limits@openssh.com";
+    public static final String COPY_DATA = "copy-data";
+
+    private final int version;
+    private final Map<String, String> extensions;
+
+    private SftpServerCapabilities(int version, Map<String, String> extensions) {
+        this.version = version;
+        this.extensions = Collections.unmodifiableMap(extensions);
+    }
+
+    /**
+     * @param channelSftp a connected channel
+     * @return the capabilities announced to the channel
+     */
+    static SftpServerCapabilities of(ChannelSftp channelSftp) throws SftpException {
+
+        Map<String, String> extensions = new HashMap<>();
+        try {
+            // JSch has no getter for all the extensions
+            Field field = ChannelSftp.class.getDeclaredField("extensions");
+            field.setAccessible(true);
+            Hashtable<?, ?> announced = (Hashtable<?, ?>) field.get(channelSftp);
+            if (announced != null) {
+                for (Map.Entry<?, ?> extension : announced.entrySet()) {
+                    extensions.put(String.valueOf(extension.getKey()), String.valueOf(extension.getValue()));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Only the known extensions
+            for (String name : new String[]{POSIX_RENAME, STATVFS, HARDLINK, LIMITS, COPY_DATA}) {
+                String data = channelSftp.getExtension(name);
+                if (data != null) {
+                    extensions.put(name, data);
+                }
+            }
+        }
+        return new SftpServerCapabilities(channelSftp.getServerVersion(), extensions);
+
+    }
+
+    /**
+     * @return the SFTP protocol version of the server
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the name and the data (the version) of the extensions
+     */
+    public Map<String, String> getExtensions() {
+        return extensions;
+    }
+
+    public boolean hasExtension(String name) {
+        return extensions.containsKey(name);
+    }
+
+    @Override
+    public String toString() {
+        return "SFTP version " + version + ", extensions " + extensions.keySet();
+    }
+
+}
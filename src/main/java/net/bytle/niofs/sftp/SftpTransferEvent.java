@@ -0,0 +1,77 @@
+package net.bytle.niofs.sftp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A Java Flight Recorder event by file channel, from its opening to its close
+ * (See {@link SftpReadByteChannel}, {@link SftpOverWriteByteChannel}, {@link SftpAsynchronousFileChannel})
+ * <p/>
+ * The requests of the transfer are {@link SftpRequestEvent} events of the same session.
+ */
+@Name("net.bytle.niofs.sftp.Transfer")
+@Label("SFTP Transfer")
+@Category({"SFTP"})
+@Description("The life of a SFTP file channel")
+class SftpTransferEvent extends Event {
+
+    static final String READ = "read";
+    static final String WRITE = "write";
+    static final String READ_WRITE = "read/write";
+
+    @Label("Path")
+    String path;
+
+    @Label("Direction")
+    String direction;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Session Id")
+    String sessionId;
+
+    /**
+     * @return a started event or null if the event is not enabled (the transfer is then not recorded)
+     */
+    static SftpTransferEvent start(String path, String direction) {
+        SftpTransferEvent event = new SftpTransferEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.path = path;
+        event.direction = direction;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commit the event at the close of the channel
+     *
+     * @param event     the event of {@link #start(String, String)} (may be null)
+     * @param sessionId the session of the last request
+     */
+    static void end(SftpTransferEvent event, long bytesRead, long bytesWritten, String sessionId) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytesRead = bytesRead;
+            event.bytesWritten = bytesWritten;
+            event.sessionId = sessionId;
+            event.commit();
+        }
+    }
+
+}
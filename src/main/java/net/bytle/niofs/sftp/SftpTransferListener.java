@@ -0,0 +1,28 @@
+package net.bytle.niofs.sftp;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A listener of the progress of the transfers
+ * <p/>
+ * It's attached to a transfer (See {@link SftpTransferOption#listener(SftpTransferListener)})
+ * or to all transfers of a file system (See {@link SftpFileSystem#addTransferListener(SftpTransferListener)}).
+ * The methods are called on the thread of the transfer: they must be fast. They do nothing by default.
+ */
+public interface SftpTransferListener {
+
+    default void onStart(SftpTransferProgress progress) {
+    }
+
+    /**
+     * Called at most every {@link SftpFileProgressMonitor#PROGRESS_INTERVAL} ms
+     */
+    default void onProgress(SftpTransferProgress progress) {
+    }
+
+    /**
+     * Called when the channel is closed (after the end or a cancellation)
+     */
+    default void onEnd(SftpTransferProgress progress) {
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.bytle.niofs.sftp;
+
+import java.nio.file.OpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * Open options to follow or cancel a transfer
+ * <pre>
+ * SftpCancellationToken token = new SftpCancellationToken();
+ * Files.newByteChannel(path, StandardOpenOption.READ, SftpTransferOption.listener(listener), SftpTransferOption.cancellation(token));
+ * </pre>
+ */
+public class SftpTransferOption implements OpenOption {
+
+    private final SftpTransferListener listener;
+    private final SftpCancellationToken cancellationToken;
+
+    private SftpTransferOption(SftpTransferListener listener, SftpCancellationToken cancellationToken) {
+        this.listener = listener;
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @param listener the listener of the transfer
+     */
+    public static SftpTransferOption listener(SftpTransferListener listener) {
+        return new SftpTransferOption(listener, null);
+    }
+
+    /**
+     * @param cancellationToken the token that cancels the transfer
+     */
+    public static SftpTransferOption cancellation(SftpCancellationToken cancellationToken) {
+        return new SftpTransferOption(null, cancellationToken);
+    }
+
+    /**
+     * @return the listeners of the options
+     */
+    static List<SftpTransferListener> getListeners(Set<? extends OpenOption> options) {
+        List<SftpTransferListener> listeners = new ArrayList<>();
+        for (OpenOption option : options) {
+            if (option instanceof SftpTransferOption && ((SftpTransferOption) option).listener != null) {
+                listeners.add(((SftpTransferOption) option).listener);
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * @return the token of the options or null
+     */
+    static SftpCancellationToken getCancellationToken(Set<? extends OpenOption> options) {
+        for (OpenOption option : options) {
+            if (option instanceof SftpTransferOption && ((SftpTransferOption) option).cancellationToken != null) {
+                return ((SftpTransferOption) option).cancellationToken;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,95 @@
+package net.bytle.niofs.sftp;
+
+import java.time.Duration;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A snapshot of the progress of a transfer (See {@link SftpTransferListener})
+ */
+public class SftpTransferProgress {
+
+    private final String path;
+    private final String direction;
+    private final long bytesDone;
+    private final long bytesTotal;
+    private final Duration elapsed;
+    private final double throughput;
+    private final double smoothedThroughput;
+    private final boolean cancelled;
+
+    SftpTransferProgress(String path, String direction, long bytesDone, long bytesTotal, Duration elapsed, double throughput, double smoothedThroughput, boolean cancelled) {
+        this.path = path;
+        this.direction = direction;
+        this.bytesDone = bytesDone;
+        this.bytesTotal = bytesTotal;
+        this.elapsed = elapsed;
+        this.throughput = throughput;
+        this.smoothedThroughput = smoothedThroughput;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @return the path of the remote file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return read or write
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    public long getBytesDone() {
+        return bytesDone;
+    }
+
+    /**
+     * @return the size of the file to read or -1 if unknown (a write)
+     */
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the throughput in bytes by second since the previous progress
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return the exponential moving average of the throughput in bytes by second
+     */
+    public double getSmoothedThroughput() {
+        return smoothedThroughput;
+    }
+
+    /**
+     * @return the estimated time to the end with the smoothed throughput or null if unknown
+     */
+    public Duration getEta() {
+        if (bytesTotal < 0 || smoothedThroughput <= 0) {
+            return null;
+        }
+        long remaining = Math.max(0, bytesTotal - bytesDone);
+        return Duration.ofNanos((long) (remaining / smoothedThroughput * 1e9));
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + path + ": " + bytesDone + (bytesTotal >= 0 ? "/" + bytesTotal : "") + " bytes, "
+                + Math.round(smoothedThroughput) + " bytes/s" + (isCancelled() ? ", cancelled" : "");
+    }
+
+}
@@ -0,0 +1,785 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The SSH session and the pool of sftp channels of a user on a host
+ * <p/>
+ * The file systems of the same user, host and port share the transport whatever their working directory
+ * (See {@link SftpFileSystemProvider#acquireTransport(URI, java.util.function.Function)}).
+ * The relative paths are resolved by the client (See {@link SftpPath#toAbsolutePath()}),
+ * the current directory of a channel never changes.
+ * The transport is closed when the last file system that uses it is closed.
+ * <p/>
+ * A channel executes one operation at a time. It's borrowed from the pool for an operation
+ * (or for the life of a stream, See {@link SftpChannelLease}) and returned after it.
+ * <p/>
+ * The waits use a {@link ReentrantLock} and not a monitor: a virtual thread that waits
+ * for a channel or a connection doesn't pin its carrier thread.
+ * In the dispatch mode (See {@link SftpFileSystem#KEY_EXECUTION_MODE}), the blocking JSch calls
+ * (that use monitors) are executed on I/O threads of the transport, one by channel.
+ */
+class SftpTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    private final SftpFileSystemProvider provider;
+    private final String id;
+    private final String key;
+    private final String user;
+    private final String password;
+    private final String host;
+    private final int port;
+
+    private final int keepAliveInterval;
+    private final int keepAliveCountMax;
+    private final int sessionsMaxPerHost;
+    private final int sessionsWaitTimeout;
+    private final int channelPoolMin;
+    private final int channelPoolMax;
+    private final int channelPoolWaitTimeout;
+    private final int bulkRequests;
+    private final boolean windowAuto;
+    private final int windowBandwidth;
+    private final int windowSizeMin;
+    private final int windowSizeMax;
+    private final int packetSizeMax;
+    private final boolean cipherAuto;
+    private final String compression;
+    // The adaptive compression (null in the other modes)
+    private final SftpCompressionSampler compressionSampler;
+    // The JSch compressions when the compression is on (zlib@openssh.com starts after the authentication)
+    private static final String ZLIB_COMPRESSIONS = "zlib@openssh.com,zlib,none";
+    private static final String NO_COMPRESSION = "none";
+    // The minimum time in ms between two switches of the adaptive compression (a key exchange each)
+    static final long COMPRESSION_SWITCH_INTERVAL = 60_000;
+
+    // Read with the first channel of a session
+    private volatile SftpServerCapabilities serverCapabilities;
+    private volatile SftpChannelSizing channelSizing;
+
+    // Guards the session and the channels
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition channelReturned = lock.newCondition();
+
+    // The I/O threads of the dispatch mode (null in the direct mode)
+    private final ExecutorService ioExecutor;
+    private static final ThreadLocal<Boolean> IS_IO_THREAD = new ThreadLocal<>();
+
+    private volatile Session session;
+    // The number of the current session (incremented with each connection)
+    private volatile int sessionNumber = 0;
+    // True if the session holds a permit of the host, See {@link SftpFileSystem#KEY_SESSIONS_MAX_PER_HOST}
+    private boolean hasSessionPermit = false;
+
+    // The channels of the current session
+    private final Deque<ChannelSftp> idleChannels = new ArrayDeque<>();
+    private final Set<ChannelSftp> borrowedChannels = Collections.newSetFromMap(new IdentityHashMap<ChannelSftp, Boolean>());
+    // The number of borrowed channels (read without lock by the idle checks)
+    private volatile int inUse = 0;
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    // The number of file systems that use the transport
+    private int references = 0;
+    private volatile boolean isClosed = false;
+    private ScheduledFuture<?> idleCheck;
+
+    private SftpTransport(SftpTransportBuilder builder) {
+
+        this.provider = builder.provider;
+        this.id = builder.id;
+        this.keepAliveInterval = builder.keepAliveInterval;
+        this.keepAliveCountMax = builder.keepAliveCountMax;
+        this.sessionsMaxPerHost = builder.sessionsMaxPerHost;
+        this.sessionsWaitTimeout = builder.sessionsWaitTimeout;
+        this.channelPoolMin = builder.channelPoolMin;
+        this.channelPoolMax = builder.channelPoolMax;
+        this.channelPoolWaitTimeout = builder.channelPoolWaitTimeout;
+        this.bulkRequests = builder.bulkRequests;
+        this.windowAuto = builder.windowAuto;
+        this.windowBandwidth = builder.windowBandwidth;
+        this.windowSizeMin = builder.windowSizeMin;
+        this.windowSizeMax = builder.windowSizeMax;
+        this.packetSizeMax = builder.packetSizeMax;
+        this.cipherAuto = builder.cipherAuto;
+        this.compression = builder.compression;
+        this.compressionSampler = compression.equals(SftpFileSystem.COMPRESSION_ADAPTIVE)
+                ? new SftpCompressionSampler(this::switchCompression, COMPRESSION_SWITCH_INTERVAL)
+                : null;
+        if (windowSizeMin > windowSizeMax) {
+            throw new IllegalArgumentException("The window size max (" + windowSizeMax + ") must be greater than the min (" + windowSizeMin + ")");
+        }
+        if (channelPoolMax < 1 || channelPoolMin > channelPoolMax) {
+            throw new IllegalArgumentException("The channel pool max (" + channelPoolMax + ") must be greater than 0 and greater than the min (" + channelPoolMin + ")");
+        }
+
+        URI uri = builder.uri;
+        key = provider.toTransportKey(uri);
+        // Extract the user and the password
+        String userInfo = uri.getUserInfo();
+        if (userInfo != null && userInfo.indexOf(':') != -1) {
+            user = userInfo.substring(0, userInfo.indexOf(":"));
+            password = userInfo.substring(userInfo.indexOf(":") + 1, userInfo.length());
+        } else {
+            user = userInfo;
+            password = null;
+        }
+        port = uri.getPort() == -1 ? 22 : uri.getPort();
+        host = uri.getHost() != null ? uri.getHost() : "localhost";
+
+        if (builder.dispatch) {
+            // One thread by channel and one for the connection
+            ioExecutor = Executors.newFixedThreadPool(channelPoolMax + 1, runnable -> {
+                Thread thread = new Thread(() -> {
+                    IS_IO_THREAD.set(true);
+                    runnable.run();
+                }, "sftp-io-" + id);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            ioExecutor = null;
+        }
+
+        if (builder.idleTimeout > 0) {
+            idleCheck = provider.scheduleIdleCheck(this, builder.idleTimeout);
+        }
+
+    }
+
+    /**
+     * @return the id of the transport (user@host:port)
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * @return the key of the transport in the pool of the provider (the id and the fingerprint of the password)
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the id and the number of the current session
+     */
+    String getSessionId() {
+        return id + "#" + sessionNumber;
+    }
+
+    /**
+     * @return the host and the port (the scope of {@link SftpFileSystem#KEY_SESSIONS_MAX_PER_HOST})
+     */
+    String getHostId() {
+        return host + ":" + port;
+    }
+
+    /**
+     * A file system starts to use the transport
+     */
+    void retain() {
+        references++;
+    }
+
+    /**
+     * A file system doesn't use the transport anymore
+     *
+     * @return true if it was the last one, the transport is then closed
+     */
+    boolean release() {
+        references--;
+        if (references == 0) {
+            close();
+            return true;
+        }
+        return false;
+    }
+
+    private void close() {
+        lock.lock();
+        try {
+            isClosed = true;
+            if (idleCheck != null) {
+                idleCheck.cancel(false);
+            }
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Execute an operation on a borrowed channel
+     * In the dispatch mode, it's executed on an I/O thread and the calling thread waits without pinning its carrier.
+     *
+     * @param channelSftp the borrowed channel
+     * @param operation   the operation
+     * @return the result of the operation
+     * @throws SftpException
+     */
+    <T> T execute(ChannelSftp channelSftp, SftpOperation<T> operation) throws SftpException {
+
+        if (ioExecutor == null || Boolean.TRUE.equals(IS_IO_THREAD.get())) {
+            return operation.execute(channelSftp);
+        }
+
+        Future<T> future = ioExecutor.submit(() -> operation.execute(channelSftp));
+        // The channel is used until the end of the operation, an interrupt doesn't stop the wait
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SftpException) {
+                        throw (SftpException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "The operation has failed", cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    /**
+     * Borrow a channel (it must be given back with {@link #returnChannel(ChannelSftp)})
+     * <p/>
+     * The session is connected (or reconnected if lost) if needed.
+     * When all channels are borrowed, a new one is opened until the max of the pool, after we wait for a free one.
+     *
+     * @return a connected channel
+     */
+    ChannelSftp borrowChannel() {
+
+        long deadline = System.currentTimeMillis() + channelPoolWaitTimeout;
+        lock.lock();
+        try {
+            return borrowChannel(deadline);
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    private ChannelSftp borrowChannel(long deadline) {
+
+        while (true) {
+
+            if (isClosed) {
+                throw new ClosedFileSystemException();
+            }
+            connect();
+
+            ChannelSftp channelSftp = idleChannels.pollFirst();
+            if (channelSftp != null && !isHealthy(channelSftp)) {
+                channelSftp.disconnect();
+                continue;
+            }
+            if (channelSftp == null && borrowedChannels.size() < channelPoolMax) {
+                channelSftp = openChannel();
+            }
+            if (channelSftp != null) {
+                borrowedChannels.add(channelSftp);
+                inUse = borrowedChannels.size();
+                lastAccessTime = System.currentTimeMillis();
+                return channelSftp;
+            }
+
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                throw new SftpConnectionException(new IOException("No sftp channel was free after " + channelPoolWaitTimeout + " ms (channel pool max: " + channelPoolMax + ")"));
+            }
+            try {
+                channelReturned.await(wait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SftpConnectionException(e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Connect the session and open the minimum number of channels (See {@link SftpFileSystem#KEY_CONNECT_EAGER})
+     * <p/>
+     * It runs in the background. An operation that arrives before the end waits on the lock of the transport.
+     */
+    void warmUp() {
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            connect();
+        } catch (SftpConnectionException e) {
+            // The first operation will try again
+            LOGGER.warning("The eager connection of (" + id + ") has failed: " + e.getCause());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back a borrowed channel
+     * A channel of a lost (or previous) session is closed
+     *
+     * @param channelSftp
+     */
+    void returnChannel(ChannelSftp channelSftp) {
+
+        lock.lock();
+        try {
+            lastAccessTime = System.currentTimeMillis();
+            if (borrowedChannels.remove(channelSftp) && isHealthy(channelSftp)) {
+                idleChannels.addFirst(channelSftp);
+            } else {
+                channelSftp.disconnect();
+            }
+            inUse = borrowedChannels.size();
+            channelReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * @return the version and the extensions of the server (read once by session)
+     */
+    SftpServerCapabilities getServerCapabilities() {
+        SftpServerCapabilities capabilities = serverCapabilities;
+        if (capabilities == null) {
+            // The first channel of the session reads them
+            returnChannel(borrowChannel());
+            capabilities = serverCapabilities;
+        }
+        return capabilities;
+    }
+
+    /**
+     * @return the sizing of the channels (measured once by session)
+     */
+    SftpChannelSizing getChannelSizing() {
+        SftpChannelSizing sizing = channelSizing;
+        if (sizing == null) {
+            returnChannel(borrowChannel());
+            sizing = channelSizing;
+        }
+        return sizing;
+    }
+
+    /**
+     * Sample the payload of a stream for the adaptive compression
+     *
+     * @param buffer the bytes between the position and the limit (the buffer doesn't change)
+     */
+    void sampleCompression(ByteBuffer buffer) {
+        if (compressionSampler == null || buffer.remaining() < SftpCompressionSampler.SAMPLE_SIZE_MIN) {
+            return;
+        }
+        int length = Math.min(buffer.remaining(), SftpCompressionSampler.SAMPLE_SIZE);
+        if (buffer.hasArray()) {
+            compressionSampler.sample(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            compressionSampler.sample(bytes, 0, length);
+        }
+    }
+
+    /**
+     * @return true if the compression is on (the server may have no compression)
+     */
+    boolean isCompressionOn() {
+        return compression.equals(SftpFileSystem.COMPRESSION_ZLIB)
+                || (compressionSampler != null && compressionSampler.isCompressed());
+    }
+
+    /**
+     * Switch the compression of the session with a new key exchange (in the background)
+     * The next session starts with the last choice.
+     *
+     * @param on true to compress
+     */
+    void switchCompression(boolean on) {
+        SftpFileSystemProvider.getIoExecutor().execute(() -> {
+            lock.lock();
+            try {
+                if (!isConnected()) {
+                    return;
+                }
+                String compressions = on ? ZLIB_COMPRESSIONS : NO_COMPRESSION;
+                session.setConfig("compression.s2c", compressions);
+                session.setConfig("compression.c2s", compressions);
+                session.rekey();
+                LOGGER.info("The compression of the sftp session of (" + id + ") is switched " + (on ? "on" : "off"));
+            } catch (Exception e) {
+                LOGGER.warning("The compression of the sftp session of (" + id + ") could not be switched: " + e);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * @return the connected session (used to simulate a network failure in the tests)
+     */
+    Session getSession() {
+        lock.lock();
+        try {
+            connect();
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the transport has an open session
+     */
+    boolean isConnected() {
+        Session session = this.session;
+        return session != null && session.isConnected();
+    }
+
+    /**
+     * Read without lock, See {@link SftpFileSystemProvider#acquireSession(SftpTransport, int, long)}
+     *
+     * @return true if the transport has a session and no channel is borrowed
+     */
+    boolean isIdle() {
+        return session != null && inUse == 0;
+    }
+
+    /**
+     * @return the time in ms of the last borrow or return of a channel
+     */
+    long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Close the session (but not the transport) when it was not used since the idle timeout
+     *
+     * @param idleTimeout the idle time in ms
+     * @return true if the session was closed
+     */
+    boolean disconnectIfIdle(long idleTimeout) {
+        lock.lock();
+        try {
+            if (isIdle() && System.currentTimeMillis() - lastAccessTime >= idleTimeout) {
+                LOGGER.info("The sftp session of (" + id + ") is idle, disconnecting");
+                disconnect();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A local check (without any request)
+     * A dead TCP connection is detected by the keep alive messages (See {@link SftpFileSystem#KEY_KEEPALIVE_INTERVAL})
+     */
+    private boolean isHealthy(ChannelSftp channelSftp) {
+        return !channelSftp.isClosed()
+                && channelSftp.isConnected()
+                && isConnected();
+    }
+
+    /**
+     * Connect the session if needed and open the minimum number of channels
+     * (on an I/O thread in the dispatch mode)
+     */
+    private void connect() {
+
+        if (isConnected()) {
+            return;
+        }
+        runOnIoThread(this::connectNow);
+
+    }
+
+    private void connectNow() {
+
+        if (session != null) {
+            LOGGER.warning("The sftp connection was lost, reconnecting");
+            disconnect();
+        }
+
+        try {
+
+            LOGGER.info("Trying to connect to the sftp connection (Uri: sftp://" + (user == null ? "null" : user) + "@" + host + ":" + port + "' )");
+            if (sessionsMaxPerHost > 0) {
+                hasSessionPermit = provider.acquireSession(this, sessionsMaxPerHost, sessionsWaitTimeout);
+                if (!hasSessionPermit) {
+                    throw new IOException("The maximum number of sessions (" + sessionsMaxPerHost + ") on the host was reached and no session was free after " + sessionsWaitTimeout + " ms");
+                }
+            }
+
+            // SSH Session
+            JSch jsch = new JSch();
+            Session newSession = jsch.getSession(user, host, port);
+            if (password != null) {
+                newSession.setPassword(password);
+            }
+            java.util.Properties config = new java.util.Properties();
+            config.put("StrictHostKeyChecking", "no");
+            if (cipherAuto) {
+                String ciphers = SftpCiphers.fastestFirst();
+                config.put("cipher.s2c", ciphers);
+                config.put("cipher.c2s", ciphers);
+            }
+            String compressions = isCompressionOn() ? ZLIB_COMPRESSIONS : NO_COMPRESSION;
+            config.put("compression.s2c", compressions);
+            config.put("compression.c2s", compressions);
+            newSession.setConfig(config);
+            if (keepAliveInterval > 0) {
+                newSession.setServerAliveInterval(keepAliveInterval);
+                newSession.setServerAliveCountMax(keepAliveCountMax);
+            }
+            newSession.connect();
+            session = newSession;
+            sessionNumber++;
+
+            for (int i = 0; i < channelPoolMin; i++) {
+                idleChannels.addLast(openChannelNow());
+            }
+
+        } catch (Exception e) {
+
+            disconnect();
+            throw new SftpConnectionException(e);
+
+        }
+
+    }
+
+    private ChannelSftp openChannel() {
+        return onIoThread(this::openChannelNow);
+    }
+
+    private ChannelSftp openChannelNow() {
+        try {
+            ChannelSftp channelSftp = (ChannelSftp) session.openChannel("sftp");
+            SftpChannelSizing sizing = channelSizing;
+            if (sizing != null) {
+                sizing.applyBeforeConnect(channelSftp);
+            }
+            channelSftp.connect();
+            if (serverCapabilities == null) {
+                serverCapabilities = SftpServerCapabilities.of(channelSftp);
+                LOGGER.info("The sftp server of (" + id + ") has the " + serverCapabilities);
+            }
+            if (sizing == null) {
+                // The first channel of the session measures the round trip time
+                sizing = windowAuto
+                        ? SftpChannelSizing.measure(channelSftp, windowBandwidth, windowSizeMin, windowSizeMax, packetSizeMax, bulkRequests)
+                        : SftpChannelSizing.ofDefault(bulkRequests);
+                channelSizing = sizing;
+                LOGGER.info("The sftp channels of (" + id + ") are sized with a " + sizing);
+            }
+            sizing.applyAfterConnect(channelSftp);
+            return channelSftp;
+        } catch (Exception e) {
+            throw new SftpConnectionException(e);
+        }
+    }
+
+    /**
+     * Disconnect the channels and the session
+     * The borrowed channels are closed when they are given back
+     */
+    private void disconnect() {
+        for (ChannelSftp channelSftp : idleChannels) {
+            channelSftp.disconnect();
+        }
+        idleChannels.clear();
+        borrowedChannels.clear();
+        // The server may be another one after a reconnection
+        serverCapabilities = null;
+        channelSizing = null;
+        inUse = 0;
+        if (this.session != null) {
+            this.session.disconnect();
+            this.session = null;
+        }
+        if (hasSessionPermit) {
+            provider.releaseSession(this);
+            hasSessionPermit = false;
+        }
+        channelReturned.signalAll();
+    }
+
+    /**
+     * A connection step, executed by the caller (that holds the lock) on an I/O thread in the dispatch mode
+     */
+    private interface ConnectionStep<T> {
+        T execute();
+    }
+
+    private <T> T onIoThread(ConnectionStep<T> step) {
+        try {
+            return execute(null, channelSftp -> step.execute());
+        } catch (SftpException e) {
+            throw new SftpConnectionException(e);
+        }
+    }
+
+    private void runOnIoThread(Runnable step) {
+        onIoThread(() -> {
+            step.run();
+            return null;
+        });
+    }
+
+    static class SftpTransportBuilder {
+
+        private final SftpFileSystemProvider provider;
+        private final URI uri;
+        private final String id;
+        private int keepAliveInterval = SftpFileSystem.DEFAULT_KEEPALIVE_INTERVAL;
+        private int keepAliveCountMax = SftpFileSystem.DEFAULT_KEEPALIVE_COUNT_MAX;
+        private int idleTimeout = SftpFileSystem.DEFAULT_IDLE_TIMEOUT;
+        private int sessionsMaxPerHost = SftpFileSystem.DEFAULT_SESSIONS_MAX_PER_HOST;
+        private int sessionsWaitTimeout = SftpFileSystem.DEFAULT_SESSIONS_WAIT_TIMEOUT;
+        private int channelPoolMin = SftpFileSystem.DEFAULT_CHANNEL_POOL_MIN;
+        private int channelPoolMax = SftpFileSystem.DEFAULT_CHANNEL_POOL_MAX;
+        private int channelPoolWaitTimeout = SftpFileSystem.DEFAULT_CHANNEL_POOL_WAIT_TIMEOUT;
+        private boolean dispatch = false;
+        private int bulkRequests = SftpFileSystem.DEFAULT_BULK_REQUESTS;
+        private boolean windowAuto = SftpFileSystem.DEFAULT_WINDOW_AUTO;
+        private int windowBandwidth = SftpFileSystem.DEFAULT_WINDOW_BANDWIDTH;
+        private int windowSizeMin = SftpFileSystem.DEFAULT_WINDOW_SIZE_MIN;
+        private int windowSizeMax = SftpFileSystem.DEFAULT_WINDOW_SIZE_MAX;
+        private int packetSizeMax = SftpFileSystem.DEFAULT_PACKET_SIZE_MAX;
+        private boolean cipherAuto = SftpFileSystem.DEFAULT_CIPHER_AUTO;
+        private String compression = SftpFileSystem.COMPRESSION_NONE;
+
+        SftpTransportBuilder(SftpFileSystemProvider provider, URI uri, String id) {
+            this.provider = provider;
+            this.uri = uri;
+            this.id = id;
+        }
+
+        SftpTransportBuilder keepAlive(int interval, int countMax) {
+            this.keepAliveInterval = interval;
+            this.keepAliveCountMax = countMax;
+            return this;
+        }
+
+        SftpTransportBuilder idleTimeout(int idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        SftpTransportBuilder sessionsMaxPerHost(int sessionsMaxPerHost, int sessionsWaitTimeout) {
+            this.sessionsMaxPerHost = sessionsMaxPerHost;
+            this.sessionsWaitTimeout = sessionsWaitTimeout;
+            return this;
+        }
+
+        SftpTransportBuilder channelPool(int min, int max, int waitTimeout) {
+            this.channelPoolMin = min;
+            this.channelPoolMax = max;
+            this.channelPoolWaitTimeout = waitTimeout;
+            return this;
+        }
+
+        /**
+         * @param dispatch true to execute the blocking calls on the I/O threads of the transport
+         */
+        SftpTransportBuilder dispatch(boolean dispatch) {
+            this.dispatch = dispatch;
+            return this;
+        }
+
+        /**
+         * @param bulkRequests the number of read requests in flight by channel
+         */
+        SftpTransportBuilder bulkRequests(int bulkRequests) {
+            this.bulkRequests = bulkRequests;
+            return this;
+        }
+
+        /**
+         * @param auto      true to size the channels to the bandwidth-delay product
+         * @param bandwidth the expected bandwidth in bytes by second
+         * @param windowMin the minimum window in bytes
+         * @param windowMax the maximum window in bytes
+         * @param packetMax the maximum packet in bytes
+         */
+        SftpTransportBuilder channelSizing(boolean auto, int bandwidth, int windowMin, int windowMax, int packetMax) {
+            this.windowAuto = auto;
+            this.windowBandwidth = bandwidth;
+            this.windowSizeMin = windowMin;
+            this.windowSizeMax = windowMax;
+            this.packetSizeMax = packetMax;
+            return this;
+        }
+
+        /**
+         * @param cipherAuto true to prefer the fastest ciphers of the JVM
+         */
+        SftpTransportBuilder cipherAuto(boolean cipherAuto) {
+            this.cipherAuto = cipherAuto;
+            return this;
+        }
+
+        /**
+         * @param compression none, zlib or adaptive
+         */
+        SftpTransportBuilder compression(String compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        SftpTransport build() {
+            return new SftpTransport(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package net.bytle.niofs.sftp;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The registration of a directory with a {@link SftpWatchService}
+ * <p/>
+ * A key is ready until an event is signalled, it's then queued in its watch service
+ * and is not queued again until it's {@link #reset()}.
+ */
+public class SftpWatchKey implements WatchKey {
+
+    private final SftpWatchService watchService;
+    private final SftpPath directory;
+    private volatile Set<WatchEvent.Kind<?>> kinds;
+
+    private final List<WatchEvent<?>> events = new ArrayList<>();
+    private boolean signalled = false;
+    private volatile boolean valid = true;
+
+    SftpWatchKey(SftpWatchService watchService, SftpPath directory, Set<WatchEvent.Kind<?>> kinds) {
+        this.watchService = watchService;
+        this.directory = directory;
+        this.kinds = kinds;
+    }
+
+    void setKinds(Set<WatchEvent.Kind<?>> kinds) {
+        this.kinds = kinds;
+    }
+
+    SftpPath getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Add an event (a repeated event is counted) and queue the key if it's ready
+     *
+     * @param kind    the kind of the event
+     * @param context the relative path of the entry
+     */
+    void signalEvent(WatchEvent.Kind<Path> kind, Path context) {
+        if (!kinds.contains(kind)) {
+            return;
+        }
+        synchronized (this) {
+            if (!events.isEmpty()) {
+                Event<?> last = (Event<?>) events.get(events.size() - 1);
+                if (last.kind() == kind && last.context().equals(context)) {
+                    last.increment();
+                    return;
+                }
+            }
+            events.add(new Event<>(kind, context));
+            signal();
+        }
+    }
+
+    /**
+     * The directory is gone: the key is invalid and queued a last time
+     */
+    void invalidate() {
+        synchronized (this) {
+            valid = false;
+            signal();
+        }
+    }
+
+    private void signal() {
+        if (!signalled) {
+            signalled = true;
+            watchService.enqueue(this);
+        }
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid && watchService.isOpen();
+    }
+
+    @Override
+    public synchronized List<WatchEvent<?>> pollEvents() {
+        List<WatchEvent<?>> polled = new ArrayList<>(events);
+        events.clear();
+        return Collections.unmodifiableList(polled);
+    }
+
+    @Override
+    public synchronized boolean reset() {
+        if (!isValid()) {
+            return false;
+        }
+        if (signalled && !events.isEmpty()) {
+            // Events came after the poll
+            watchService.enqueue(this);
+        } else {
+            signalled = false;
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        valid = false;
+        watchService.unregister(this);
+    }
+
+    @Override
+    public Path watchable() {
+        return directory;
+    }
+
+    private static class Event<T> implements WatchEvent<T> {
+
+        private final Kind<T> kind;
+        private final T context;
+        private int count = 1;
+
+        Event(Kind<T> kind, T context) {
+            this.kind = kind;
+            this.context = context;
+        }
+
+        void increment() {
+            count++;
+        }
+
+        @Override
+        public Kind<T> kind() {
+            return kind;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public T context() {
+            return context;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + context + (count > 1 ? " (" + count + ")" : "");
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package net.bytle.niofs.sftp;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A watch service that polls the registered directories (SFTP has no notification)
+ * <p/>
+ * The listings are done by the directory watcher of the file system ({@link SftpDirectoryWatcher}):
+ * a directory registered by several keys or watch services is listed once by poll.
+ * The changes are found by comparing compact snapshots of the listings ({@link SftpDirectorySnapshot}).
+ * The interval of the polls of a directory adapts to its changes,
+ * See {@link SftpFileSystem#KEY_WATCH_INTERVAL_MIN} and {@link SftpFileSystem#KEY_WATCH_INTERVAL_MAX}.
+ * <pre>
+ * WatchService watchService = fileSystem.newWatchService();
+ * fileSystem.getPath("inbound").register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+ * WatchKey key = watchService.take();
+ * </pre>
+ */
+public class SftpWatchService implements WatchService {
+
+    // Queued to wake up the waiting threads when the service is closed
+    private static final WatchKey CLOSED = new SftpWatchKey(null, null, Collections.emptySet());
+
+    private final SftpFileSystem fileSystem;
+    private final LinkedBlockingDeque<WatchKey> signalledKeys = new LinkedBlockingDeque<>();
+    // The keys by absolute directory path
+    private final Map<String, SftpWatchKey> keys = new HashMap<>();
+    private volatile boolean isOpen = true;
+
+    SftpWatchService(SftpFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * Register a directory (See {@link SftpPath#register(WatchService, WatchEvent.Kind[])})
+     * A directory registered again keeps its key with the new kinds of events.
+     */
+    SftpWatchKey register(SftpPath path, WatchEvent.Kind<?>... events) throws IOException {
+
+        checkOpen();
+        Set<WatchEvent.Kind<?>> kinds = new HashSet<>();
+        for (WatchEvent.Kind<?> event : events) {
+            if (event == StandardWatchEventKinds.ENTRY_CREATE || event == StandardWatchEventKinds.ENTRY_MODIFY || event == StandardWatchEventKinds.ENTRY_DELETE) {
+                kinds.add(event);
+            } else if (event != StandardWatchEventKinds.OVERFLOW) {
+                throw new UnsupportedOperationException("The event (" + event + ") is not supported");
+            }
+        }
+        SftpPath directory = path.toAbsolutePath();
+        synchronized (keys) {
+            SftpWatchKey key = keys.get(directory.toString());
+            if (key != null && key.isValid()) {
+                key.setKinds(kinds);
+                return key;
+            }
+            key = new SftpWatchKey(this, directory, kinds);
+            fileSystem.getDirectoryWatcher().register(key);
+            keys.put(directory.toString(), key);
+            return key;
+        }
+
+    }
+
+    void unregister(SftpWatchKey key) {
+        synchronized (keys) {
+            keys.remove(key.getDirectory().toString(), key);
+        }
+        fileSystem.getDirectoryWatcher().unregister(key);
+    }
+
+    void enqueue(SftpWatchKey key) {
+        signalledKeys.add(key);
+    }
+
+    boolean isOpen() {
+        return isOpen;
+    }
+
+    private void checkOpen() {
+        if (!isOpen) {
+            throw new ClosedWatchServiceException();
+        }
+    }
+
+    /**
+     * @return the key or throw if the service is closed (the closed marker is queued again for the other threads)
+     */
+    private WatchKey checkKey(WatchKey key) {
+        if (key == CLOSED) {
+            signalledKeys.add(CLOSED);
+            throw new ClosedWatchServiceException();
+        }
+        return key;
+    }
+
+    @Override
+    public WatchKey poll() {
+        checkOpen();
+        WatchKey key = signalledKeys.poll();
+        return key == null ? null : checkKey(key);
+    }
+
+    @Override
+    public WatchKey poll(long timeout, TimeUnit unit) throws InterruptedException {
+        checkOpen();
+        WatchKey key = signalledKeys.poll(timeout, unit);
+        return key == null ? null : checkKey(key);
+    }
+
+    @Override
+    public WatchKey take() throws InterruptedException {
+        checkOpen();
+        return checkKey(signalledKeys.take());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        List<SftpWatchKey> registered;
+        synchronized (keys) {
+            registered = new ArrayList<>(keys.values());
+            keys.clear();
+        }
+        for (SftpWatchKey key : registered) {
+            fileSystem.getDirectoryWatcher().unregister(key);
+        }
+        signalledKeys.clear();
+        signalledKeys.add(CLOSED);
+    }
+
+}
@@ -0,0 +1,131 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * Read and write at a position with an {@link SftpAsynchronousFileChannel}
+ */
+public class AsynchronousFileChannelTest {
+
+    private static FileSystem sftpFileSystem;
+    private static TestFileSystem testFileSystem;
+
+
+    @BeforeClass
+    static public void createResources() {
+
+        testFileSystem = new TestFileSystem.TestFileSystemBuilder()
+                .useWorkingDirectory(false)
+                .build();
+        sftpFileSystem = testFileSystem.get();
+
+    }
+
+    @AfterClass
+    static public void closeResources() throws IOException {
+
+        testFileSystem.close();
+
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+
+        Path file = sftpFileSystem.getPath("src", "test", "resources", "sftp", "testFileRead.txt");
+        byte[] expected = Files.readAllBytes(file);
+
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+
+            assertEquals("The size", expected.length, channel.size());
+
+            // One read by part, all outstanding at the same time
+            int partSize = 10;
+            List<ByteBuffer> buffers = new ArrayList<>();
+            List<Future<Integer>> reads = new ArrayList<>();
+            for (int position = 0; position < expected.length; position += partSize) {
+                ByteBuffer buffer = ByteBuffer.allocate(partSize);
+                buffers.add(buffer);
+                reads.add(channel.read(buffer, position));
+            }
+
+            ByteBuffer content = ByteBuffer.allocate(expected.length);
+            for (int i = 0; i < reads.size(); i++) {
+                int read = reads.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals("The bytes read of the part " + i, Math.min(partSize, expected.length - i * partSize), read);
+                buffers.get(i).flip();
+                content.put(buffers.get(i));
+            }
+            assertArrayEquals("The content", expected, content.array());
+
+            // With a completion handler
+            CompletableFuture<Integer> completion = new CompletableFuture<>();
+            ByteBuffer end = ByteBuffer.allocate(partSize);
+            channel.read(end, expected.length, null, new CompletionHandler<Integer, Object>() {
+                public void completed(Integer result, Object attachment) {
+                    completion.complete(result);
+                }
+
+                public void failed(Throwable exc, Object attachment) {
+                    completion.completeExceptionally(exc);
+                }
+            });
+            assertEquals("The end of the file", -1, (int) completion.get(10, TimeUnit.SECONDS));
+
+        }
+
+    }
+
+    @Test
+    public void positionalWrites() throws Exception {
+
+        Path file = sftpFileSystem.getPath("target", "asynchronousWrite.txt");
+        Files.deleteIfExists(file);
+
+        byte[] first = "Hello ".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "Async".getBytes(StandardCharsets.UTF_8);
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+
+            assertEquals("The first write", first.length, (int) channel.write(ByteBuffer.wrap(first), 0).get(10, TimeUnit.SECONDS));
+            assertEquals("The second write", second.length, (int) channel.write(ByteBuffer.wrap(second), first.length).get(10, TimeUnit.SECONDS));
+
+            // In the middle
+            channel.write(ByteBuffer.wrap("J".getBytes(StandardCharsets.UTF_8)), 0).get(10, TimeUnit.SECONDS);
+            assertEquals("The size after a write in the middle", first.length + second.length, channel.size());
+            // After the end
+            channel.write(ByteBuffer.wrap("!".getBytes(StandardCharsets.UTF_8)), first.length + second.length + 2).get(10, TimeUnit.SECONDS);
+            assertEquals("The size after a write after the end", first.length + second.length + 3, channel.size());
+
+        }
+        assertEquals("The content", "Jello Async\0\0!", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(5);
+            assertEquals("The size after the truncate", 5, channel.size());
+        }
+        assertEquals("The truncated content", "Jello", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Files.delete(file);
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The window and the packet of the channels are sized to the bandwidth-delay product measured by session
+ */
+public class ChannelSizingTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static LatencyProxy latencyProxy;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    // In each direction
+    private static final int LATENCY = 25;
+
+    @BeforeClass
+    static public void startServer() throws IOException {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+        latencyProxy = new LatencyProxy.LatencyProxyBuilder(TestFileSystemParameters.PORT)
+                .latency(LATENCY)
+                .build()
+                .start();
+    }
+
+    @AfterClass
+    static public void stopServer() throws IOException {
+        latencyProxy.close();
+        mockSftpServer.stop();
+    }
+
+    private static URI uri(String user, int port) {
+        return URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + port);
+    }
+
+    @Test
+    public void windowOfTheBandwidthDelayProduct() throws IOException {
+
+        int bandwidth = 100 * 1024 * 1024;
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_WINDOW_AUTO, "true");
+        env.put(SftpFileSystem.KEY_WINDOW_BANDWIDTH, String.valueOf(bandwidth));
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("sizing", latencyProxy.getPort()), env)) {
+
+            SftpChannelSizing sizing = fileSystem.getChannelSizing();
+            long roundTripMillis = sizing.getRoundTripTime().toMillis();
+            assertTrue("The round trip (" + roundTripMillis + ") has the latency of the proxy", roundTripMillis >= 2 * LATENCY);
+            long bandwidthDelayProduct = (long) bandwidth * sizing.getRoundTripTime().toNanos() / 1_000_000_000L;
+            assertEquals("The window is the bandwidth-delay product", Math.min(bandwidthDelayProduct, SftpFileSystem.DEFAULT_WINDOW_SIZE_MAX), sizing.getWindowSize());
+            assertTrue("The packet grows with the window", sizing.getPacketSize() > SftpChannelSizing.JSCH_PACKET_SIZE);
+            assertTrue("The requests in flight fill the window", (long) sizing.getBulkRequests() * sizing.getPacketSize() >= sizing.getWindowSize());
+
+            // The channels are usable with their sizes
+            assertTrue("A file can be read", Files.readAllBytes(fileSystem.getPath("pom.xml")).length > 0);
+
+        }
+
+    }
+
+    @Test
+    public void windowOfJSch() throws IOException {
+
+        // By default
+        Map<String, String> env = new HashMap<>();
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("jsch", TestFileSystemParameters.PORT), env)) {
+            SftpChannelSizing sizing = fileSystem.getChannelSizing();
+            assertNull("No measure", sizing.getRoundTripTime());
+            assertEquals("The window of JSch", SftpChannelSizing.JSCH_WINDOW_SIZE, sizing.getWindowSize());
+            assertEquals("The bulk requests", SftpFileSystem.DEFAULT_BULK_REQUESTS, sizing.getBulkRequests());
+        }
+
+    }
+
+}
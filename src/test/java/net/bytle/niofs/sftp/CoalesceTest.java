@@ -0,0 +1,155 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The concurrent identical metadata requests share one request
+ * <p/>
+ * The file system is behind a {@link LatencyProxy}: the requests of the threads overlap.
+ */
+public class CoalesceTest {
+
+    private static final int THREADS = 16;
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user, int port, boolean coalesce) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_CHANNEL_POOL_MAX, String.valueOf(THREADS));
+        env.put(SftpFileSystem.KEY_COALESCE, String.valueOf(coalesce));
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + port);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+    }
+
+    /**
+     * @return the number of stat requests sent by the threads that all read the attributes of the same path
+     */
+    private static long concurrentStats(SftpFileSystem fileSystem) throws Exception {
+
+        // Connect
+        Files.readAttributes(fileSystem.getPath("pom.xml"), BasicFileAttributes.class);
+        long before = fileSystem.getMetrics().getOperationCounts().getOrDefault(SftpCommand.STAT.name(), 0L);
+
+        Path path = fileSystem.getPath("target");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(THREADS);
+            List<Future<BasicFileAttributes>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return Files.readAttributes(path, BasicFileAttributes.class);
+                }));
+            }
+            for (Future<BasicFileAttributes> future : futures) {
+                assertTrue("A directory", future.get(30, TimeUnit.SECONDS).isDirectory());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return fileSystem.getMetrics().getOperationCounts().get(SftpCommand.STAT.name()) - before;
+
+    }
+
+    @Test
+    public void concurrentStatsAreCoalesced() throws Exception {
+
+        try (LatencyProxy proxy = new LatencyProxy.LatencyProxyBuilder(TestFileSystemParameters.PORT)
+                .latency(50)
+                .build()
+                .start();
+             SftpFileSystem fileSystem = newFileSystem("coalesce", proxy.getPort(), true)) {
+
+            long requests = concurrentStats(fileSystem);
+            assertTrue("Less requests than threads (" + requests + ")", requests < THREADS);
+            assertEquals("Each thread has a result", THREADS, requests + fileSystem.getMetrics().getCoalescedRequests());
+
+        }
+
+    }
+
+    @Test
+    public void withoutCoalescing() throws Exception {
+
+        try (LatencyProxy proxy = new LatencyProxy.LatencyProxyBuilder(TestFileSystemParameters.PORT)
+                .latency(50)
+                .build()
+                .start();
+             SftpFileSystem fileSystem = newFileSystem("coalesce-off", proxy.getPort(), false)) {
+
+            assertEquals("One request by thread", THREADS, concurrentStats(fileSystem));
+            assertEquals("Nothing coalesced", 0, fileSystem.getMetrics().getCoalescedRequests());
+
+        }
+
+    }
+
+    @Test
+    public void realPathAndLinkAttributes() throws IOException {
+
+        try (SftpFileSystem fileSystem = newFileSystem("coalesce-realpath", TestFileSystemParameters.PORT, true)) {
+
+            Path path = fileSystem.getPath("target", "..", "pom.xml");
+            assertEquals("The real path", fileSystem.getPath("pom.xml").toAbsolutePath(), path.toRealPath());
+            assertEquals("Not followed", fileSystem.getPath("pom.xml").toAbsolutePath(), path.toRealPath(LinkOption.NOFOLLOW_LINKS));
+            assertTrue("A regular file", Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isRegularFile());
+            assertEquals("Two lstat", 2L, (long) fileSystem.getMetrics().getOperationCounts().get(SftpCommand.LSTAT.name()));
+
+            // The parent is resolved by the server (a link in the parent is followed), a link in the last name is not
+            // The realpath of the mock server doesn't follow the links: the expected paths are the ones of its realpath
+            Path localDirectory = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "realpath");
+            Files.createDirectories(localDirectory.resolve("real").resolve("sub"));
+            Files.write(localDirectory.resolve("real").resolve("sub").resolve("file.txt"), "real".getBytes());
+            Files.deleteIfExists(localDirectory.resolve("link"));
+            Files.createSymbolicLink(localDirectory.resolve("link"), Paths.get("real", "sub"));
+            Path directory = fileSystem.getPath("target", "realpath");
+            long realPaths = fileSystem.getMetrics().getOperationCounts().get(SftpCommand.REALPATH.name());
+            Path realPath = directory.resolve("link").resolve("file.txt").toRealPath(LinkOption.NOFOLLOW_LINKS);
+            assertEquals("The parent is resolved by the server", realPaths + 1, (long) fileSystem.getMetrics().getOperationCounts().get(SftpCommand.REALPATH.name()));
+            assertEquals("The link in the parent", directory.resolve("link").toRealPath().resolve("file.txt"), realPath);
+            assertEquals("The link is not followed", directory.toRealPath().resolve("link"), directory.resolve("link").toRealPath(LinkOption.NOFOLLOW_LINKS));
+
+            try {
+                fileSystem.getPath("missing").toRealPath();
+                fail("The path doesn't exist");
+            } catch (NoSuchFileException e) {
+                // expected
+            }
+
+        }
+
+    }
+
+}
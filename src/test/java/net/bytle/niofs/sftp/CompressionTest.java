@@ -0,0 +1,117 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.Session;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The cipher and the compression of the session
+ */
+public class CompressionTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user, String key, String value) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(key, value);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT), env);
+    }
+
+    /**
+     * JSch has no getter of the negotiated compression
+     */
+    private static boolean isCompressed(SftpFileSystem fileSystem) throws ReflectiveOperationException {
+        Field deflater = Session.class.getDeclaredField("deflater");
+        deflater.setAccessible(true);
+        return deflater.get(fileSystem.getSession()) != null;
+    }
+
+    @Test
+    public void fastestCipherFirst() throws IOException {
+
+        Map<String, Double> throughputs = SftpCiphers.getThroughputs();
+        assertFalse("Ciphers were measured", throughputs.isEmpty());
+        Double[] values = throughputs.values().toArray(new Double[0]);
+        for (int i = 1; i < values.length; i++) {
+            assertTrue("The ciphers are ordered by throughput", values[i - 1] >= values[i]);
+        }
+
+        try (SftpFileSystem fileSystem = newFileSystem("cipher", SftpFileSystem.KEY_CIPHER_AUTO, "true")) {
+            assertTrue("The session is open with the fastest cipher of the server", Files.readAllBytes(fileSystem.getPath("pom.xml")).length > 0);
+        }
+
+    }
+
+    @Test
+    public void zlibCompression() throws Exception {
+
+        try (SftpFileSystem fileSystem = newFileSystem("zlib", SftpFileSystem.KEY_COMPRESSION, SftpFileSystem.COMPRESSION_ZLIB)) {
+            byte[] pom = Files.readAllBytes(fileSystem.getPath("pom.xml"));
+            assertArrayEquals("The content is the same", Files.readAllBytes(java.nio.file.Paths.get("pom.xml")), pom);
+            assertTrue("The session is compressed", isCompressed(fileSystem));
+        }
+
+    }
+
+    @Test
+    public void adaptiveCompression() throws Exception {
+
+        try (SftpFileSystem fileSystem = newFileSystem("adaptive", SftpFileSystem.KEY_COMPRESSION, SftpFileSystem.COMPRESSION_ADAPTIVE)) {
+
+            // Random bytes don't compress
+            Path random = fileSystem.getPath("target", "adaptiveCompression.bin");
+            Files.deleteIfExists(random);
+            byte[] randomBytes = new byte[128 * 1024];
+            new Random(0).nextBytes(randomBytes);
+            Files.write(random, randomBytes, StandardOpenOption.CREATE_NEW);
+            assertFalse("Random bytes are not compressed", fileSystem.isCompressionOn());
+
+            // Text does
+            Path text = fileSystem.getPath("target", "adaptiveCompression.txt");
+            Files.deleteIfExists(text);
+            byte[] textBytes = new byte[128 * 1024];
+            Arrays.fill(textBytes, (byte) 'a');
+            Files.write(text, textBytes, StandardOpenOption.CREATE_NEW);
+            assertTrue("Text is compressed", fileSystem.isCompressionOn());
+
+            // The key exchange is in the background
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!isCompressed(fileSystem) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue("The session is compressed", isCompressed(fileSystem));
+            assertArrayEquals("The content is the same after the key exchange", textBytes, Files.readAllBytes(text));
+
+        }
+
+    }
+
+}
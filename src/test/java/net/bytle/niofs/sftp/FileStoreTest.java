@@ -0,0 +1,99 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The file store and its cached space
+ * <p/>
+ * The mock server has no statvfs@openssh.com extension, the space comes from the df fallback
+ */
+public class FileStoreTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user, boolean df) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_FILESTORE_DF, String.valueOf(df));
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+    }
+
+    @Test
+    public void spaceWithDf() throws IOException {
+
+        try (SftpFileSystem fileSystem = newFileSystem("filestore", true)) {
+
+            assertFalse("The mock server has no statvfs", fileSystem.getServerCapabilities().hasExtension(SftpServerCapabilities.STATVFS));
+            Path directory = fileSystem.getPath("target");
+            FileStore fileStore = Files.getFileStore(directory);
+            assertTrue("A total space", fileStore.getTotalSpace() > 0);
+            assertTrue("The usable space is in the total space", fileStore.getUsableSpace() > 0 && fileStore.getUsableSpace() <= fileStore.getTotalSpace());
+            assertTrue("The unallocated space is in the total space", fileStore.getUnallocatedSpace() >= fileStore.getUsableSpace() && fileStore.getUnallocatedSpace() <= fileStore.getTotalSpace());
+            assertEquals("The attribute", fileStore.getTotalSpace(), fileStore.getAttribute("totalSpace"));
+            assertNotNull("A name", fileStore.name());
+
+            // Cached
+            for (int i = 0; i < 10; i++) {
+                assertSame("The same store", fileStore, Files.getFileStore(directory));
+                fileStore.getUsableSpace();
+            }
+            assertEquals("One request", 1L, (long) fileSystem.getMetrics().getOperationCounts().get(SftpCommand.STATVFS.name()));
+
+            // Another path of the same remote file system: one request for its id, the same store
+            FileStore sourceStore = Files.getFileStore(fileSystem.getPath("src"));
+            assertSame("The store of the file system id", fileStore, sourceStore);
+            assertEquals("Equal", fileStore, sourceStore);
+            assertEquals("The hash code", fileStore.hashCode(), sourceStore.hashCode());
+            sourceStore.getUsableSpace();
+            assertEquals("One request for the new path", 2L, (long) fileSystem.getMetrics().getOperationCounts().get(SftpCommand.STATVFS.name()));
+
+            assertTrue("The store of the root", fileSystem.getFileStores().iterator().hasNext());
+
+            try {
+                Files.getFileStore(fileSystem.getPath("target", "missing"));
+                fail("The path doesn't exist");
+            } catch (NoSuchFileException e) {
+                // expected
+            }
+
+        }
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void withoutStatVfsAndDf() throws IOException {
+
+        try (SftpFileSystem fileSystem = newFileSystem("filestore-none", false)) {
+            Files.getFileStore(fileSystem.getPath("target"));
+        }
+
+    }
+
+}
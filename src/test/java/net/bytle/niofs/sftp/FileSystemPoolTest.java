@@ -0,0 +1,297 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The file systems are pooled by the provider (one by user, host, port and working directory)
+ */
+public class FileSystemPoolTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static URI uri(String user) {
+        return URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+    }
+
+    private static Map<String, String> workingDirectory(String directory) {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR + directory);
+        return env;
+    }
+
+    @Test
+    public void oneFileSystemForConcurrentCalls() throws Exception {
+
+        URI uri = URI.create(TestFileSystemParameters.URL);
+        Map<String, String> env = workingDirectory("/src");
+
+        int threads = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<FileSystem>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                return sftpFileSystemProvider.newFileSystem(uri, env);
+            }));
+        }
+        start.countDown();
+        FileSystem fileSystem = futures.get(0).get();
+        for (Future<FileSystem> future : futures) {
+            assertSame("The same file system", fileSystem, future.get());
+        }
+        executorService.shutdown();
+
+        // The password is not part of the id
+        URI uriWithoutPassword = URI.create("sftp://" + TestFileSystemParameters.USER + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        assertSame("The file system without password", fileSystem, sftpFileSystemProvider.newFileSystem(uriWithoutPassword, env));
+
+        // Another password doesn't share the file system or its session
+        URI uriWithAnotherPassword = URI.create("sftp://" + TestFileSystemParameters.USER + ":another@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        SftpFileSystem anotherFileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uriWithAnotherPassword, env);
+        try {
+            assertNotSame("Another file system", fileSystem, anotherFileSystem);
+            assertTrue("The directory exists", Files.isDirectory(anotherFileSystem.getPath("test")));
+            assertTrue("The directory exists", Files.isDirectory(fileSystem.getPath("test")));
+            assertNotSame("Another session", ((SftpFileSystem) fileSystem).getSession(), anotherFileSystem.getSession());
+        } finally {
+            anotherFileSystem.close();
+        }
+
+        // A closed file system leaves the pool
+        fileSystem.close();
+        FileSystem newFileSystem = sftpFileSystemProvider.newFileSystem(uri, env);
+        assertNotSame("A new file system after the close", fileSystem, newFileSystem);
+        newFileSystem.close();
+
+    }
+
+    @Test
+    public void idleSessionIsClosed() throws IOException, InterruptedException {
+
+        Map<String, String> env = workingDirectory("/src/test");
+        env.put(SftpFileSystem.KEY_IDLE_TIMEOUT, "200");
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("idle"), env);
+        try {
+
+            assertTrue("The directory exists", Files.exists(fileSystem.getPath("resources")));
+            assertTrue("Connected", fileSystem.isConnected());
+
+            Thread.sleep(1000);
+            assertFalse("The idle session is closed", fileSystem.isConnected());
+            assertTrue("The file system is still open", fileSystem.isOpen());
+
+            assertTrue("The directory exists after a reconnection", Files.exists(fileSystem.getPath("resources")));
+
+        } finally {
+            fileSystem.close();
+        }
+
+    }
+
+    @Test
+    public void idleSessionIsClosedWhenTheHostLimitIsReached() throws IOException {
+
+        Map<String, String> firstEnv = workingDirectory("/src/main");
+        firstEnv.put(SftpFileSystem.KEY_SESSIONS_MAX_PER_HOST, "1");
+        Map<String, String> secondEnv = workingDirectory("/src/test/resources");
+        secondEnv.put(SftpFileSystem.KEY_SESSIONS_MAX_PER_HOST, "1");
+        secondEnv.put(SftpFileSystem.KEY_SESSIONS_WAIT_TIMEOUT, "1000");
+
+        SftpFileSystem first = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("first"), firstEnv);
+        SftpFileSystem second = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("second"), secondEnv);
+        try {
+
+            assertTrue("The directory exists", Files.exists(first.getPath("java")));
+            assertTrue("The first is connected", first.isConnected());
+
+            assertTrue("The directory exists", Files.exists(second.getPath("sftp")));
+            assertTrue("The second is connected", second.isConnected());
+            assertFalse("The idle session of the first was closed", first.isConnected());
+
+        } finally {
+            first.close();
+            second.close();
+        }
+
+    }
+
+    /**
+     * The file systems of a user on a host share the session whatever their working directory
+     */
+    @Test
+    public void oneSessionByUserAndHost() throws IOException {
+
+        SftpFileSystem main = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("shared"), workingDirectory("/src/main"));
+        SftpFileSystem test = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("shared"), workingDirectory("/src/test"));
+        try {
+
+            assertNotSame("Two file systems", main, test);
+            assertSame("One session", main.getSession(), test.getSession());
+
+            // The relative paths are resolved against the working directory of each file system
+            assertTrue("The directory of main exists", Files.isDirectory(main.getPath("java")));
+            assertTrue("The directory of test exists", Files.isDirectory(test.getPath("resources")));
+            assertTrue("The file of test exists", Files.exists(test.getPath("resources", "sftp", "testFileRead.txt")));
+            assertFalse("The file of test is not in main", Files.exists(main.getPath("resources", "sftp", "testFileRead.txt")));
+
+            // The session stays open until the last file system is closed
+            main.close();
+            assertTrue("The session is still open", test.isConnected());
+            assertTrue("The directory of test exists", Files.isDirectory(test.getPath("resources")));
+
+        } finally {
+            main.close();
+            test.close();
+        }
+        assertFalse("The session is closed with the last file system", test.isConnected());
+
+    }
+
+    /**
+     * The session is opened in the background
+     */
+    @Test
+    public void eagerConnection() throws IOException, InterruptedException {
+
+        Map<String, String> env = workingDirectory("/src");
+        env.put(SftpFileSystem.KEY_CONNECT_EAGER, "true");
+        env.put(SftpFileSystem.KEY_CHANNEL_POOL_MIN, "2");
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("eager"), env);
+        try {
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!fileSystem.isConnected() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("Connected without any operation", fileSystem.isConnected());
+            assertTrue("The directory exists", Files.isDirectory(fileSystem.getPath("test")));
+
+        } finally {
+            fileSystem.close();
+        }
+
+    }
+
+    /**
+     * The blocking calls are executed on the I/O threads of the session
+     */
+    @Test
+    public void dispatchMode() throws Exception {
+
+        Map<String, String> env = workingDirectory("/src/test/resources/sftp");
+        env.put(SftpFileSystem.KEY_EXECUTION_MODE, SftpFileSystem.EXECUTION_MODE_DISPATCH);
+        env.put(SftpFileSystem.KEY_CHANNEL_POOL_MAX, "2");
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("dispatch"), env);
+        try {
+
+            // More callers than channels
+            int callers = 32;
+            ExecutorService executorService = Executors.newFixedThreadPool(callers);
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                reads.add(executorService.submit(() -> {
+                    assertTrue("The file exists", Files.exists(fileSystem.getPath("testFileRead.txt")));
+                    return Files.readAllBytes(fileSystem.getPath("testFileRead.txt"));
+                }));
+            }
+            for (Future<byte[]> read : reads) {
+                assertEquals("The file size", 38, read.get(30, TimeUnit.SECONDS).length);
+            }
+            executorService.shutdown();
+
+        } finally {
+            fileSystem.close();
+        }
+
+    }
+
+    /**
+     * Between two users, a move is a copy and a delete: the options of the caller are honoured
+     * and a directory with entries is not moved
+     */
+    @Test
+    public void moveBetweenTwoUsers() throws IOException {
+
+        Path local = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "crossMove");
+        Files.createDirectories(local.resolve("full"));
+        Files.createDirectories(local.resolve("empty"));
+        Files.write(local.resolve("full").resolve("entry.txt"), "entry".getBytes());
+        Files.write(local.resolve("source.txt"), "source".getBytes());
+        Files.write(local.resolve("target.txt"), "target".getBytes());
+        Files.deleteIfExists(local.resolve("moved"));
+        Files.deleteIfExists(local.resolve("full-moved"));
+
+        SftpFileSystem source = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("move-source"), workingDirectory("/target/crossMove"));
+        SftpFileSystem target = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri("move-target"), workingDirectory("/target/crossMove"));
+        try {
+
+            try {
+                Files.move(source.getPath("source.txt"), target.getPath("target.txt"));
+                fail("The target exists");
+            } catch (FileAlreadyExistsException e) {
+                // expected
+            }
+            assertEquals("The target is untouched", "target", new String(Files.readAllBytes(local.resolve("target.txt"))));
+            assertTrue("The source is untouched", Files.exists(local.resolve("source.txt")));
+
+            Files.move(source.getPath("source.txt"), target.getPath("target.txt"), StandardCopyOption.REPLACE_EXISTING);
+            assertEquals("The target is replaced", "source", new String(Files.readAllBytes(local.resolve("target.txt"))));
+            assertFalse("The source is deleted", Files.exists(local.resolve("source.txt")));
+
+            try {
+                Files.move(source.getPath("full"), target.getPath("full-moved"));
+                fail("The directory has an entry");
+            } catch (DirectoryNotEmptyException e) {
+                // expected
+            }
+            assertFalse("Nothing was copied", Files.exists(local.resolve("full-moved")));
+            assertTrue("The source is untouched", Files.exists(local.resolve("full").resolve("entry.txt")));
+
+            Files.move(source.getPath("empty"), target.getPath("moved"));
+            assertTrue("The empty directory is moved", Files.isDirectory(local.resolve("moved")));
+            assertFalse("The source directory is deleted", Files.exists(local.resolve("empty")));
+
+        } finally {
+            source.close();
+            target.close();
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownExecutionMode() throws IOException {
+
+        Map<String, String> env = workingDirectory("/src");
+        env.put(SftpFileSystem.KEY_EXECUTION_MODE, "parallel");
+        sftpFileSystemProvider.newFileSystem(uri("unknown"), env);
+
+    }
+
+}
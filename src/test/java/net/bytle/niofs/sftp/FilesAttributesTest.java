@@ -1,5 +1,6 @@
 package net.bytle.niofs.sftp;
 
+import com.jcraft.jsch.SftpATTRS;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,6 +9,7 @@ import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
@@ -109,4 +111,84 @@ public class FilesAttributesTest {
         }
 
     }
+
+    @Test
+    public void bulkAttributesUpdate() throws IOException {
+
+        Path file = sftpFileSystem.getPath("src", "test", "resources", "sftp", "testFileRead.txt");
+
+        String lastModifiedTimeTxt = "2016-06-01T10:10:10Z";
+        String lastAccessTimeTxt = "2016-06-02T11:11:11Z";
+        Set<PosixFilePermission> expectedPermission = new HashSet<PosixFilePermission>();
+        expectedPermission.add(PosixFilePermission.OWNER_READ);
+        expectedPermission.add(PosixFilePermission.OWNER_WRITE);
+        expectedPermission.add(PosixFilePermission.GROUP_READ);
+
+        SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder builder = new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .lastModifiedTime(FileTime.from(Instant.parse(lastModifiedTimeTxt)))
+                .lastAccessTime(FileTime.from(Instant.parse(lastAccessTimeTxt)));
+        if (!testFileSystem.isWindows()) {
+            builder.permissions(expectedPermission);
+        }
+        builder.build().apply(file);
+
+        PosixFileAttributes attrs = Files.readAttributes(file, PosixFileAttributes.class);
+        assertEquals("The last modified time is: ", lastModifiedTimeTxt, attrs.lastModifiedTime().toString());
+        assertEquals("The last access time is ", lastAccessTimeTxt, attrs.lastAccessTime().toString());
+        if (!testFileSystem.isWindows()) {
+            assertEquals("The permissions are equal", expectedPermission, attrs.permissions());
+        }
+
+    }
+
+    @Test
+    public void attributesSetAtCreation() throws IOException {
+
+        Path file = sftpFileSystem.getPath("target", "attributesSetAtCreation.txt");
+        Files.deleteIfExists(file);
+
+        String lastModifiedTimeTxt = "2016-07-03T12:12:12Z";
+        final FileTime lastModifiedTime = FileTime.from(Instant.parse(lastModifiedTimeTxt));
+        FileAttribute<FileTime> lastModifiedTimeAttribute = new FileAttribute<FileTime>() {
+            public String name() {
+                return "basic:lastModifiedTime";
+            }
+
+            public FileTime value() {
+                return lastModifiedTime;
+            }
+        };
+        Files.createFile(file, lastModifiedTimeAttribute);
+
+        assertEquals("The last modified time is set when the file is closed", lastModifiedTimeTxt, Files.getLastModifiedTime(file).toString());
+
+    }
+
+    @Test
+    public void fileAttributesMask() {
+
+        Set<PosixFilePermission> permissions = new HashSet<PosixFilePermission>();
+        permissions.add(PosixFilePermission.OWNER_READ);
+        permissions.add(PosixFilePermission.OWNER_WRITE);
+        permissions.add(PosixFilePermission.OWNER_EXECUTE);
+        permissions.add(PosixFilePermission.GROUP_READ);
+        permissions.add(PosixFilePermission.GROUP_EXECUTE);
+        assertEquals("The mode is 0750", 0750, SftpPosixFileAttributes.toMode(permissions));
+
+        SftpFileAttributesUpdate timesOnly = new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .lastModifiedTime(FileTime.fromMillis(0))
+                .lastAccessTime(FileTime.fromMillis(0))
+                .permissions(permissions)
+                .build();
+        assertFalse("A complete update doesn't need a stat", timesOnly.needsCurrentAttributes());
+        assertEquals("Only the times and the permissions are sent",
+                SftpATTRS.SSH_FILEXFER_ATTR_ACMODTIME | SftpATTRS.SSH_FILEXFER_ATTR_PERMISSIONS,
+                timesOnly.toSftpATTRS(null).getFlags());
+
+        SftpFileAttributesUpdate oneTime = new SftpFileAttributesUpdate.SftpFileAttributesUpdateBuilder()
+                .lastModifiedTime(FileTime.fromMillis(0))
+                .build();
+        assertTrue("An incomplete times pair needs a stat", oneTime.needsCurrentAttributes());
+
+    }
 }
@@ -1,13 +1,17 @@
 package net.bytle.niofs.sftp;
 
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.file.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by gerard on 23-05-2016.
@@ -69,5 +73,118 @@ public class FilesTest {
 
     }
 
+    /**
+     * The directories are created with absolute paths,
+     * the current directory of the channel must not change
+     */
+    @Test
+    public void createDirectories() throws IOException, SftpException {
+
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystem;
+        String currentDirectory = fileSystem.execute(SftpCommand.PWD, ChannelSftp::pwd);
+
+        Path directory = sftpFileSystem.getPath("target", "createDirectories", "a", "b");
+        Files.createDirectories(directory);
+        assertEquals("The directory was created", true, Files.isDirectory(directory));
+        assertEquals("The current directory of the channel has not changed", currentDirectory, fileSystem.execute(SftpCommand.PWD, ChannelSftp::pwd));
+        assertEquals("The directory is known", true, fileSystem.isKnownDirectory(((SftpPath) directory).toAbsolutePath()));
+
+        // A second time, the directory is known
+        Files.createDirectories(directory);
+
+        Files.delete(directory);
+        assertEquals("A deleted directory is no more known", false, fileSystem.isKnownDirectory(((SftpPath) directory).toAbsolutePath()));
+        Files.createDirectories(directory);
+        assertEquals("The directory was created again", true, Files.isDirectory(directory));
+
+    }
+
+    /**
+     * The capabilities are read once by session
+     */
+    @Test
+    public void serverCapabilities() throws IOException {
+
+        SftpServerCapabilities capabilities = ((SftpFileSystem) sftpFileSystem).getServerCapabilities();
+        assertEquals("The SFTP version is at least 3", true, capabilities.getVersion() >= 3);
+        assertEquals("The capabilities are shared", capabilities, ((SftpFileSystem) sftpFileSystem).getServerCapabilities());
+
+    }
+
+    @Test
+    public void copyAndMove() throws IOException {
+
+        Path directory = sftpFileSystem.getPath("target", "copyAndMove");
+        Files.createDirectories(directory);
+        Path source = directory.resolve("source.txt");
+        Path copy = directory.resolve("copy.txt");
+        Path moved = directory.resolve("moved.txt");
+        for (Path path : new Path[]{source, copy, moved}) {
+            Files.deleteIfExists(path);
+        }
+        Files.write(source, "Hello copy".getBytes(), StandardOpenOption.CREATE_NEW);
+
+        Files.copy(source, copy, StandardCopyOption.COPY_ATTRIBUTES);
+        assertEquals("The content was copied", "Hello copy", new String(Files.readAllBytes(copy)));
+        assertEquals("The modification time was copied", Files.getLastModifiedTime(source), Files.getLastModifiedTime(copy));
+        try {
+            Files.copy(source, copy);
+            throw new AssertionError("The target exists");
+        } catch (FileAlreadyExistsException e) {
+            // Expected
+        }
+
+        Files.move(copy, moved);
+        assertEquals("The source was moved", false, Files.exists(copy));
+        assertEquals("The target was moved", "Hello copy", new String(Files.readAllBytes(moved)));
+
+        Files.move(moved, source, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("The target was replaced", "Hello copy", new String(Files.readAllBytes(source)));
+        assertEquals("The source was moved", false, Files.exists(moved));
+
+    }
+
+    /**
+     * A move without REPLACE_EXISTING sends the rename of the protocol (that fails on an existing target)
+     * even if JSch would send posix-rename@openssh.com.
+     * The mock server doesn't have the extension: the posix-rename flag of JSch is forced on the channel.
+     */
+    @Test
+    public void renameWithoutReplace() throws Exception {
+
+        Path directory = sftpFileSystem.getPath("target", "renameWithoutReplace");
+        Files.createDirectories(directory);
+        Path source = directory.resolve("source.txt");
+        Path target = directory.resolve("target.txt");
+        for (Path path : new Path[]{source, target}) {
+            Files.deleteIfExists(path);
+        }
+        Files.write(source, "Hello rename".getBytes(), StandardOpenOption.CREATE_NEW);
+        String sourceString = source.toAbsolutePath().toString();
+        String targetString = target.toAbsolutePath().toString();
+
+        Field posixRename = ChannelSftp.class.getDeclaredField("extension_posix_rename");
+        posixRename.setAccessible(true);
+        ((SftpFileSystem) sftpFileSystem).execute(SftpCommand.RENAME, channelSftp -> {
+            try {
+                posixRename.setBoolean(channelSftp, true);
+                try {
+                    channelSftp.rename(sourceString, targetString);
+                    throw new AssertionError("The mock server has no posix-rename extension");
+                } catch (SftpException e) {
+                    // Expected
+                }
+                SftpFileSystemProvider.renameWithoutReplace(channelSftp, sourceString, targetString);
+                assertTrue("The flag is restored", posixRename.getBoolean(channelSftp));
+                posixRename.setBoolean(channelSftp, false);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+            return null;
+        });
+        assertEquals("The source was renamed", false, Files.exists(source));
+        assertEquals("The target was renamed", "Hello rename", new String(Files.readAllBytes(target)));
+
+    }
 
 }
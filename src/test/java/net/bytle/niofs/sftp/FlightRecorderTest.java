@@ -0,0 +1,96 @@
+package net.bytle.niofs.sftp;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The Java Flight Recorder events of the requests and of the transfers
+ */
+public class FlightRecorderTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    @Test
+    public void requestAndTransferEvents() throws Exception {
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        URI uri = URI.create("sftp://jfr:" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        Path recordingFile = Files.createTempFile("sftp", ".jfr");
+
+        byte[] bytes = "Hello flight recorder".getBytes();
+        String stringPath;
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+             Recording recording = new Recording()) {
+
+            recording.enable(SftpRequestEvent.class);
+            recording.enable(SftpTransferEvent.class);
+            recording.start();
+
+            Path file = fileSystem.getPath("target", "flightRecorder.txt");
+            stringPath = ((SftpPath) file).getStringPath();
+            Files.deleteIfExists(file);
+            Files.write(file, bytes, StandardOpenOption.CREATE_NEW);
+            assertArrayEquals("The content", bytes, Files.readAllBytes(file));
+
+            recording.stop();
+            recording.dump(recordingFile);
+
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        Files.delete(recordingFile);
+
+        List<RecordedEvent> requests = events.stream()
+                .filter(event -> event.getEventType().getName().equals("net.bytle.niofs.sftp.Request"))
+                .collect(Collectors.toList());
+        assertTrue("Request events", requests.size() > 0);
+        RecordedEvent read = requests.stream()
+                .filter(event -> event.getString("operation").equals(SftpCommand.READ.name()) && event.getLong("bytes") > 0)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No read event"));
+        assertEquals("The path of the read", stringPath, read.getString("path"));
+        assertEquals("The bytes of the read", bytes.length, read.getLong("bytes"));
+        assertTrue("The session of the read", read.getString("sessionId").startsWith("jfr@"));
+
+        List<RecordedEvent> transfers = events.stream()
+                .filter(event -> event.getEventType().getName().equals("net.bytle.niofs.sftp.Transfer"))
+                .collect(Collectors.toList());
+        assertEquals("A write and a read transfer", 2, transfers.size());
+        for (RecordedEvent transfer : transfers) {
+            String direction = transfer.getString("direction");
+            long transferred = direction.equals(SftpTransferEvent.READ) ? transfer.getLong("bytesRead") : transfer.getLong("bytesWritten");
+            assertEquals("The bytes of the " + direction + " transfer", bytes.length, transferred);
+        }
+
+    }
+
+}
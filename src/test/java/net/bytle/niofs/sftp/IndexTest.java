@@ -0,0 +1,198 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The local index of a remote subtree
+ */
+public class IndexTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    private static final Path LOCAL_ROOT = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "index");
+    private static final Path INDEX_FILE = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "index-test.index");
+    // A modification time that is never older than a listing
+    private static final FileTime SAME_SECOND = FileTime.fromMillis(System.currentTimeMillis() + 3600000);
+
+    @BeforeClass
+    static public void startServer() throws IOException {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+        Files.deleteIfExists(INDEX_FILE);
+        if (Files.exists(LOCAL_ROOT)) {
+            try (Stream<Path> paths = Files.walk(LOCAL_ROOT)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(LOCAL_ROOT.resolve("a").resolve("b"));
+        Files.createDirectories(LOCAL_ROOT.resolve("c"));
+        Files.write(LOCAL_ROOT.resolve("root.txt"), "root".getBytes());
+        Files.write(LOCAL_ROOT.resolve("a").resolve("a.txt"), "in a".getBytes());
+        Files.write(LOCAL_ROOT.resolve("a").resolve("b").resolve("b.txt"), "in b".getBytes());
+        // Modified before their listing
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 3600000);
+        for (Path directory : new Path[]{LOCAL_ROOT, LOCAL_ROOT.resolve("a"), LOCAL_ROOT.resolve("c")}) {
+            Files.setLastModifiedTime(directory, past);
+        }
+        // Modified in the second of its listing (or later)
+        Files.setLastModifiedTime(LOCAL_ROOT.resolve("a").resolve("b"), SAME_SECOND);
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user, int staleness) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_INDEX_ROOT, LOCAL_ROOT.toString());
+        env.put(SftpFileSystem.KEY_INDEX_FILE, INDEX_FILE.toString());
+        env.put(SftpFileSystem.KEY_INDEX_STALENESS, String.valueOf(staleness));
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+    }
+
+    private static long count(SftpFileSystem fileSystem, SftpCommand command) {
+        return fileSystem.getMetrics().getOperationCounts().getOrDefault(command.name(), 0L);
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                names.add(path.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private static void waitRefresh(SftpIndex index, long refreshTime) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (index.getRefreshTime() <= refreshTime && System.currentTimeMillis() - start < 30000) {
+            Thread.sleep(20);
+        }
+        assertTrue("The index was refreshed", index.getRefreshTime() > refreshTime);
+    }
+
+    private static void waitFresh(SftpIndex index) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!index.isFresh() && System.currentTimeMillis() - start < 30000) {
+            Thread.sleep(20);
+        }
+        assertTrue("The index was built", index.isFresh());
+    }
+
+    @Test
+    public void buildQueryRefreshAndLoad() throws Exception {
+
+        try (SftpFileSystem fileSystem = newFileSystem("index-build", 600000)) {
+
+            // Built in the background
+            SftpIndex index = fileSystem.getIndex();
+            waitFresh(index);
+            assertEquals("The directories", 4, index.getDirectoryCount());
+            assertTrue("Saved", Files.size(INDEX_FILE) > 0);
+
+            long stats = count(fileSystem, SftpCommand.STAT);
+            long listings = count(fileSystem, SftpCommand.LS);
+            Path a = fileSystem.getPath(LOCAL_ROOT.toString(), "a");
+            assertEquals("The size from the index", 4, Files.readAttributes(a.resolve("a.txt"), BasicFileAttributes.class).size());
+            assertTrue("A directory from the index", Files.isDirectory(a.resolve("b")));
+            assertFalse("Missing from the index", Files.exists(a.resolve("missing")));
+            assertEquals("The listing from the index", 2, list(a).size());
+            assertEquals("No stat", stats, count(fileSystem, SftpCommand.STAT));
+            assertEquals("No listing", listings, count(fileSystem, SftpCommand.LS));
+
+            // A file added in a/b in the second of its listing doesn't change its modification time
+            Files.write(LOCAL_ROOT.resolve("a").resolve("b").resolve("new.txt"), "new".getBytes());
+            Files.setLastModifiedTime(LOCAL_ROOT.resolve("a").resolve("b"), SAME_SECOND);
+            listings = count(fileSystem, SftpCommand.LS);
+            index.refresh();
+            assertEquals("Only a/b is listed again", listings + 1, count(fileSystem, SftpCommand.LS));
+            assertTrue("The new file", list(a.resolve("b")).contains("new.txt"));
+
+        }
+
+        long refreshTime;
+
+        // Loaded from the file
+        try (SftpFileSystem fileSystem = newFileSystem("index-load", 600000)) {
+
+            SftpIndex index = fileSystem.getIndex();
+            refreshTime = index.getRefreshTime();
+            assertTrue("Fresh", index.isFresh());
+            assertEquals("The directories", 4, index.getDirectoryCount());
+            assertEquals("The listing", 2, list(fileSystem.getPath(LOCAL_ROOT.toString(), "a", "b")).size());
+            assertEquals("No listing", 0, count(fileSystem, SftpCommand.LS));
+
+            // A write removes its directory from the index
+            Path written = fileSystem.getPath(LOCAL_ROOT.toString(), "c", "written.txt");
+            Files.write(written, "written".getBytes(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            assertEquals("The new file from the server", 1, list(written.getParent()).size());
+            assertEquals("One listing", 1, count(fileSystem, SftpCommand.LS));
+
+        }
+
+        // The change was written in the file
+        try (SftpFileSystem fileSystem = newFileSystem("index-journal", 600000)) {
+
+            SftpIndex index = fileSystem.getIndex();
+            assertEquals("The changed directory is not loaded", 3, index.getDirectoryCount());
+            Path written = fileSystem.getPath(LOCAL_ROOT.toString(), "c", "written.txt");
+            assertTrue("The new file from the server", Files.exists(written));
+            assertEquals("The listing from the server", 1, list(written.getParent()).size());
+
+        }
+
+        // Too old
+        try (SftpFileSystem fileSystem = newFileSystem("index-stale", 0)) {
+
+            SftpIndex index = fileSystem.getIndex();
+            assertFalse("Stale", index.isFresh());
+            assertEquals("The listing", 2, list(fileSystem.getPath(LOCAL_ROOT.toString(), "a", "b")).size());
+            assertTrue("From the server", count(fileSystem, SftpCommand.LS) >= 1);
+
+            // Refreshed in the background
+            waitRefresh(index, refreshTime);
+            assertEquals("The directories", 4, index.getDirectoryCount());
+
+        }
+
+        // Saved by the refresh
+        try (SftpFileSystem fileSystem = newFileSystem("index-refreshed", 600000)) {
+
+            assertEquals("The directories", 4, fileSystem.getIndex().getDirectoryCount());
+            assertEquals("The changed directory from the index", 1, list(fileSystem.getPath(LOCAL_ROOT.toString(), "c")).size());
+            assertEquals("No listing", 0, count(fileSystem, SftpCommand.LS));
+
+        }
+
+    }
+
+}
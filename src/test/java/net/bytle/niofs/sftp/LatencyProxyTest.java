@@ -0,0 +1,105 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The file system behind a {@link LatencyProxy} that simulates a wide area link
+ */
+public class LatencyProxyTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    // 1 Mb: 32 read requests of 32 Kb
+    private static final byte[] BYTES = new byte[1024 * 1024];
+    private static Path localFile;
+
+    @BeforeClass
+    static public void startServer() throws IOException {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+        new Random(42).nextBytes(BYTES);
+        localFile = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "wan.bin");
+        Files.createDirectories(localFile.getParent());
+        Files.write(localFile, BYTES);
+    }
+
+    @AfterClass
+    static public void stopServer() throws IOException {
+        mockSftpServer.stop();
+        Files.deleteIfExists(localFile);
+    }
+
+    /**
+     * @return the time in ms of the read of the file
+     */
+    private static long read(String user, LatencyProxy proxy, int bulkRequests) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_WINDOW_AUTO, "false");
+        env.put(SftpFileSystem.KEY_BULK_REQUESTS, String.valueOf(bulkRequests));
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + proxy.getPort());
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env)) {
+            Path file = fileSystem.getPath("target", "wan.bin");
+            // Connection
+            Files.size(file);
+            long start = System.nanoTime();
+            assertArrayEquals("The content", BYTES, Files.readAllBytes(file));
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    @Test
+    public void pipeliningHidesLatency() throws IOException {
+
+        // A round trip of 50 ms
+        try (LatencyProxy proxy = new LatencyProxy.LatencyProxyBuilder(TestFileSystemParameters.PORT)
+                .latency(25)
+                .build()
+                .start()) {
+
+            long oneRequest = read("wan-one", proxy, 1);
+            long pipelined = read("wan-pipelined", proxy, 16);
+            assertTrue("One request in flight waits a round trip by request (" + oneRequest + " ms)", oneRequest >= 32 * 50);
+            assertTrue("The pipelined read (" + pipelined + " ms) hides the latency of the read with one request (" + oneRequest + " ms)", pipelined * 2 < oneRequest);
+
+        }
+
+    }
+
+    @Test
+    public void bandwidthJitterAndPauses() throws IOException {
+
+        long bandwidth = 4 * 1024 * 1024;
+        try (LatencyProxy proxy = new LatencyProxy.LatencyProxyBuilder(TestFileSystemParameters.PORT)
+                .latency(5)
+                .jitter(10)
+                .bandwidth(bandwidth)
+                .pause(100, 20)
+                .build()
+                .start()) {
+
+            // The content is checked: the jitter keeps the order of the bytes
+            long millis = read("wan-shaped", proxy, 16);
+            long minimum = BYTES.length * 1000L / bandwidth;
+            assertTrue("The read (" + millis + " ms) is capped by the bandwidth (" + minimum + " ms)", millis >= minimum);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A short run of the load harness: concurrent clients on one file system and on their own file system
+ */
+public class LoadHarnessTest {
+
+    private static void assertNoFailure(SftpLoadHarness harness) {
+        for (Map.Entry<String, Long> count : harness.getOperationCounts().entrySet()) {
+            assertTrue("The operation " + count.getKey() + " was executed", count.getValue() > 0);
+        }
+        assertEquals("No error", "{}", harness.getErrors().toString());
+        assertEquals("No thread-safety failure", "[]", harness.getFailures().toString());
+    }
+
+    @Test
+    public void sharedFileSystem() throws Exception {
+
+        SftpLoadHarness harness = new SftpLoadHarness.SftpLoadHarnessBuilder()
+                .clients(8)
+                .shared(true)
+                .duration(3)
+                .interval(1)
+                .build();
+        harness.run();
+        assertNoFailure(harness);
+
+    }
+
+    @Test
+    public void fileSystemByClient() throws Exception {
+
+        SftpLoadHarness harness = new SftpLoadHarness.SftpLoadHarnessBuilder()
+                .clients(4)
+                .duration(3)
+                .interval(1)
+                .build();
+        harness.run();
+        assertNoFailure(harness);
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The metrics of a file system, in JMX and with a listener
+ */
+public class MetricsTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    @Test
+    public void metrics() throws Exception {
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        URI uri = URI.create("sftp://metrics:" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+        SftpMetrics metrics = fileSystem.getMetrics();
+
+        AtomicLong listenedOperations = new AtomicLong();
+        AtomicLong listenedBytesWritten = new AtomicLong();
+        metrics.addListener(new SftpMetricsListener() {
+            @Override
+            public void onOperation(SftpCommand command, long nanos, boolean success) {
+                listenedOperations.incrementAndGet();
+            }
+
+            @Override
+            public void onBytesWritten(long bytes) {
+                listenedBytesWritten.addAndGet(bytes);
+            }
+        });
+
+        Path directory = fileSystem.getPath("target", "metrics");
+        Files.createDirectories(directory);
+        Path file = directory.resolve("metrics.txt");
+        Files.deleteIfExists(file);
+        byte[] bytes = "Hello metrics".getBytes();
+        Files.write(file, bytes, StandardOpenOption.CREATE_NEW);
+        assertArrayEquals("The content", bytes, Files.readAllBytes(file));
+        assertFalse("The file doesn't exist", Files.exists(directory.resolve("missing.txt")));
+
+        assertTrue("Stats were executed", metrics.getOperationCounts().get(SftpCommand.STAT.name()) > 0);
+        assertTrue("A stat of a missing file is an error", metrics.getOperationErrors().get(SftpCommand.STAT.name()) > 0);
+        assertEquals("The bytes written", bytes.length, metrics.getBytesWritten());
+        assertEquals("The bytes read", bytes.length, metrics.getBytesRead());
+        assertTrue("Round trips", metrics.getRoundTrips() > 0);
+        assertEquals("The latencies of the reads", (long) metrics.getOperationCounts().get(SftpCommand.READ.name()), metrics.getLatencies(SftpCommand.READ).getCount());
+        assertTrue("The directory cache was used", metrics.getCacheHits() + metrics.getCacheMisses() > 0);
+
+        long operations = 0;
+        for (long count : metrics.getOperationCounts().values()) {
+            operations += count;
+        }
+        assertEquals("The listener got all operations", operations, listenedOperations.get());
+        assertEquals("The listener got the bytes written", bytes.length, listenedBytesWritten.get());
+
+        // JMX
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = metrics.getObjectName();
+        assertNotNull("The metrics are registered", objectName);
+        assertEquals("The bytes read in JMX", (long) bytes.length, mBeanServer.getAttribute(objectName, "BytesRead"));
+        assertNotNull("The latencies in JMX", mBeanServer.getAttribute(objectName, "LatencyP99Micros"));
+
+        fileSystem.close();
+        assertFalse("The metrics are unregistered with the close", mBeanServer.isRegistered(objectName));
+
+    }
+
+    /**
+     * Two live file systems with the same id (another password) have their own name in JMX
+     */
+    @Test
+    public void sameIdInJmx() throws Exception {
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        URI uri = URI.create("sftp://metrics-jmx:" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        URI anotherUri = URI.create("sftp://metrics-jmx:another@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+        SftpFileSystem anotherFileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(anotherUri, env);
+        try {
+
+            assertEquals("The same id", fileSystem.getId(), anotherFileSystem.getId());
+            ObjectName objectName = fileSystem.getMetrics().getObjectName();
+            ObjectName anotherObjectName = anotherFileSystem.getMetrics().getObjectName();
+            assertNotEquals("Two names", objectName, anotherObjectName);
+
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            fileSystem.close();
+            assertFalse("The first is unregistered", mBeanServer.isRegistered(objectName));
+            assertTrue("The other is still registered", mBeanServer.isRegistered(anotherObjectName));
+
+        } finally {
+            fileSystem.close();
+            anotherFileSystem.close();
+        }
+
+    }
+
+    @Test
+    public void latencyHistogram() {
+
+        SftpLatencyHistogram histogram = new SftpLatencyHistogram();
+        assertEquals("No latency", 0, histogram.getPercentileMicros(50));
+        for (int i = 0; i < 99; i++) {
+            // 100 microseconds
+            histogram.record(100_000);
+        }
+        // 10 ms
+        histogram.record(10_000_000);
+
+        assertEquals("The count", 100, histogram.getCount());
+        assertEquals("The median is in the bucket of 64 to 127 microseconds", 127, histogram.getPercentileMicros(50));
+        assertEquals("The 99th percentile", 127, histogram.getPercentileMicros(99));
+        assertEquals("The max is in the bucket of 8192 to 16383 microseconds", 16383, histogram.getPercentileMicros(100));
+        assertEquals("The mean", (99 * 100 + 10_000) / 100, histogram.getMeanMicros());
+
+    }
+
+}
@@ -1,7 +1,11 @@
 package net.bytle.niofs.sftp;
 
 import org.apache.sshd.SshServer;
+import org.apache.sshd.common.Compression;
 import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.compression.CompressionDelayedZlib;
+import org.apache.sshd.common.compression.CompressionNone;
+import org.apache.sshd.common.compression.CompressionZlib;
 import org.apache.sshd.server.Command;
 import org.apache.sshd.server.CommandFactory;
 import org.apache.sshd.server.PasswordAuthenticator;
@@ -25,17 +29,27 @@ import java.util.logging.Logger;
 public class MockSshSftpServer {
     static public final int PORT = 22999;
     private final String TIME_OUT = String.valueOf(5000.0);
+    private final int port;
     private SshServer sshd;
 
     private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
 
     public MockSshSftpServer() {
+        this(PORT);
+    }
+
+    /**
+     * @param port the port of the server (0 for a free port, See {@link #getPort()} after the start)
+     */
+    public MockSshSftpServer(int port) {
 
+        this.port = port;
         sshd = SshServer.setUpDefaultServer();
 
-        sshd.setPort(PORT);
+        sshd.setPort(port);
 
-        sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider("/src/test/resources/Sftp/hostkey.ser"));
+        // A DSA key of 1024 bits as the ssh-dss signature (SHA1withDSA) fails with the bigger default key of the recent JDK
+        sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider("/src/test/resources/Sftp/hostkey.ser", "DSA", 1024));
 
         sshd.setPasswordAuthenticator(new PasswordAuthenticator() {
 
@@ -71,6 +85,13 @@ public class MockSshSftpServer {
         namedFactoryList.add(new SftpSubsystem.Factory());
         sshd.setSubsystemFactories(namedFactoryList);
 
+        // The compressions of OpenSSH (the default server has none)
+        List<NamedFactory<Compression>> compressionFactories = new ArrayList<NamedFactory<Compression>>();
+        compressionFactories.add(new CompressionNone.Factory());
+        compressionFactories.add(new CompressionZlib.Factory());
+        compressionFactories.add(new CompressionDelayedZlib.Factory());
+        sshd.setCompressionFactories(compressionFactories);
+
 
     }
 
@@ -91,6 +112,13 @@ public class MockSshSftpServer {
         }
     }
 
+    /**
+     * @return the port of the server (the port given by the system once started if it was 0)
+     */
+    public int getPort() {
+        return sshd != null && sshd.getPort() != 0 ? sshd.getPort() : port;
+    }
+
     public void stop() {
         try {
             sshd.stop();
@@ -0,0 +1,143 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The listings and the contents as {@link Flow.Publisher}
+ */
+public class PublisherTest {
+
+    private static FileSystem sftpFileSystem;
+    private static TestFileSystem testFileSystem;
+
+
+    @BeforeClass
+    static public void createResources() {
+
+        testFileSystem = new TestFileSystem.TestFileSystemBuilder()
+                .useWorkingDirectory(false)
+                .build();
+        sftpFileSystem = testFileSystem.get();
+
+    }
+
+    @AfterClass
+    static public void closeResources() throws IOException {
+
+        testFileSystem.close();
+
+    }
+
+    /**
+     * A subscriber that requests one item at a time
+     */
+    private static class OneByOneSubscriber<T> implements Flow.Subscriber<T> {
+
+        private final List<T> items = new ArrayList<>();
+        private final CompletableFuture<List<T>> completion = new CompletableFuture<>();
+        private final int cancelAfter;
+        private Flow.Subscription subscription;
+
+        OneByOneSubscriber(int cancelAfter) {
+            this.cancelAfter = cancelAfter;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        public void onNext(T item) {
+            items.add(item);
+            if (items.size() == cancelAfter) {
+                subscription.cancel();
+                completion.complete(items);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        public void onComplete() {
+            completion.complete(items);
+        }
+
+        List<T> get() throws Exception {
+            return completion.get(10, TimeUnit.SECONDS);
+        }
+
+    }
+
+    @Test
+    public void directoryPublisher() throws Exception {
+
+        Path directory = sftpFileSystem.getPath("src", "test", "resources", "sftp");
+        List<String> expected = new ArrayList<>();
+        try (java.nio.file.DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                expected.add(path.getFileName().toString());
+            }
+        }
+
+        OneByOneSubscriber<SftpPath> subscriber = new OneByOneSubscriber<>(Integer.MAX_VALUE);
+        new SftpDirectoryPublisher(directory).subscribe(subscriber);
+        List<String> names = new ArrayList<>();
+        for (SftpPath path : subscriber.get()) {
+            names.add(path.getFileName().toString());
+            assertNotNull("The attributes of the listing", path.getListingAttributes());
+            if (path.getFileName().toString().equals("testFileRead.txt")) {
+                assertEquals("The size of the listing", 38, path.getListingAttributes().size());
+            }
+        }
+        assertEquals("The entries", expected.size(), names.size());
+        assertTrue("The same entries", names.containsAll(expected));
+
+        // A cancellation stops the listing
+        OneByOneSubscriber<SftpPath> cancelled = new OneByOneSubscriber<>(1);
+        new SftpDirectoryPublisher(directory).subscribe(cancelled);
+        assertEquals("Only one entry", 1, cancelled.get().size());
+
+    }
+
+    @Test
+    public void contentPublisher() throws Exception {
+
+        Path file = sftpFileSystem.getPath("src", "test", "resources", "sftp", "testFileRead.txt");
+        byte[] expected = Files.readAllBytes(file);
+
+        OneByOneSubscriber<ByteBuffer> subscriber = new OneByOneSubscriber<>(Integer.MAX_VALUE);
+        new SftpContentPublisher(file, 10, null).subscribe(subscriber);
+        List<ByteBuffer> chunks = subscriber.get();
+        assertEquals("The number of chunks", 4, chunks.size());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks) {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            content.write(bytes);
+        }
+        assertArrayEquals("The content", expected, content.toByteArray());
+
+    }
+
+}
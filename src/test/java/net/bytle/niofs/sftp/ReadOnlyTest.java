@@ -0,0 +1,229 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A read only file system: the mutations are rejected and the metadata and the blocks are cached
+ */
+public class ReadOnlyTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    // Three blocks and a half
+    private static final byte[] BYTES = new byte[SftpBlockCache.BLOCK_SIZE * 3 + SftpBlockCache.BLOCK_SIZE / 2];
+
+    @BeforeClass
+    static public void startServer() throws IOException {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+        new Random(7).nextBytes(BYTES);
+        Path directory = Files.createDirectories(Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "readonly"));
+        Files.write(directory.resolve("archive.bin"), BYTES);
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user, boolean readOnly) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_READ_ONLY, String.valueOf(readOnly));
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+    }
+
+    private static long count(SftpFileSystem fileSystem, SftpCommand command) {
+        return fileSystem.getMetrics().getOperationCounts().getOrDefault(command.name(), 0L);
+    }
+
+    /**
+     * A read only view and a writable one of the same server are two file systems of the pool
+     */
+    @Test
+    public void readOnlyAndWritableViews() throws IOException {
+
+        try (SftpFileSystem readOnly = newFileSystem("readonly-views", true);
+             SftpFileSystem writable = newFileSystem("readonly-views", false)) {
+
+            assertNotSame("Two file systems", readOnly, writable);
+            assertTrue("Read only", readOnly.isReadOnly());
+            assertFalse("Read write", writable.isReadOnly());
+            assertSame("The same options get the pooled file system", readOnly, newFileSystem("readonly-views", true));
+
+            // Without password, the file system with the same options
+            Map<String, String> env = new HashMap<>();
+            env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+            env.put(SftpFileSystem.KEY_READ_ONLY, "false");
+            URI uri = URI.create("sftp://readonly-views@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+            assertSame("Without password", writable, sftpFileSystemProvider.newFileSystem(uri, env));
+
+        }
+
+    }
+
+    /**
+     * The chunks of an upload don't empty the metadata cache, the open and the close do
+     */
+    @Test
+    public void metadataCacheDuringAnUpload() throws IOException {
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_METADATA_CACHE_TTL, "60000");
+        URI uri = URI.create("sftp://readonly-upload:" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env)) {
+
+            Path archive = fileSystem.getPath("target", "readonly", "archive.bin");
+            Path upload = fileSystem.getPath("target", "readonly", "upload.bin");
+            Files.deleteIfExists(Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "readonly", "upload.bin"));
+            long stats = count(fileSystem, SftpCommand.STAT);
+            try (OutputStream outputStream = Files.newOutputStream(upload, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < 3; i++) {
+                    outputStream.write(BYTES, i * SftpBlockCache.BLOCK_SIZE, SftpBlockCache.BLOCK_SIZE);
+                    assertEquals("The size", BYTES.length, Files.size(archive));
+                }
+            }
+            assertEquals("One stat during the upload", stats + 1, count(fileSystem, SftpCommand.STAT));
+            assertTrue("Chunks were written", count(fileSystem, SftpCommand.APPEND) >= 3);
+            assertEquals("The size after the close", BYTES.length, Files.size(archive));
+            assertEquals("The close empties the cache", stats + 2, count(fileSystem, SftpCommand.STAT));
+
+        }
+
+    }
+
+    @Test
+    public void mutationsAreRejected() throws IOException {
+
+        try (SftpFileSystem fileSystem = newFileSystem("readonly-mutations", true)) {
+
+            assertTrue("Read only", fileSystem.isReadOnly());
+            Path directory = fileSystem.getPath("target", "readonly");
+            Path file = directory.resolve("archive.bin");
+            assertFalse("Not writable", Files.isWritable(file));
+
+            try {
+                Files.createDirectory(directory.resolve("new"));
+                fail("Create directory");
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            try {
+                Files.write(directory.resolve("new.txt"), "a".getBytes());
+                fail("Write");
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            try {
+                Files.delete(file);
+                fail("Delete");
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+                fail("Set attribute");
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            try {
+                Files.move(file, directory.resolve("moved.bin"));
+                fail("Move");
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            assertTrue("Untouched", Files.exists(Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "readonly", "archive.bin")));
+            assertEquals("No request was sent", 0, count(fileSystem, SftpCommand.MKDIR) + count(fileSystem, SftpCommand.OPEN) + count(fileSystem, SftpCommand.RM) + count(fileSystem, SftpCommand.SETSTAT) + count(fileSystem, SftpCommand.RENAME));
+
+        }
+
+    }
+
+    @Test
+    public void metadataIsCached() throws IOException {
+
+        try (SftpFileSystem fileSystem = newFileSystem("readonly-metadata", true)) {
+
+            Path directory = fileSystem.getPath("target", "readonly");
+            for (int i = 0; i < 3; i++) {
+                assertEquals("The size", BYTES.length, Files.readAttributes(directory.resolve("archive.bin"), BasicFileAttributes.class).size());
+                assertFalse("Missing", Files.exists(directory.resolve("missing")));
+                try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                    assertTrue("A child", paths.iterator().hasNext());
+                }
+            }
+            // The directory stream stats its directory
+            assertEquals("Three paths", 3, count(fileSystem, SftpCommand.STAT));
+            assertEquals("One listing", 1, count(fileSystem, SftpCommand.LS));
+            assertTrue("Cache hits", fileSystem.getMetrics().getCacheHits() > 0);
+
+        }
+
+        try (SftpFileSystem fileSystem = newFileSystem("readonly-off", false)) {
+
+            assertFalse("Read write", fileSystem.isReadOnly());
+            Path file = fileSystem.getPath("target", "readonly", "archive.bin");
+            Files.readAttributes(file, BasicFileAttributes.class);
+            Files.readAttributes(file, BasicFileAttributes.class);
+            assertEquals("Not cached", 2, count(fileSystem, SftpCommand.STAT));
+
+        }
+
+    }
+
+    @Test
+    public void blocksAreCached() throws Exception {
+
+        try (SftpFileSystem fileSystem = newFileSystem("readonly-blocks", true)) {
+
+            Path file = fileSystem.getPath("target", "readonly", "archive.bin");
+            assertArrayEquals("The content", BYTES, Files.readAllBytes(file));
+            long reads = count(fileSystem, SftpCommand.READ);
+            assertEquals("One read by block", 4, reads);
+            assertEquals("The blocks are cached", BYTES.length, fileSystem.getBlockCache().size());
+
+            assertArrayEquals("The content from the cache", BYTES, Files.readAllBytes(file));
+
+            // Random access
+            try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1000);
+                channel.position(BYTES.length - 500);
+                assertEquals("The end", 500, channel.read(buffer));
+                assertArrayEquals("The last bytes", Arrays.copyOfRange(BYTES, BYTES.length - 500, BYTES.length), Arrays.copyOf(buffer.array(), 500));
+                assertEquals("The end of the file", -1, channel.read(buffer));
+            }
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(SftpBlockCache.BLOCK_SIZE);
+                int read = channel.read(buffer, 100).get();
+                assertEquals("A block", SftpBlockCache.BLOCK_SIZE, read);
+                assertArrayEquals("Across two blocks", Arrays.copyOfRange(BYTES, 100, 100 + SftpBlockCache.BLOCK_SIZE), buffer.array());
+            }
+            assertEquals("No read from the server", reads, count(fileSystem, SftpCommand.READ));
+
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package net.bytle.niofs.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A lost connection is reconnected and the idempotent operations are executed again
+ */
+public class ReconnectTest {
+
+    private static FileSystem sftpFileSystem;
+    private static TestFileSystem testFileSystem;
+
+
+    @BeforeClass
+    static public void createResources() {
+
+        testFileSystem = new TestFileSystem.TestFileSystemBuilder()
+                .useWorkingDirectory(false)
+                .build();
+        sftpFileSystem = testFileSystem.get();
+
+    }
+
+    @AfterClass
+    static public void closeResources() throws IOException {
+
+        testFileSystem.close();
+
+    }
+
+    /**
+     * Simulate a network failure
+     */
+    private void dropConnection() throws JSchException {
+        ((SftpFileSystem) sftpFileSystem).getSession().disconnect();
+    }
+
+    @Test
+    public void statAfterConnectionLost() throws IOException, JSchException {
+
+        Path file = sftpFileSystem.getPath("src", "test", "resources", "sftp", "testFileRead.txt");
+        assertEquals("The file exists", true, Files.exists(file));
+
+        dropConnection();
+
+        assertEquals("The file system is still open", true, sftpFileSystem.isOpen());
+        assertEquals("The file exists after a reconnection", true, Files.exists(file));
+
+    }
+
+    @Test
+    public void readResumesAtTheOffset() throws IOException, JSchException {
+
+        Path file = sftpFileSystem.getPath("src", "test", "resources", "sftp", "testFileRead.txt");
+        byte[] expected = Files.readAllBytes(file);
+        assertEquals("The file size", 38, expected.length);
+
+        ByteBuffer content = ByteBuffer.allocate(expected.length);
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+
+            ByteBuffer firstPart = ByteBuffer.allocate(10);
+            channel.read(firstPart);
+            firstPart.flip();
+            content.put(firstPart);
+            assertEquals("The position", 10, channel.position());
+
+            dropConnection();
+
+            while (channel.read(content) > 0) {
+                // read until the end
+            }
+
+        }
+        assertArrayEquals("The content was read after the reconnection from the offset", expected, content.array());
+
+    }
+
+}
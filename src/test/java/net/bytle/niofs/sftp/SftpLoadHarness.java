@@ -0,0 +1,446 @@
+package net.bytle.niofs.sftp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * A load harness: concurrent clients run a mix of operations against the mock sftp server
+ * <p/>
+ * Each client has its own file system or all clients share one.
+ * The throughput and the latency percentiles are reported by interval and at the end.
+ * The content of each read, write, directory creation and delete is checked against the local file system:
+ * a wrong content or a file at a wrong place is a thread-safety failure.
+ * <pre>
+ * mvn -P load test-compile exec:java -Dload.clients=32 -Dload.shared=true -Dload.mix=stat=40,list=10,read=20,write=15,mkdir=5,delete=10
+ * </pre>
+ * The parameters are system properties:
+ * <ul>
+ * <li>load.clients: the number of clients (default 8)</li>
+ * <li>load.shared: true if the clients share one file system (default false)</li>
+ * <li>load.duration: the duration in seconds (default 30)</li>
+ * <li>load.interval: the report interval in seconds (default 5)</li>
+ * <li>load.mix: the weight of each operation (default stat=40,list=10,read=20,write=15,mkdir=5,delete=10)</li>
+ * <li>load.latency: the latency in ms added in each direction by a {@link LatencyProxy} (default 0)</li>
+ * </ul>
+ */
+public class SftpLoadHarness {
+
+    private static final Logger LOGGER = Logger.getLogger(Thread.currentThread().getStackTrace()[0].getClassName());
+
+    static final String STAT = "stat";
+    static final String LIST = "list";
+    static final String READ = "read";
+    static final String WRITE = "write";
+    static final String MKDIR = "mkdir";
+    static final String DELETE = "delete";
+    static final String DEFAULT_MIX = STAT + "=40," + LIST + "=10," + READ + "=20," + WRITE + "=15," + MKDIR + "=5," + DELETE + "=10";
+
+    // The shared files that are read and listed
+    private static final int SEED_FILES = 20;
+    private static final int SEED_FILE_SIZE = 64 * 1024;
+
+    private final int clients;
+    private final boolean shared;
+    private final long duration;
+    private final long interval;
+    private final Map<String, Integer> mix;
+    private final long latency;
+
+    // The latencies of the current interval and of the whole run
+    private final AtomicReference<Map<String, SftpLatencyHistogram>> intervalLatencies = new AtomicReference<>(newLatencies());
+    private final Map<String, SftpLatencyHistogram> totalLatencies = newLatencies();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    private SftpLoadHarness(SftpLoadHarnessBuilder builder) {
+        this.clients = builder.clients;
+        this.shared = builder.shared;
+        this.duration = builder.duration;
+        this.interval = builder.interval;
+        this.mix = parseMix(builder.mix);
+        this.latency = builder.latency;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        SftpLoadHarness harness = new SftpLoadHarnessBuilder()
+                .clients(Integer.getInteger("load.clients", 8))
+                .shared(Boolean.getBoolean("load.shared"))
+                .duration(Integer.getInteger("load.duration", 30))
+                .interval(Integer.getInteger("load.interval", 5))
+                .mix(System.getProperty("load.mix", DEFAULT_MIX))
+                .latency(Integer.getInteger("load.latency", 0))
+                .build();
+        harness.run();
+        if (!harness.getFailures().isEmpty()) {
+            throw new IllegalStateException(harness.getFailures().size() + " thread-safety failures, the first: " + harness.getFailures().get(0));
+        }
+
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] nameWeight = entry.trim().split("=");
+            String name = nameWeight[0].trim();
+            if (!Arrays.asList(STAT, LIST, READ, WRITE, MKDIR, DELETE).contains(name) || nameWeight.length != 2) {
+                throw new IllegalArgumentException("The operation (" + entry + ") of the mix is unknown, the operations are: " + DEFAULT_MIX);
+            }
+            weights.put(name, Integer.valueOf(nameWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Map<String, SftpLatencyHistogram> newLatencies() {
+        Map<String, SftpLatencyHistogram> latencies = new LinkedHashMap<>();
+        for (String operation : Arrays.asList(STAT, LIST, READ, WRITE, MKDIR, DELETE)) {
+            latencies.put(operation, new SftpLatencyHistogram());
+        }
+        return latencies;
+    }
+
+    /**
+     * Run the load and report
+     */
+    public void run() throws IOException, InterruptedException {
+
+        MockSshSftpServer server = new MockSshSftpServer(0);
+        server.start();
+        LatencyProxy proxy = null;
+        int port = server.getPort();
+        if (latency > 0) {
+            proxy = new LatencyProxy.LatencyProxyBuilder(port).latency(latency).build().start();
+            port = proxy.getPort();
+        }
+        Path localDirectory = Files.createTempDirectory("sftp-load").toAbsolutePath();
+        List<FileSystem> fileSystems = new ArrayList<>();
+        try {
+
+            Path seedDirectory = Files.createDirectory(localDirectory.resolve("seed"));
+            byte[][] seeds = new byte[SEED_FILES][];
+            for (int i = 0; i < SEED_FILES; i++) {
+                seeds[i] = new byte[SEED_FILE_SIZE];
+                new Random(i).nextBytes(seeds[i]);
+                Files.write(seedDirectory.resolve("seed" + i + ".bin"), seeds[i]);
+            }
+
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+            List<Thread> threads = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                FileSystem fileSystem;
+                if (shared && !fileSystems.isEmpty()) {
+                    fileSystem = fileSystems.get(0);
+                } else {
+                    fileSystem = newFileSystem(port, localDirectory, shared ? "load" : "load" + client);
+                    fileSystems.add(fileSystem);
+                }
+                Client loadClient = new Client(client, fileSystem, localDirectory, seeds, end);
+                Thread thread = new Thread(loadClient, "load-client-" + client);
+                thread.start();
+                threads.add(thread);
+            }
+
+            long start = System.nanoTime();
+            long previousReport = start;
+            while (System.nanoTime() < end) {
+                TimeUnit.MILLISECONDS.sleep(Math.min(TimeUnit.SECONDS.toMillis(interval), Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+                long now = System.nanoTime();
+                report(String.format("[%.1fs]", (now - start) / 1e9), intervalLatencies.getAndSet(newLatencies()), now - previousReport);
+                previousReport = now;
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            report("[total, " + clients + " clients" + (shared ? " on one file system" : "") + "]", totalLatencies, System.nanoTime() - start);
+            for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+                System.out.println("Errors " + error.getKey() + ": " + error.getValue().sum());
+            }
+            System.out.println("Thread-safety failures: " + failures.size());
+            for (String failure : failures) {
+                System.out.println("  " + failure);
+            }
+
+        } finally {
+            for (FileSystem fileSystem : fileSystems) {
+                fileSystem.close();
+            }
+            if (proxy != null) {
+                proxy.close();
+            }
+            server.stop();
+            deleteLocal(localDirectory);
+        }
+
+    }
+
+    private static FileSystem newFileSystem(int port, Path workingDirectory, String user) throws IOException {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, workingDirectory.toString());
+        return new SftpFileSystemProvider().newFileSystem(URI.create("sftp://" + user + ":pwd@localhost:" + port), env);
+    }
+
+    private static void report(String title, Map<String, SftpLatencyHistogram> latencies, long nanos) {
+        StringBuilder report = new StringBuilder(title);
+        long operations = 0;
+        for (Map.Entry<String, SftpLatencyHistogram> latency : latencies.entrySet()) {
+            SftpLatencyHistogram histogram = latency.getValue();
+            operations += histogram.getCount();
+            if (histogram.getCount() > 0) {
+                report.append(String.format(" %s: %d ops p50=%dus p99=%dus;", latency.getKey(), histogram.getCount(), histogram.getPercentileMicros(50), histogram.getPercentileMicros(99)));
+            }
+        }
+        report.append(String.format(" %.0f ops/s", operations * 1e9 / nanos));
+        System.out.println(report);
+    }
+
+    private static void deleteLocal(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return the number of operations by name
+     */
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, SftpLatencyHistogram> latency : totalLatencies.entrySet()) {
+            counts.put(latency.getKey(), latency.getValue().getCount());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of errors (exceptions) by operation and exception
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+            counts.put(error.getKey(), error.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the thread-safety failures (a wrong content or a file at a wrong place)
+     */
+    public List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * A client runs the operations of the mix until the end
+     */
+    private class Client implements Runnable {
+
+        private final int id;
+        private final FileSystem fileSystem;
+        private final Path localDirectory;
+        private final byte[][] seeds;
+        private final long end;
+        private final int totalWeight;
+        // The files written and not yet deleted
+        private final Deque<String> written = new ArrayDeque<>();
+        private long sequence = 0;
+
+        Client(int id, FileSystem fileSystem, Path localDirectory, byte[][] seeds, long end) {
+            this.id = id;
+            this.fileSystem = fileSystem;
+            this.localDirectory = localDirectory;
+            this.seeds = seeds;
+            this.end = end;
+            this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Files.createDirectory(localDirectory.resolve("client" + id));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            while (System.nanoTime() < end) {
+                String operation = nextOperation();
+                long start = System.nanoTime();
+                try {
+                    if (!execute(operation)) {
+                        continue;
+                    }
+                    long nanos = System.nanoTime() - start;
+                    intervalLatencies.get().get(operation).record(nanos);
+                    totalLatencies.get(operation).record(nanos);
+                } catch (Exception e) {
+                    errors.computeIfAbsent(operation + " " + e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+                    LOGGER.fine("The " + operation + " of the client " + id + " has failed: " + e);
+                }
+            }
+        }
+
+        private String nextOperation() {
+            int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+            for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+                pick -= weight.getValue();
+                if (pick < 0) {
+                    return weight.getKey();
+                }
+            }
+            throw new IllegalStateException("No operation");
+        }
+
+        /**
+         * @return false if the operation was not executed (a delete without written file)
+         */
+        private boolean execute(String operation) throws IOException {
+
+            int seed = ThreadLocalRandom.current().nextInt(SEED_FILES);
+            switch (operation) {
+                case STAT:
+                    long size = Files.size(fileSystem.getPath("seed", "seed" + seed + ".bin"));
+                    check(size == SEED_FILE_SIZE, "The size of the seed " + seed + " is " + size);
+                    break;
+                case LIST:
+                    int count = 0;
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileSystem.getPath("seed"))) {
+                        for (Path ignored : stream) {
+                            count++;
+                        }
+                    }
+                    check(count == SEED_FILES, "The listing of the seeds has " + count + " entries");
+                    break;
+                case READ:
+                    byte[] bytes = Files.readAllBytes(fileSystem.getPath("seed", "seed" + seed + ".bin"));
+                    check(Arrays.equals(bytes, seeds[seed]), "The content of the seed " + seed + " is wrong");
+                    break;
+                case WRITE:
+                    String name = "file" + (sequence++) + ".bin";
+                    byte[] content = content(name);
+                    Files.write(fileSystem.getPath("client" + id, name), content, StandardOpenOption.CREATE_NEW);
+                    Path local = localDirectory.resolve("client" + id).resolve(name);
+                    check(Files.exists(local) && Arrays.equals(Files.readAllBytes(local), content), "The written file " + local + " is missing or wrong");
+                    written.add(name);
+                    break;
+                case MKDIR:
+                    String directory = "dir" + (sequence++);
+                    Files.createDirectories(fileSystem.getPath("client" + id, directory, "child"));
+                    check(Files.isDirectory(localDirectory.resolve("client" + id).resolve(directory).resolve("child")), "The directory " + directory + " of the client " + id + " was created elsewhere");
+                    break;
+                case DELETE:
+                    String toDelete = written.poll();
+                    if (toDelete == null) {
+                        return false;
+                    }
+                    Files.delete(fileSystem.getPath("client" + id, toDelete));
+                    check(!Files.exists(localDirectory.resolve("client" + id).resolve(toDelete)), "The deleted file " + toDelete + " of the client " + id + " still exists");
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+            return true;
+
+        }
+
+        /**
+         * @return a content that identifies the client and the file
+         */
+        private byte[] content(String name) {
+            byte[] content = new byte[1024 + ThreadLocalRandom.current().nextInt(16 * 1024)];
+            new Random(Objects.hash(id, name)).nextBytes(content);
+            return content;
+        }
+
+        private void check(boolean condition, String failure) {
+            if (!condition) {
+                failures.add("client " + id + ": " + failure);
+            }
+        }
+
+    }
+
+    public static class SftpLoadHarnessBuilder {
+
+        private int clients = 8;
+        private boolean shared = false;
+        private long duration = 30;
+        private long interval = 5;
+        private String mix = DEFAULT_MIX;
+        private long latency = 0;
+
+        public SftpLoadHarnessBuilder clients(int clients) {
+            this.clients = clients;
+            return this;
+        }
+
+        /**
+         * @param shared true if all clients share one file system
+         */
+        public SftpLoadHarnessBuilder shared(boolean shared) {
+            this.shared = shared;
+            return this;
+        }
+
+        /**
+         * @param duration the duration of the load in seconds
+         */
+        public SftpLoadHarnessBuilder duration(long duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * @param interval the interval of the reports in seconds
+         */
+        public SftpLoadHarnessBuilder interval(long interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * @param mix the weights of the operations (ie stat=40,list=10,read=20,write=15,mkdir=5,delete=10)
+         */
+        public SftpLoadHarnessBuilder mix(String mix) {
+            this.mix = mix;
+            return this;
+        }
+
+        /**
+         * @param latency the latency in ms added in each direction
+         */
+        public SftpLoadHarnessBuilder latency(long latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        public SftpLoadHarness build() {
+            return new SftpLoadHarness(this);
+        }
+
+    }
+
+}
@@ -38,7 +38,7 @@ public class TestFileSystemParameters {
             HOME_USER_DIR = environments.get("BYTLE_NIOFS_SFTP_HOME_USER_DIR") != null ? environments.get("BYTLE_NIOFS_SFTP_HOME_USER_DIR") : "/home/gerardni-niosftp";
             URL = "sftp://" + USER + ":" + PWD + "@" + HOST + ":" + PORT;
         } else {
-            HOME_USER_DIR = Paths.get("").toString();
+            HOME_USER_DIR = Paths.get("").toAbsolutePath().toString();
         }
     }
 
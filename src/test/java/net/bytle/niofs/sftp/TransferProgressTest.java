@@ -0,0 +1,144 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The progress listeners and the cancellation of the transfers
+ */
+public class TransferProgressTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static SftpFileSystem newFileSystem(String user) throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        URI uri = URI.create("sftp://" + user + ":" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        return (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+    }
+
+    @Test
+    public void progress() throws Exception {
+
+        byte[] bytes = new byte[1024 * 1024];
+        new Random(42).nextBytes(bytes);
+
+        try (SftpFileSystem fileSystem = newFileSystem("progress")) {
+
+            List<SftpTransferProgress> fileSystemEnds = new CopyOnWriteArrayList<>();
+            fileSystem.addTransferListener(new SftpTransferListener() {
+                @Override
+                public void onEnd(SftpTransferProgress progress) {
+                    fileSystemEnds.add(progress);
+                }
+            });
+
+            Path file = fileSystem.getPath("target", "progress.bin");
+            Files.deleteIfExists(file);
+            Files.write(file, bytes, StandardOpenOption.CREATE_NEW);
+            assertEquals("The write was listened", 1, fileSystemEnds.size());
+            assertEquals("The bytes written", bytes.length, fileSystemEnds.get(0).getBytesDone());
+            assertEquals("The size of a write is unknown", -1, fileSystemEnds.get(0).getBytesTotal());
+
+            List<SftpTransferProgress> starts = new CopyOnWriteArrayList<>();
+            List<SftpTransferProgress> ends = new CopyOnWriteArrayList<>();
+            SftpTransferListener listener = new SftpTransferListener() {
+                @Override
+                public void onStart(SftpTransferProgress progress) {
+                    starts.add(progress);
+                }
+
+                @Override
+                public void onEnd(SftpTransferProgress progress) {
+                    ends.add(progress);
+                }
+            };
+            try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ, SftpTransferOption.listener(listener))) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (channel.read(buffer) != -1) {
+                    buffer.clear();
+                }
+            }
+            assertEquals("One start", 1, starts.size());
+            assertEquals("One end", 1, ends.size());
+            SftpTransferProgress end = ends.get(0);
+            assertEquals("The bytes read", bytes.length, end.getBytesDone());
+            assertEquals("The size of the file", bytes.length, end.getBytesTotal());
+            assertTrue("A throughput", end.getSmoothedThroughput() > 0);
+            assertEquals("Nothing remains", 0, end.getEta().toNanos());
+            assertEquals("The file system listener got the read too", 2, fileSystemEnds.size());
+
+        }
+
+    }
+
+    @Test
+    public void cancellation() throws Exception {
+
+        byte[] bytes = new byte[256 * 1024];
+        new Random(42).nextBytes(bytes);
+
+        try (SftpFileSystem fileSystem = newFileSystem("cancellation")) {
+
+            Path file = fileSystem.getPath("target", "cancellation.bin");
+            Files.deleteIfExists(file);
+
+            SftpCancellationToken writeToken = new SftpCancellationToken();
+            try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, SftpTransferOption.cancellation(writeToken))) {
+                channel.write(ByteBuffer.wrap(bytes, 0, 1024));
+                writeToken.cancel();
+                channel.write(ByteBuffer.wrap(bytes, 1024, 1024));
+                fail("The write was cancelled");
+            } catch (InterruptedIOException e) {
+                // expected
+            }
+            assertEquals("The bytes written before the cancellation", 1024, Files.size(file));
+
+            Files.delete(file);
+            Files.write(file, bytes, StandardOpenOption.CREATE_NEW);
+            SftpCancellationToken readToken = new SftpCancellationToken();
+            try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ, SftpTransferOption.cancellation(readToken))) {
+                ByteBuffer buffer = ByteBuffer.allocate(1024);
+                assertEquals("A read before the cancellation", 1024, channel.read(buffer));
+                readToken.cancel();
+                buffer.clear();
+                channel.read(buffer);
+                fail("The read was cancelled");
+            } catch (InterruptedIOException e) {
+                // expected
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package net.bytle.niofs.sftp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by gerard on 18-10-2026.
+ * The watch service polls the registered directories
+ */
+public class WatchServiceTest {
+
+    private static MockSshSftpServer mockSftpServer;
+    private static final SftpFileSystemProvider sftpFileSystemProvider = new SftpFileSystemProvider();
+
+    @BeforeClass
+    static public void startServer() {
+        mockSftpServer = new MockSshSftpServer();
+        mockSftpServer.start();
+    }
+
+    @AfterClass
+    static public void stopServer() {
+        mockSftpServer.stop();
+    }
+
+    private static WatchEvent<?> nextEvent(WatchService watchService) throws InterruptedException {
+        WatchKey key = watchService.poll(5, TimeUnit.SECONDS);
+        assertNotNull("An event was signalled", key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        assertEquals("One event: " + events, 1, events.size());
+        key.reset();
+        return events.get(0);
+    }
+
+    @Test
+    public void watch() throws Exception {
+
+        Map<String, String> env = new HashMap<>();
+        env.put(SftpFileSystem.KEY_WORKING_DIRECTORY, TestFileSystemParameters.HOME_USER_DIR);
+        env.put(SftpFileSystem.KEY_WATCH_INTERVAL_MIN, "50");
+        env.put(SftpFileSystem.KEY_WATCH_INTERVAL_MAX, "200");
+        URI uri = URI.create("sftp://watch:" + TestFileSystemParameters.PWD + "@" + TestFileSystemParameters.HOST + ":" + TestFileSystemParameters.PORT);
+        try (SftpFileSystem fileSystem = (SftpFileSystem) sftpFileSystemProvider.newFileSystem(uri, env);
+             WatchService watchService = fileSystem.newWatchService();
+             WatchService otherWatchService = fileSystem.newWatchService()) {
+
+            Path directory = fileSystem.getPath("target", "watch");
+            Path file = directory.resolve("inbound.csv");
+            Files.createDirectories(directory);
+            Files.deleteIfExists(file);
+
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            WatchKey otherKey = directory.register(otherWatchService, StandardWatchEventKinds.ENTRY_CREATE);
+            assertEquals("The same key for the same directory", key, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+            assertEquals("One listing for the two watch services", 1, fileSystem.getDirectoryWatcher().size());
+            assertEquals("The watchable", directory.toAbsolutePath(), key.watchable());
+
+            // Created locally with a rename: a poll never sees the file empty
+            Path localFile = Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "watch", "inbound.csv");
+            Path localTemporary = Files.write(Paths.get(TestFileSystemParameters.HOME_USER_DIR, "target", "inbound.tmp"), "a".getBytes());
+            Files.move(localTemporary, localFile);
+            WatchEvent<?> created = nextEvent(watchService);
+            assertEquals("Created", StandardWatchEventKinds.ENTRY_CREATE, created.kind());
+            assertEquals("The context is the file name", fileSystem.getPath("inbound.csv"), created.context());
+            assertEquals("The other watch service got it", StandardWatchEventKinds.ENTRY_CREATE, nextEvent(otherWatchService).kind());
+
+            Files.write(localFile, " longer".getBytes(), StandardOpenOption.APPEND);
+            assertEquals("Modified (the size has changed)", StandardWatchEventKinds.ENTRY_MODIFY, nextEvent(watchService).kind());
+
+            Files.delete(file);
+            assertEquals("Deleted", StandardWatchEventKinds.ENTRY_DELETE, nextEvent(watchService).kind());
+            assertNull("The other watch service doesn't watch the deletions", otherWatchService.poll(500, TimeUnit.MILLISECONDS));
+
+            otherKey.cancel();
+            assertFalse("Cancelled", otherKey.isValid());
+            assertEquals("Still watched by the first service", 1, fileSystem.getDirectoryWatcher().size());
+
+            Files.delete(directory);
+            WatchKey invalidKey = watchService.poll(5, TimeUnit.SECONDS);
+            assertEquals("The key is signalled when the directory is gone", key, invalidKey);
+            assertFalse("The key is invalid", invalidKey.isValid());
+            assertEquals("Nothing is watched", 0, fileSystem.getDirectoryWatcher().size());
+
+        }
+
+    }
+
+}